@@ -0,0 +1,65 @@
+package mrcode.duckprxy.benchmarks;
+
+import mrcode.duckprxy.DuckArg;
+import mrcode.duckprxy.DuckArgType;
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.DuckPrxyFor;
+
+/**
+ * Delegate for {@link BenchInterface}.
+ * 
+ * @author Christian Haselbach
+ */
+@DuckPrxyFor(BenchInterface.class)
+public class BenchDelegate {
+
+    private final BenchSubDelegate subDelegate = new BenchSubDelegate();
+
+    public int exact(final int x) {
+        return x + 1;
+    }
+
+    public int nameOnly() {
+        return 2;
+    }
+
+    @DuckMethod("pattern.*")
+    public int byPattern(final int x) {
+        return x + 3;
+    }
+
+    @DuckMethod("argNull")
+    public int withNull(
+            @DuckArg(DuckArgType.NULL) final Object nothing,
+            final int x) {
+        return nothing == null ? x : -1;
+    }
+
+    @DuckMethod("argName")
+    public String withName(@DuckArg(DuckArgType.NAME) final String name) {
+        return name;
+    }
+
+    @DuckMethod("argArgs")
+    public int withArgs(@DuckArg(DuckArgType.ARGS) final Object[] args) {
+        return args.length;
+    }
+
+    @DuckMethod("argN")
+    public int withArgN(
+            @DuckArg(value = DuckArgType.ARGN, pos = 1) final int y) {
+        return y;
+    }
+
+    @DuckMethod("argGroup(.*)")
+    public String withGroup(
+            @DuckArg(value = DuckArgType.GROUP, pos = 1) final String group) {
+        return group;
+    }
+
+    @DuckMethod(subdelegate = true)
+    public BenchSubDelegate getSubDelegate() {
+        return subDelegate;
+    }
+
+}
@@ -0,0 +1,22 @@
+package mrcode.duckprxy.benchmarks;
+
+import mrcode.duckprxy.DuckArg;
+import mrcode.duckprxy.DuckArgType;
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.DuckPrxyFor;
+
+/**
+ * Delegate for {@link BenchFallbackInterface} that only has a fallback
+ * method.
+ * 
+ * @author Christian Haselbach
+ */
+@DuckPrxyFor(BenchFallbackInterface.class)
+public class BenchFallbackDelegate {
+
+    @DuckMethod(fallback = true)
+    public int onMissing(@DuckArg(DuckArgType.NAME) final String name) {
+        return name.length();
+    }
+
+}
@@ -0,0 +1,13 @@
+package mrcode.duckprxy.benchmarks;
+
+/**
+ * The interface for benchmarking the fallback dispatch, implemented by
+ * proxies delegating to {@link BenchFallbackDelegate}.
+ * 
+ * @author Christian Haselbach
+ */
+public interface BenchFallbackInterface {
+
+    int fallback(int x);
+
+}
@@ -0,0 +1,39 @@
+package mrcode.duckprxy.benchmarks;
+
+/**
+ * The interface the benchmarked proxies implement. Every method is
+ * resolved by a different dispatch kind when delegating to
+ * {@link BenchDelegate}.
+ * 
+ * @author Christian Haselbach
+ */
+public interface BenchInterface {
+
+    /** Same name and signature. */
+    int exact(int x);
+
+    /** Same name, no parameters on the delegate side. */
+    int nameOnly(int x);
+
+    /** Matched by a {@code @DuckMethod} pattern. */
+    int patternMethod(int x);
+
+    /** Delegate parameter filled with {@code DuckArgType.NULL}. */
+    int argNull(int x);
+
+    /** Delegate parameter filled with {@code DuckArgType.NAME}. */
+    String argName(int x);
+
+    /** Delegate parameter filled with {@code DuckArgType.ARGS}. */
+    int argArgs(int x, int y);
+
+    /** Delegate parameter filled with {@code DuckArgType.ARGN}. */
+    int argN(int x, int y);
+
+    /** Delegate parameter filled with {@code DuckArgType.GROUP}. */
+    String argGroupValue(int x);
+
+    /** Forwarded to the sub delegate. */
+    int subDelegated(int x);
+
+}
@@ -0,0 +1,22 @@
+package mrcode.duckprxy.benchmarks;
+
+import mrcode.duckprxy.DuckArg;
+import mrcode.duckprxy.DuckArgType;
+import mrcode.duckprxy.DuckMethod;
+
+/**
+ * Delegate for {@link java.sql.ResultSet}, an interface with about two
+ * hundred methods, which all go to the fallback method.
+ * 
+ * @author Christian Haselbach
+ */
+public class BenchResultSetDelegate {
+
+    @DuckMethod(fallback = true)
+    public Object onMissing(
+            @DuckArg(DuckArgType.NAME) final String name,
+            @DuckArg(DuckArgType.ARGS) final Object[] args) {
+        return null;
+    }
+
+}
@@ -0,0 +1,14 @@
+package mrcode.duckprxy.benchmarks;
+
+/**
+ * Sub delegate of {@link BenchDelegate}.
+ * 
+ * @author Christian Haselbach
+ */
+public class BenchSubDelegate {
+
+    public int subDelegated(final int x) {
+        return x + 5;
+    }
+
+}
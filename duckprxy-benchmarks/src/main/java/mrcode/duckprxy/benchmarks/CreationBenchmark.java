@@ -0,0 +1,99 @@
+package mrcode.duckprxy.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import mrcode.duckprxy.DuckPrxy;
+import mrcode.duckprxy.ProxyFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Steady-state cost of wrapping a delegate, i.e., of a
+ * {@link DuckPrxy#makeProxy(Class, Object, Class...)} call for a delegate
+ * class and interface that have been seen before, and of creating a proxy
+ * with a {@link ProxyFactory} obtained beforehand. {@link #makeProxies}
+ * wraps {@value #BULK_SIZE} delegates with
+ * {@link DuckPrxy#makeProxies(Class, List, Class...)}.
+ * 
+ * @author Christian Haselbach
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1,
+        jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class CreationBenchmark {
+
+    private static final int BULK_SIZE = 1000;
+
+    @Param({"DIRECT", "REFLECT", "PRECOMP", "JAVASSIST", "METHOD_HANDLE",
+        "GENERATED"})
+    public Engine engine;
+
+    private DuckPrxy duckPrxy;
+
+    private BenchDelegate delegate;
+
+    private ProxyFactory<BenchInterface> proxyFactory;
+
+    private List<BenchDelegate> delegates;
+
+    @Setup
+    public void setUp() {
+        duckPrxy = engine.createDuckPrxy();
+        delegate = new BenchDelegate();
+        delegates = new ArrayList<BenchDelegate>(BULK_SIZE);
+        for (int i = 0; i < BULK_SIZE; i++) {
+            delegates.add(new BenchDelegate());
+        }
+        if (duckPrxy != null) {
+            proxyFactory = duckPrxy.getProxyFactory(
+                    BenchInterface.class, BenchDelegate.class);
+        }
+    }
+
+    @Benchmark
+    public BenchInterface makeProxy() {
+        if (duckPrxy == null) {
+            return new DirectBenchInterface(delegate);
+        }
+        return duckPrxy.makeProxy(BenchInterface.class, delegate);
+    }
+
+    @Benchmark
+    public BenchInterface createWithFactory() {
+        if (proxyFactory == null) {
+            return new DirectBenchInterface(delegate);
+        }
+        return proxyFactory.create(delegate);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public BenchInterface[] makeProxies() {
+        if (duckPrxy == null) {
+            final BenchInterface[] proxies = new BenchInterface[BULK_SIZE];
+            for (int i = 0; i < BULK_SIZE; i++) {
+                proxies[i] = new DirectBenchInterface(delegates.get(i));
+            }
+            return proxies;
+        }
+        return duckPrxy.makeProxies(BenchInterface.class, delegates);
+    }
+
+}
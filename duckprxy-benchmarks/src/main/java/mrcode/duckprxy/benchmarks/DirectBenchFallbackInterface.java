@@ -0,0 +1,21 @@
+package mrcode.duckprxy.benchmarks;
+
+/**
+ * Hand written implementation of {@link BenchFallbackInterface}, the
+ * baseline for the fallback benchmark.
+ * 
+ * @author Christian Haselbach
+ */
+public class DirectBenchFallbackInterface implements BenchFallbackInterface {
+
+    private final BenchFallbackDelegate delegate;
+
+    public DirectBenchFallbackInterface(final BenchFallbackDelegate delegate) {
+        this.delegate = delegate;
+    }
+
+    public int fallback(final int x) {
+        return delegate.onMissing("fallback");
+    }
+
+}
@@ -0,0 +1,54 @@
+package mrcode.duckprxy.benchmarks;
+
+/**
+ * Hand written implementation of {@link BenchInterface}, doing what an
+ * ideal duck proxy would do. It is the baseline for the benchmarks.
+ * 
+ * @author Christian Haselbach
+ */
+public class DirectBenchInterface implements BenchInterface {
+
+    private final BenchDelegate delegate;
+
+    public DirectBenchInterface(final BenchDelegate delegate) {
+        this.delegate = delegate;
+    }
+
+    public int exact(final int x) {
+        return delegate.exact(x);
+    }
+
+    public int nameOnly(final int x) {
+        return delegate.nameOnly();
+    }
+
+    public int patternMethod(final int x) {
+        return delegate.byPattern(x);
+    }
+
+    public int argNull(final int x) {
+        return delegate.withNull(null, x);
+    }
+
+    public String argName(final int x) {
+        return delegate.withName("argName");
+    }
+
+    public int argArgs(final int x, final int y) {
+        return delegate.withArgs(new Object[] {
+                Integer.valueOf(x), Integer.valueOf(y)});
+    }
+
+    public int argN(final int x, final int y) {
+        return delegate.withArgN(y);
+    }
+
+    public String argGroupValue(final int x) {
+        return delegate.withGroup("Value");
+    }
+
+    public int subDelegated(final int x) {
+        return delegate.getSubDelegate().subDelegated(x);
+    }
+
+}
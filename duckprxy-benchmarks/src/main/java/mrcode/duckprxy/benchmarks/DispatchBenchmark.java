@@ -0,0 +1,105 @@
+package mrcode.duckprxy.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Steady-state cost of a single proxied call, per engine and dispatch kind.
+ * The proxies are created once per trial, so creation cost is not measured.
+ * <p>
+ * Compare each engine against {@link Engine#DIRECT} to see the overhead
+ * the duck proxy adds to a plain delegating call.
+ * 
+ * @author Christian Haselbach
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1,
+        jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class DispatchBenchmark {
+
+    @Param({"DIRECT", "REFLECT", "PRECOMP", "JAVASSIST", "METHOD_HANDLE",
+        "GENERATED"})
+    public Engine engine;
+
+    private BenchInterface target;
+
+    private BenchFallbackInterface fallbackTarget;
+
+    /** Not final, so the JIT cannot fold the arguments. */
+    private int x = 41;
+
+    private int y = 2;
+
+    @Setup
+    public void setUp() {
+        target = engine.makeBenchInterface(new BenchDelegate());
+        fallbackTarget =
+            engine.makeBenchFallbackInterface(new BenchFallbackDelegate());
+    }
+
+    @Benchmark
+    public int exact() {
+        return target.exact(x);
+    }
+
+    @Benchmark
+    public int nameOnly() {
+        return target.nameOnly(x);
+    }
+
+    @Benchmark
+    public int pattern() {
+        return target.patternMethod(x);
+    }
+
+    @Benchmark
+    public int fallback() {
+        return fallbackTarget.fallback(x);
+    }
+
+    @Benchmark
+    public int subDelegate() {
+        return target.subDelegated(x);
+    }
+
+    @Benchmark
+    public int argNull() {
+        return target.argNull(x);
+    }
+
+    @Benchmark
+    public String argName() {
+        return target.argName(x);
+    }
+
+    @Benchmark
+    public int argArgs() {
+        return target.argArgs(x, y);
+    }
+
+    @Benchmark
+    public int argN() {
+        return target.argN(x, y);
+    }
+
+    @Benchmark
+    public String argGroup() {
+        return target.argGroupValue(x);
+    }
+
+}
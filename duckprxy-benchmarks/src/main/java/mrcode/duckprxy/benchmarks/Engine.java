@@ -0,0 +1,82 @@
+package mrcode.duckprxy.benchmarks;
+
+import mrcode.duckprxy.DuckPrxy;
+import mrcode.duckprxy.impl.DuckPrxyImpl;
+import mrcode.duckprxy.impl.DuckPrxyPreCompImpl;
+import mrcode.duckprxy.impl.GeneratedDuckPrxy;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.MethodHandleDuckPrxy;
+
+/**
+ * The proxy engines under benchmark. {@link #DIRECT} is the baseline and
+ * does not create a duck proxy at all.
+ * 
+ * @author Christian Haselbach
+ */
+public enum Engine {
+
+    DIRECT {
+        @Override
+        public DuckPrxy createDuckPrxy() {
+            return null;
+        }
+    },
+
+    REFLECT {
+        @Override
+        public DuckPrxy createDuckPrxy() {
+            return new DuckPrxyImpl();
+        }
+    },
+
+    PRECOMP {
+        @Override
+        public DuckPrxy createDuckPrxy() {
+            return new DuckPrxyPreCompImpl();
+        }
+    },
+
+    JAVASSIST {
+        @Override
+        public DuckPrxy createDuckPrxy() {
+            return new JavassistDuckPrxy();
+        }
+    },
+
+    METHOD_HANDLE {
+        @Override
+        public DuckPrxy createDuckPrxy() {
+            return new MethodHandleDuckPrxy();
+        }
+    },
+
+    GENERATED {
+        @Override
+        public DuckPrxy createDuckPrxy() {
+            return new GeneratedDuckPrxy();
+        }
+    };
+
+    /**
+     * @return A new duck proxy creator, or null for the baseline.
+     */
+    public abstract DuckPrxy createDuckPrxy();
+
+    public BenchInterface makeBenchInterface(final BenchDelegate delegate) {
+        final DuckPrxy duckPrxy = createDuckPrxy();
+        if (duckPrxy == null) {
+            return new DirectBenchInterface(delegate);
+        }
+        return duckPrxy.makeProxy(BenchInterface.class, delegate);
+    }
+
+    public BenchFallbackInterface makeBenchFallbackInterface(
+            final BenchFallbackDelegate delegate) {
+        final DuckPrxy duckPrxy = createDuckPrxy();
+        if (duckPrxy == null) {
+            return new DirectBenchFallbackInterface(delegate);
+        }
+        return duckPrxy.makeProxy(BenchFallbackInterface.class, delegate);
+    }
+
+}
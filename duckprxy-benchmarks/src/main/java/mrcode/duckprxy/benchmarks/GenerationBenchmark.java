@@ -0,0 +1,78 @@
+package mrcode.duckprxy.benchmarks;
+
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of generating the class files of a {@link JavassistDuckPrxy}
+ * proxy, with the method bodies emitted as bytecode or compiled from
+ * source. The classes are generated but not defined, so every invocation
+ * does the full work.
+ * 
+ * @author Christian Haselbach
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1,
+        jvmArgsAppend = "--add-opens=java.base/java.lang=ALL-UNNAMED")
+public class GenerationBenchmark {
+
+    public enum Shape {
+        /** {@link BenchInterface}, a handful of methods. */
+        SMALL(BenchInterface.class, BenchDelegate.class),
+        /** {@link ResultSet}, about two hundred methods. */
+        LARGE(ResultSet.class, BenchResultSetDelegate.class);
+
+        final Class<?> mainInterface;
+        final Class<?> delegateClass;
+
+        Shape(final Class<?> mainInterface, final Class<?> delegateClass) {
+            this.mainInterface = mainInterface;
+            this.delegateClass = delegateClass;
+        }
+    }
+
+    @Param({"BYTECODE", "SOURCE"})
+    public String emission;
+
+    @Param({"SMALL", "LARGE"})
+    public Shape shape;
+
+    private JavassistDuckPrxy duckPrxy;
+
+    @Setup
+    public void setUp() {
+        final boolean compilingSource = "SOURCE".equals(emission);
+        duckPrxy = new JavassistDuckPrxy() {
+            @Override
+            protected boolean isCompilingSource() {
+                return compilingSource;
+            }
+        };
+    }
+
+    @Benchmark
+    public Map<String, byte[]> generate() throws Exception {
+        return duckPrxy.generateClassFiles(
+                shape.mainInterface, shape.delegateClass);
+    }
+
+}
@@ -0,0 +1,159 @@
+package mrcode.duckprxy.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.PregeneratedClasses;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Generates the {@link JavassistDuckPrxy} proxy classes of the configured
+ * delegate classes and interfaces, and writes them together with their
+ * index into the class output directory, so they are packaged into the
+ * artifact. At runtime, the {@link JavassistDuckPrxy} loads them instead
+ * of generating them.
+ * <pre>
+ * &lt;proxies&gt;
+ *   &lt;proxy&gt;
+ *     &lt;delegate&gt;com.example.Delegate&lt;/delegate&gt;
+ *     &lt;mainInterface&gt;com.example.MyInterface&lt;/mainInterface&gt;
+ *     &lt;interfaces&gt;
+ *       &lt;interface&gt;com.example.Other&lt;/interface&gt;
+ *     &lt;/interfaces&gt;
+ *   &lt;/proxy&gt;
+ * &lt;/proxies&gt;
+ * </pre>
+ * 
+ * @author Christian Haselbach
+ */
+@Mojo(
+        name = "pregenerate",
+        defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+        requiresDependencyResolution = ResolutionScope.COMPILE,
+        threadSafe = true)
+public class PregenerateMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    /**
+     * The directory to write the class files and the index to.
+     */
+    @Parameter(
+            defaultValue = "${project.build.outputDirectory}",
+            required = true)
+    private File outputDirectory;
+
+    /**
+     * The proxies to generate.
+     */
+    @Parameter(required = true)
+    private List<Proxy> proxies;
+
+    /**
+     * The class name prefix of the {@link JavassistDuckPrxy} using the
+     * classes. Normally, you do not want to override it.
+     */
+    @Parameter(defaultValue = "duckprxy:")
+    private String classNamePrefix;
+
+    public PregenerateMojo() {
+    }
+
+    /**
+     * Creates a mojo generating into a directory without a project.
+     */
+    PregenerateMojo(
+            final File outputDirectory,
+            final List<Proxy> proxies,
+            final String classNamePrefix) {
+        this.outputDirectory = outputDirectory;
+        this.proxies = proxies;
+        this.classNamePrefix = classNamePrefix;
+    }
+
+    public void execute() throws MojoExecutionException {
+        try (URLClassLoader classLoader = createProjectClassLoader()) {
+            generate(classLoader);
+        } catch (IOException e) {
+            throw new MojoExecutionException(
+                    "Cannot close the project class loader", e);
+        }
+        getLog().info("Pregenerated " + proxies.size() + " duck proxies");
+    }
+
+    /**
+     * Generates the proxies and writes them to the output directory.
+     * @param classLoader  Loads the delegate classes and interfaces.
+     */
+    void generate(final ClassLoader classLoader)
+    throws MojoExecutionException {
+        final JavassistDuckPrxy duckPrxy =
+            new JavassistDuckPrxy(classNamePrefix);
+        final Map<String, byte[]> classFiles =
+            new LinkedHashMap<String, byte[]>();
+        for (final Proxy proxy : proxies) {
+            try {
+                final Class<?>[] interfaces =
+                    new Class<?>[proxy.getInterfaces().size()];
+                for (int i=0; i<interfaces.length; i++) {
+                    interfaces[i] = Class.forName(
+                            proxy.getInterfaces().get(i), false, classLoader);
+                }
+                classFiles.putAll(duckPrxy.generateClassFiles(
+                        Class.forName(
+                                proxy.getMainInterface(), false, classLoader),
+                        Class.forName(proxy.getDelegate(), false, classLoader),
+                        interfaces));
+            } catch (Exception e) {
+                throw new MojoExecutionException(
+                        "Cannot generate duck proxy for " + proxy, e);
+            }
+        }
+        try {
+            PregeneratedClasses.writeClassFiles(outputDirectory, classFiles);
+        } catch (IOException e) {
+            throw new MojoExecutionException(
+                    "Cannot write duck proxies to " + outputDirectory, e);
+        }
+    }
+
+    /**
+     * @return A class loader for the compiled classes and the compile
+     *         dependencies of the project. The duckprxy classes are loaded
+     *         from the plugin, so they are the ones the generator knows.
+     */
+    private URLClassLoader createProjectClassLoader()
+    throws MojoExecutionException {
+        try {
+            final List<String> elements =
+                project.getCompileClasspathElements();
+            final URL[] urls = new URL[elements.size()];
+            for (int i=0; i<urls.length; i++) {
+                urls[i] = new File(elements.get(i)).toURI().toURL();
+            }
+            return new URLClassLoader(urls, getClass().getClassLoader());
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException(
+                    "Cannot resolve the compile class path", e);
+        } catch (IOException e) {
+            throw new MojoExecutionException(
+                    "Cannot resolve the compile class path", e);
+        }
+    }
+
+}
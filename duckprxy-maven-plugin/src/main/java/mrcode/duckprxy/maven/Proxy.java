@@ -0,0 +1,57 @@
+package mrcode.duckprxy.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A proxy to pregenerate, as configured in a {@code <proxy>} element.
+ * 
+ * @author Christian Haselbach
+ */
+public class Proxy {
+
+    /**
+     * The name of the delegate class.
+     */
+    private String delegate;
+
+    /**
+     * The name of the main interface.
+     */
+    private String mainInterface;
+
+    /**
+     * The names of the secondary interfaces.
+     */
+    private List<String> interfaces = new ArrayList<String>();
+
+    public String getDelegate() {
+        return delegate;
+    }
+
+    public void setDelegate(final String delegate) {
+        this.delegate = delegate;
+    }
+
+    public String getMainInterface() {
+        return mainInterface;
+    }
+
+    public void setMainInterface(final String mainInterface) {
+        this.mainInterface = mainInterface;
+    }
+
+    public List<String> getInterfaces() {
+        return interfaces;
+    }
+
+    public void setInterfaces(final List<String> interfaces) {
+        this.interfaces = interfaces;
+    }
+
+    @Override
+    public String toString() {
+        return delegate + " as " + mainInterface + " " + interfaces;
+    }
+
+}
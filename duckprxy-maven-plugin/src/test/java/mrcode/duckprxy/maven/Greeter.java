@@ -0,0 +1,7 @@
+package mrcode.duckprxy.maven;
+
+public interface Greeter {
+
+    String greet(String name);
+
+}
@@ -0,0 +1,9 @@
+package mrcode.duckprxy.maven;
+
+public class GreeterDelegate {
+
+    public String greet(final String name) {
+        return "Hello " + name;
+    }
+
+}
@@ -0,0 +1,76 @@
+package mrcode.duckprxy.maven;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.impl.PregeneratedClasses;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+
+public class PregenerateMojoTest extends TestCase {
+
+    @Test
+    public void testGenerate() throws Exception {
+        final File directory = new File(
+                System.getProperty("java.io.tmpdir"),
+                "duckprxy-mojo-" + System.nanoTime());
+        directory.deleteOnExit();
+        final Proxy proxy = new Proxy();
+        proxy.setDelegate(GreeterDelegate.class.getName());
+        proxy.setMainInterface(Greeter.class.getName());
+        new PregenerateMojo(directory, Arrays.asList(proxy), "duckprxy:")
+            .generate(getClass().getClassLoader());
+
+        final Properties index = new Properties();
+        final InputStream in = new FileInputStream(
+                new File(directory, PregeneratedClasses.INDEX_RESOURCE));
+        try {
+            index.load(in);
+        } finally {
+            in.close();
+        }
+        assertEquals(
+                PregeneratedClasses.FORMAT_VERSION,
+                index.remove(PregeneratedClasses.VERSION_KEY));
+        // The proxy class and its factory.
+        assertEquals(2, index.size());
+        for (final String className : index.stringPropertyNames()) {
+            assertTrue(className, className.startsWith("duckprxy:"));
+            final String resource = index.getProperty(className);
+            assertEquals(
+                    PregeneratedClasses.getResourceName(className),
+                    resource);
+            final DataInputStream classFile = new DataInputStream(
+                    new FileInputStream(new File(directory, resource)));
+            try {
+                assertEquals(0xCAFEBABE, classFile.readInt());
+            } finally {
+                classFile.close();
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownDelegate() {
+        final Proxy proxy = new Proxy();
+        proxy.setDelegate("mrcode.duckprxy.maven.Missing");
+        proxy.setMainInterface(Greeter.class.getName());
+        try {
+            new PregenerateMojo(
+                    new File(System.getProperty("java.io.tmpdir")),
+                    Arrays.asList(proxy),
+                    "duckprxy:")
+                .generate(getClass().getClassLoader());
+            fail("Expected MojoExecutionException");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getCause() instanceof ClassNotFoundException);
+        }
+    }
+
+}
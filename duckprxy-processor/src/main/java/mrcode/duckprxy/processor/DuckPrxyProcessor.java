@@ -0,0 +1,130 @@
+package mrcode.duckprxy.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import mrcode.duckprxy.DuckPrxyFor;
+
+/**
+ * Annotation processor generating the duck proxy classes for delegates
+ * annotated with {@link DuckPrxyFor}. The generated classes are plain Java
+ * sources with the semantics of the proxies generated by
+ * {@link mrcode.duckprxy.impl.JavassistDuckPrxy} and are picked up at
+ * runtime by {@link mrcode.duckprxy.impl.GeneratedDuckPrxy}.
+ * <p>
+ * The processor is registered as a service, so it is run by javac
+ * whenever it is on the class path.
+ * 
+ * @author Christian Haselbach
+ */
+@SupportedAnnotationTypes("mrcode.duckprxy.DuckPrxyFor")
+public class DuckPrxyProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(
+            final Set<? extends TypeElement> annotations,
+            final RoundEnvironment roundEnv) {
+        for (final Element element :
+            roundEnv.getElementsAnnotatedWith(DuckPrxyFor.class)) {
+            try {
+                generate(element);
+            } catch (ProxyGenerationException e) {
+                processingEnv.getMessager().printMessage(
+                        e.getKind(),
+                        e.getMessage(),
+                        e.getElement() == null ? element : e.getElement());
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(
+                        Diagnostic.Kind.ERROR,
+                        "Cannot write duck proxy: " + e.getMessage(),
+                        element);
+            }
+        }
+        return true;
+    }
+
+    private void generate(final Element element)
+    throws ProxyGenerationException, IOException {
+        if (!element.getKind().isClass()) {
+            throw new ProxyGenerationException(
+                    "@DuckPrxyFor is only allowed on classes", element);
+        }
+        final TypeElement delegate = (TypeElement) element;
+        final AnnotationMirror duckPrxyFor = getDuckPrxyFor(delegate);
+        TypeElement mainInterface = null;
+        final List<TypeElement> interfaces = new ArrayList<TypeElement>();
+        for (final Map.Entry<? extends ExecutableElement,
+                ? extends AnnotationValue> entry :
+            processingEnv.getElementUtils().getElementValuesWithDefaults(
+                    duckPrxyFor).entrySet()) {
+            final String name = entry.getKey().getSimpleName().toString();
+            if ("value".equals(name)) {
+                mainInterface = asTypeElement(entry.getValue().getValue());
+            } else if ("interfaces".equals(name)) {
+                @SuppressWarnings("unchecked")
+                final List<? extends AnnotationValue> values =
+                    (List<? extends AnnotationValue>) entry.getValue()
+                    .getValue();
+                for (final AnnotationValue value : values) {
+                    interfaces.add(asTypeElement(value.getValue()));
+                }
+            }
+        }
+        final ProxySourceGenerator generator = new ProxySourceGenerator(
+                processingEnv.getElementUtils(),
+                processingEnv.getTypeUtils(),
+                delegate,
+                mainInterface,
+                interfaces);
+        final String source = generator.generate();
+        final JavaFileObject file = processingEnv.getFiler()
+            .createSourceFile(generator.getClassName(), delegate);
+        final Writer writer = file.openWriter();
+        try {
+            writer.write(source);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private AnnotationMirror getDuckPrxyFor(final TypeElement delegate) {
+        final String name = DuckPrxyFor.class.getName();
+        for (final AnnotationMirror mirror :
+            delegate.getAnnotationMirrors()) {
+            final TypeElement type =
+                (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(name)) {
+                return mirror;
+            }
+        }
+        throw new IllegalStateException("Missing @DuckPrxyFor on " + delegate);
+    }
+
+    private static TypeElement asTypeElement(final Object value) {
+        return (TypeElement) ((DeclaredType) (TypeMirror) value).asElement();
+    }
+
+}
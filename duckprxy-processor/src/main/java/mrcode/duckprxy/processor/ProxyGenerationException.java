@@ -0,0 +1,57 @@
+package mrcode.duckprxy.processor;
+
+import javax.lang.model.element.Element;
+import javax.tools.Diagnostic;
+
+/**
+ * Signals that no proxy can be generated for a delegate.
+ * 
+ * @author Christian Haselbach
+ */
+class ProxyGenerationException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Element element;
+
+    private final Diagnostic.Kind kind;
+
+    /**
+     * @param message  The error message.
+     * @param element  The element causing the error.
+     */
+    ProxyGenerationException(final String message, final Element element) {
+        this(message, element, Diagnostic.Kind.ERROR);
+    }
+
+    /**
+     * @param message  The message.
+     * @param element  The element causing the error.
+     * @param kind     How to report the message, e.g.,
+     *                 {@link Diagnostic.Kind#WARNING} if the proxy is left
+     *                 to the runtime implementation.
+     */
+    ProxyGenerationException(
+            final String message,
+            final Element element,
+            final Diagnostic.Kind kind) {
+        super(message);
+        this.element = element;
+        this.kind = kind;
+    }
+
+    /**
+     * @return The element causing the error.
+     */
+    Element getElement() {
+        return element;
+    }
+
+    /**
+     * @return How to report the message.
+     */
+    Diagnostic.Kind getKind() {
+        return kind;
+    }
+
+}
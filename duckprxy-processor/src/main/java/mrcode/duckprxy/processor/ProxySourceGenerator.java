@@ -0,0 +1,771 @@
+package mrcode.duckprxy.processor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import mrcode.duckprxy.DuckArg;
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.SubDelegatePolicy;
+import mrcode.duckprxy.impl.GeneratedDuckPrxy;
+import mrcode.duckprxy.impl.MethodPatterns;
+
+/**
+ * Generates the source of the duck proxy class for a delegate class and
+ * interfaces.
+ * <p>
+ * The delegate methods are resolved like by the runtime implementations:
+ * by name and parameter types, by name without parameters, by the
+ * patterns of {@link DuckMethod}, by the fallback method and finally via
+ * the sub delegate getter, whose declared return type is used to resolve
+ * the method on the sub delegate. The arguments are filled as defined by
+ * {@link DuckArg}, exactly like {@code JavassistDuckPrxy.getDelegateCall}
+ * does.
+ * <p>
+ * Like {@code JavassistDuckPrxy}, the generated class reads the sub
+ * delegates with the {@link SubDelegatePolicy#STATIC} policy once, in its
+ * constructor, and the others on every invocation. A null sub delegate
+ * fails the invocation like a method without delegate method. With the
+ * {@link SubDelegatePolicy#DYNAMIC} policy, the sub delegate may be of a
+ * subclass of the declared type with other methods, so such a getter
+ * must return a final class; otherwise no class is generated and the
+ * proxies are created by the runtime implementation.
+ *
+ * @author Christian Haselbach
+ */
+class ProxySourceGenerator {
+
+    /**
+     * Method missing body simulates the behavior of throwing
+     * NoSuchMethodExcpetion in an invocation handler.
+     */
+    private static final String METHOD_MISSING_BODY =
+        "throw new java.lang.reflect.UndeclaredThrowableException(" +
+        "new java.lang.reflect.InvocationTargetException(" +
+        "new NoSuchMethodException()));";
+
+    private static final String INDENT = "    ";
+
+    /**
+     * Prefix of the names of the fields holding the sub delegates with the
+     * {@link SubDelegatePolicy#STATIC} policy, followed by their depth.
+     */
+    private static final String SUB_DELEGATE_FIELD_PREFIX = "subDelegate";
+
+    private final Elements elements;
+    private final Types types;
+    private final TypeElement delegate;
+    private final TypeElement mainInterface;
+    private final List<TypeElement> interfaces;
+    private final String className;
+    private final String packageName;
+    private final String simpleClassName;
+
+    /**
+     * Whether a generated method needs the sneaky throw helper.
+     */
+    private boolean sneakyThrowUsed;
+
+    /**
+     * The getters of the sub delegates held in fields, see
+     * {@link #getStaticSubDelegatePath()}.
+     */
+    private List<ExecutableElement> staticSubDelegatePath;
+
+    ProxySourceGenerator(
+            final Elements elements,
+            final Types types,
+            final TypeElement delegate,
+            final TypeElement mainInterface,
+            final List<TypeElement> interfaces) {
+        this.elements = elements;
+        this.types = types;
+        this.delegate = delegate;
+        this.mainInterface = mainInterface;
+        this.interfaces = interfaces;
+        final String[] interfaceNames = new String[interfaces.size()];
+        for (int i=0; i<interfaceNames.length; i++) {
+            interfaceNames[i] = binaryName(interfaces.get(i));
+        }
+        this.className = GeneratedDuckPrxy.getGeneratedClassName(
+                binaryName(delegate),
+                binaryName(mainInterface),
+                interfaceNames);
+        this.packageName =
+            elements.getPackageOf(delegate).getQualifiedName().toString();
+        this.simpleClassName = packageName.length() == 0 ?
+                className :
+                className.substring(packageName.length() + 1);
+    }
+
+    /**
+     * @return The binary name of the generated class.
+     */
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return The source of the generated class.
+     * @throws ProxyGenerationException  If the delegate or the interfaces
+     *                                   are not suitable for a generated
+     *                                   proxy.
+     */
+    String generate() throws ProxyGenerationException {
+        check();
+        final List<TypeElement> allInterfaces = new ArrayList<TypeElement>();
+        allInterfaces.add(mainInterface);
+        allInterfaces.addAll(interfaces);
+        final String delegateType = typeName(delegate.asType());
+        staticSubDelegatePath = getStaticSubDelegatePath();
+
+        final StringBuilder methods = new StringBuilder();
+        for (final ExecutableElement method :
+            getInterfaceMethods(allInterfaces)) {
+            appendMethod(methods, method);
+        }
+
+        final StringBuilder src = new StringBuilder();
+        if (packageName.length() > 0) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        src.append("@javax.annotation.processing.Generated(\"")
+        .append(DuckPrxyProcessor.class.getName()).append("\")\n")
+        .append("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n")
+        .append("public final class ").append(simpleClassName)
+        .append("\nimplements ");
+        for (int i=0; i<allInterfaces.size(); i++) {
+            if (i > 0) {
+                src.append(", ");
+            }
+            src.append(typeName(allInterfaces.get(i).asType()));
+        }
+        src.append(" {\n\n")
+        .append(INDENT).append("private final ").append(delegateType)
+        .append(" delegate;\n");
+        for (int i = 0; i < staticSubDelegatePath.size(); i++) {
+            src.append(INDENT).append("private final ")
+            .append(typeName(staticSubDelegatePath.get(i).getReturnType()))
+            .append(" ").append(SUB_DELEGATE_FIELD_PREFIX).append(i + 1)
+            .append(";\n");
+        }
+        src.append("\n")
+        .append(INDENT).append("public ").append(simpleClassName)
+        .append("(final ").append(delegateType).append(" delegate) {\n")
+        .append(INDENT).append(INDENT)
+        .append("this.delegate = delegate;\n");
+        for (int i = 0; i < staticSubDelegatePath.size(); i++) {
+            final String getterCall =
+                staticSubDelegatePath.get(i).getSimpleName() + "()";
+            src.append(INDENT).append(INDENT).append("this.")
+            .append(SUB_DELEGATE_FIELD_PREFIX).append(i + 1).append(" = ");
+            if (i == 0) {
+                src.append("delegate.").append(getterCall);
+            } else {
+                final String parent = SUB_DELEGATE_FIELD_PREFIX + i;
+                src.append(parent).append(" == null ? null : ")
+                .append(parent).append(".").append(getterCall);
+            }
+            src.append(";\n");
+        }
+        src.append(INDENT).append("}\n\n")
+        .append(methods);
+        if (sneakyThrowUsed) {
+            src.append(INDENT)
+            .append("private static <E extends Throwable> E sneakyThrow(")
+            .append("final Throwable e)\n")
+            .append(INDENT).append("throws E {\n")
+            .append(INDENT).append(INDENT).append("throw (E) e;\n")
+            .append(INDENT).append("}\n\n");
+        }
+        final String mainType = typeName(mainInterface.asType());
+        src.append(INDENT).append("public static final class Factory\n")
+        .append(INDENT).append("implements mrcode.duckprxy.ProxyFactory<")
+        .append(mainType).append("> {\n")
+        .append(INDENT).append(INDENT).append("public ").append(mainType)
+        .append(" create(final Object delegate) {\n")
+        .append(INDENT).append(INDENT).append(INDENT)
+        .append("return new ").append(simpleClassName).append("((")
+        .append(delegateType).append(") delegate);\n")
+        .append(INDENT).append(INDENT).append("}\n")
+        .append(INDENT).append("}\n\n")
+        .append("}\n");
+        return src.toString();
+    }
+
+    private void check() throws ProxyGenerationException {
+        if (delegate.getNestingKind() == NestingKind.LOCAL ||
+                delegate.getNestingKind() == NestingKind.ANONYMOUS ||
+                delegate.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new ProxyGenerationException(
+                    "Duck delegate " + delegate +
+                    " must not be local, anonymous or private",
+                    delegate);
+        }
+        final List<TypeElement> allInterfaces = new ArrayList<TypeElement>();
+        allInterfaces.add(mainInterface);
+        allInterfaces.addAll(interfaces);
+        for (final TypeElement iface : allInterfaces) {
+            if (iface.getKind() != ElementKind.INTERFACE) {
+                throw new ProxyGenerationException(
+                        iface + " is not an interface", delegate);
+            }
+            if (!iface.getModifiers().contains(Modifier.PUBLIC) &&
+                    !elements.getPackageOf(iface).equals(
+                            elements.getPackageOf(delegate))) {
+                throw new ProxyGenerationException(
+                        iface + " is not accessible from the package of " +
+                        delegate,
+                        delegate);
+            }
+        }
+    }
+
+    /**
+     * @return The methods to implement, one per signature.
+     */
+    private List<ExecutableElement> getInterfaceMethods(
+            final List<TypeElement> allInterfaces) {
+        final Map<String, ExecutableElement> methods =
+            new LinkedHashMap<String, ExecutableElement>();
+        for (final TypeElement iface : allInterfaces) {
+            for (final ExecutableElement method :
+                ElementFilter.methodsIn(elements.getAllMembers(iface))) {
+                final TypeElement declaring =
+                    (TypeElement) method.getEnclosingElement();
+                if (method.getModifiers().contains(Modifier.STATIC) ||
+                        method.getModifiers().contains(Modifier.PRIVATE) ||
+                        declaring.getQualifiedName().contentEquals(
+                                "java.lang.Object")) {
+                    continue;
+                }
+                final String signature = signature(method);
+                final ExecutableElement existing = methods.get(signature);
+                if (existing == null || types.isSubtype(
+                        types.erasure(method.getReturnType()),
+                        types.erasure(existing.getReturnType()))) {
+                    methods.put(signature, method);
+                }
+            }
+        }
+        return new ArrayList<ExecutableElement>(methods.values());
+    }
+
+    private void appendMethod(
+            final StringBuilder src,
+            final ExecutableElement method)
+    throws ProxyGenerationException {
+        final String name = method.getSimpleName().toString();
+        final List<TypeMirror> parameterTypes = new ArrayList<TypeMirror>();
+        for (final VariableElement parameter : method.getParameters()) {
+            parameterTypes.add(types.erasure(parameter.asType()));
+        }
+        final TypeMirror returnType = types.erasure(method.getReturnType());
+        src.append(INDENT).append("@Override\n")
+        .append(INDENT).append("public ").append(returnType).append(" ")
+        .append(name).append("(");
+        for (int i=0; i<parameterTypes.size(); i++) {
+            if (i > 0) {
+                src.append(", ");
+            }
+            src.append("final ").append(parameterTypes.get(i))
+            .append(" arg").append(i);
+        }
+        src.append(")");
+        if (!method.getThrownTypes().isEmpty()) {
+            src.append("\n").append(INDENT).append("throws ");
+            for (int i=0; i<method.getThrownTypes().size(); i++) {
+                if (i > 0) {
+                    src.append(", ");
+                }
+                src.append(typeName(method.getThrownTypes().get(i)));
+            }
+        }
+        src.append(" {\n");
+
+        final List<ExecutableElement> path =
+            new ArrayList<ExecutableElement>();
+        final ExecutableElement delegateMethod = getMethodDelegate(
+                delegate, name, parameterTypes, path);
+        checkSubDelegates(path);
+        final List<String> statements = new ArrayList<String>();
+        if (delegateMethod == null) {
+            statements.add(METHOD_MISSING_BODY);
+        } else {
+            final String target = appendSubDelegates(statements, path);
+            final String delegateCall = target + "." + getDelegateCall(
+                    name, delegateMethod, parameterTypes);
+            final TypeMirror delegateReturnType =
+                types.erasure(delegateMethod.getReturnType());
+            if (returnType.getKind() == TypeKind.VOID) {
+                statements.add(delegateCall + ";");
+            } else if (delegateReturnType.getKind() == TypeKind.VOID) {
+                statements.add(delegateCall + ";");
+                statements.add(
+                        "return " + defaultValue(returnType) + ";");
+            } else if (types.isAssignable(delegateReturnType, returnType)) {
+                statements.add("return " + delegateCall + ";");
+            } else {
+                statements.add("return (" + returnType + ") " +
+                        delegateCall + ";");
+            }
+            path.add(delegateMethod);
+        }
+        if (throwsUndeclared(path, method)) {
+            sneakyThrowUsed = true;
+            src.append(INDENT).append(INDENT).append("try {\n");
+            appendStatements(src, statements, 3);
+            src.append(INDENT).append(INDENT)
+            .append("} catch (final Throwable e) {\n")
+            .append(INDENT).append(INDENT).append(INDENT)
+            .append("throw ").append(simpleClassName)
+            .append(".<RuntimeException>sneakyThrow(e);\n")
+            .append(INDENT).append(INDENT).append("}\n");
+        } else {
+            appendStatements(src, statements, 2);
+        }
+        src.append(INDENT).append("}\n\n");
+    }
+
+    /**
+     * Adds the statements reading the sub delegates of the path that are
+     * not held in fields, each followed by a null check that fails the
+     * invocation like a method without delegate method.
+     * @return The expression of the object to call the delegate method on.
+     */
+    private String appendSubDelegates(
+            final List<String> statements,
+            final List<ExecutableElement> path) {
+        int held = 0;
+        while (held < path.size() && held < staticSubDelegatePath.size() &&
+                path.get(held).equals(staticSubDelegatePath.get(held))) {
+            held++;
+        }
+        String target = "delegate";
+        if (held > 0) {
+            target = SUB_DELEGATE_FIELD_PREFIX + held;
+            statements.add(nullCheck(target));
+        }
+        for (int i = held; i < path.size(); i++) {
+            final ExecutableElement getter = path.get(i);
+            final TypeMirror type = types.erasure(getter.getReturnType());
+            final String subDelegate = "sub" + (i + 1);
+            statements.add("final " + type + " " + subDelegate + " = " +
+                    target + "." + getter.getSimpleName() + "();");
+            statements.add(nullCheck(subDelegate));
+            target = subDelegate;
+        }
+        return target;
+    }
+
+    /**
+     * Checks that the methods of the sub delegates read by the getters
+     * with the {@link SubDelegatePolicy#DYNAMIC} policy are known at
+     * compile time, i.e., that the getters return final classes.
+     */
+    private void checkSubDelegates(final List<ExecutableElement> path)
+    throws ProxyGenerationException {
+        for (final ExecutableElement getter : path) {
+            if (getter.getAnnotation(DuckMethod.class).policy() ==
+                    SubDelegatePolicy.DYNAMIC &&
+                    !types.asElement(getter.getReturnType()).getModifiers()
+                    .contains(Modifier.FINAL)) {
+                throw new ProxyGenerationException(
+                        "Sub delegate getter with the DYNAMIC policy does " +
+                        "not return a final class, so the duck proxy for " +
+                        delegate + " is left to the runtime implementation",
+                        getter,
+                        Diagnostic.Kind.WARNING);
+            }
+        }
+    }
+
+    private static String nullCheck(final String subDelegate) {
+        return "if (" + subDelegate + " == null) { " +
+            METHOD_MISSING_BODY + " }";
+    }
+
+    /**
+     * @return The getters of the sub delegates that are read once, by the
+     *         constructor, i.e., the getters with the
+     *         {@link SubDelegatePolicy#STATIC} policy that are reached
+     *         from the delegate via such getters only, like
+     *         {@code JavassistDuckPrxy} holds them. The path ends before a
+     *         getter leading back to a class on the path and before a
+     *         getter throwing checked exceptions, which are read on every
+     *         invocation instead.
+     */
+    private List<ExecutableElement> getStaticSubDelegatePath() {
+        final List<ExecutableElement> path =
+            new ArrayList<ExecutableElement>();
+        final List<TypeElement> visited = new ArrayList<TypeElement>();
+        visited.add(delegate);
+        ExecutableElement getter = getSubDelegateGetter(delegate);
+        while (getter != null &&
+                getter.getAnnotation(DuckMethod.class).policy() ==
+                    SubDelegatePolicy.STATIC &&
+                getter.getThrownTypes().isEmpty()) {
+            final TypeMirror type = types.erasure(getter.getReturnType());
+            if (type.getKind() != TypeKind.DECLARED) {
+                break;
+            }
+            final TypeElement subDelegateType =
+                (TypeElement) types.asElement(type);
+            if (visited.contains(subDelegateType)) {
+                break;
+            }
+            visited.add(subDelegateType);
+            path.add(getter);
+            getter = getSubDelegateGetter(subDelegateType);
+        }
+        return path;
+    }
+
+    /**
+     * @return The sub delegate getter of the type or null if there is
+     *         none, see {@link #getMethodDelegate}.
+     */
+    private ExecutableElement getSubDelegateGetter(final TypeElement type) {
+        ExecutableElement subDelegateGetter = null;
+        for (final ExecutableElement method : getPublicMethods(type)) {
+            final DuckMethod duckMethod =
+                method.getAnnotation(DuckMethod.class);
+            if (duckMethod != null && duckMethod.subdelegate()) {
+                subDelegateGetter = method;
+            }
+        }
+        return subDelegateGetter;
+    }
+
+    private static void appendStatements(
+            final StringBuilder src,
+            final List<String> statements,
+            final int depth) {
+        for (final String statement : statements) {
+            for (int i=0; i<depth; i++) {
+                src.append(INDENT);
+            }
+            src.append(statement).append("\n");
+        }
+    }
+
+    /**
+     * Resolves the delegate method, adding the sub delegate getters needed
+     * to reach it to the path.
+     * @return The delegate method or null if there is none.
+     */
+    private ExecutableElement getMethodDelegate(
+            final TypeElement delegateType,
+            final String name,
+            final List<TypeMirror> parameterTypes,
+            final List<ExecutableElement> path)
+    throws ProxyGenerationException {
+        final List<ExecutableElement> methods = getPublicMethods(delegateType);
+        ExecutableElement subDelegateGetter = null;
+        ExecutableElement fallbackMethod = null;
+        ExecutableElement patternMethod = null;
+        int patternIndex = 0;
+        ExecutableElement nameMethod = null;
+        for (final ExecutableElement method : methods) {
+            final String methodName = method.getSimpleName().toString();
+            if (methodName.equals(name)) {
+                if (hasParameterTypes(method, parameterTypes)) {
+                    return method;
+                }
+                if (method.getParameters().isEmpty()) {
+                    nameMethod = method;
+                }
+            }
+            final DuckMethod duckMethod =
+                method.getAnnotation(DuckMethod.class);
+            if (duckMethod != null) {
+                final String[] patterns = duckMethod.value();
+                for (int i = 0; i < patterns.length; i++) {
+                    if (Pattern.matches(patterns[i], name)) {
+                        if (patternMethod == null || comparePatterns(
+                                method, i, patternMethod, patternIndex) < 0) {
+                            patternMethod = method;
+                            patternIndex = i;
+                        }
+                        break;
+                    }
+                }
+                if (duckMethod.fallback()) {
+                    fallbackMethod = method;
+                }
+                if (duckMethod.subdelegate()) {
+                    subDelegateGetter = method;
+                }
+            }
+        }
+        if (nameMethod != null) {
+            return nameMethod;
+        }
+        if (patternMethod != null) {
+            return patternMethod;
+        }
+        if (fallbackMethod != null) {
+            return fallbackMethod;
+        }
+        if (subDelegateGetter == null) {
+            return null;
+        }
+        if (path.contains(subDelegateGetter)) {
+            throw new ProxyGenerationException(
+                    "Cyclic sub delegates in " + delegate,
+                    subDelegateGetter);
+        }
+        final TypeMirror subDelegateType =
+            types.erasure(subDelegateGetter.getReturnType());
+        if (subDelegateType.getKind() != TypeKind.DECLARED) {
+            throw new ProxyGenerationException(
+                    "Sub delegate getter must return an object",
+                    subDelegateGetter);
+        }
+        path.add(subDelegateGetter);
+        return getMethodDelegate(
+                (TypeElement) types.asElement(subDelegateType),
+                name,
+                parameterTypes,
+                path);
+    }
+
+    private List<ExecutableElement> getPublicMethods(final TypeElement type) {
+        final List<ExecutableElement> methods =
+            new ArrayList<ExecutableElement>();
+        for (final ExecutableElement method :
+            ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            if (method.getModifiers().contains(Modifier.PUBLIC)) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    private boolean hasParameterTypes(
+            final ExecutableElement method,
+            final List<TypeMirror> parameterTypes) {
+        final List<? extends VariableElement> parameters =
+            method.getParameters();
+        if (parameters.size() != parameterTypes.size()) {
+            return false;
+        }
+        for (int i=0; i<parameters.size(); i++) {
+            if (!types.isSameType(
+                    types.erasure(parameters.get(i).asType()),
+                    parameterTypes.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The call of the delegate method, with the arguments filled
+     *         as defined by their {@link DuckArg} annotations.
+     */
+    private String getDelegateCall(
+            final String name,
+            final ExecutableElement delegateMethod,
+            final List<TypeMirror> parameterTypes) {
+        final int argsLen = parameterTypes.size();
+        int argIndex = 0;
+        final StringBuilder delegateArgs =
+            new StringBuilder().append(delegateMethod.getSimpleName())
+            .append("(");
+        final List<? extends VariableElement> parameters =
+            delegateMethod.getParameters();
+        for (int paramIndex = 0; paramIndex < parameters.size();
+                paramIndex++) {
+            if (paramIndex > 0) {
+                delegateArgs.append(", ");
+            }
+            final VariableElement parameter = parameters.get(paramIndex);
+            final TypeMirror type = types.erasure(parameter.asType());
+            final DuckArg duckArg = parameter.getAnnotation(DuckArg.class);
+            if (duckArg == null) {
+                if (argIndex < argsLen) {
+                    delegateArgs.append(argument(
+                            argIndex, type, parameterTypes));
+                    argIndex++;
+                } else {
+                    delegateArgs.append(defaultValue(type));
+                }
+            } else {
+                switch (duckArg.value()) {
+                    case NULL:
+                        delegateArgs.append(defaultValue(type));
+                        break;
+                    case NAME:
+                        delegateArgs.append("\"").append(name).append("\"");
+                        break;
+                    case ARGS:
+                        delegateArgs.append("new Object[] {");
+                        for (int i = 0; i < argsLen; i++) {
+                            if (i > 0) {
+                                delegateArgs.append(", ");
+                            }
+                            delegateArgs.append("arg").append(i);
+                        }
+                        delegateArgs.append("}");
+                        break;
+                    case ARGN:
+                        delegateArgs.append(duckArg.pos() < argsLen ?
+                                argument(duckArg.pos(), type, parameterTypes) :
+                                defaultValue(type));
+                        break;
+                    case GROUP:
+                        final DuckMethod duckMethod =
+                            delegateMethod.getAnnotation(DuckMethod.class);
+                        final String group = duckMethod == null ?
+                                null :
+                                MethodPatterns.getGroup(
+                                        duckMethod.value(),
+                                        name,
+                                        duckArg.pos());
+                        delegateArgs.append(group == null ?
+                                defaultValue(type) :
+                                "\"" + group + "\"");
+                        break;
+                }
+            }
+        }
+        delegateArgs.append(")");
+        return delegateArgs.toString();
+    }
+
+    /**
+     * Orders matching patterns like the runtime does: by descending
+     * priority, then by method name, number of parameters and pattern
+     * index.
+     * @return A negative value iff the first pattern takes precedence.
+     */
+    private static int comparePatterns(
+            final ExecutableElement method1,
+            final int index1,
+            final ExecutableElement method2,
+            final int index2) {
+        final int priority1 =
+            method1.getAnnotation(DuckMethod.class).priority();
+        final int priority2 =
+            method2.getAnnotation(DuckMethod.class).priority();
+        if (priority1 != priority2) {
+            return priority1 > priority2 ? -1 : 1;
+        }
+        final int byName = method1.getSimpleName().toString().compareTo(
+                method2.getSimpleName().toString());
+        if (byName != 0) {
+            return byName;
+        }
+        final int byCount =
+            method1.getParameters().size() - method2.getParameters().size();
+        if (byCount != 0) {
+            return byCount;
+        }
+        return index1 - index2;
+    }
+
+    /**
+     * @return The argument at the index, cast to the type if necessary.
+     */
+    private String argument(
+            final int index,
+            final TypeMirror type,
+            final List<TypeMirror> parameterTypes) {
+        if (types.isAssignable(parameterTypes.get(index), type)) {
+            return "arg" + index;
+        }
+        return "(" + type + ") arg" + index;
+    }
+
+    /**
+     * @return The value of a missing argument or return value of the type.
+     */
+    private static String defaultValue(final TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case BYTE:
+                return "(byte) 0";
+            case SHORT:
+                return "(short) 0";
+            case CHAR:
+                return "(char) 0";
+            case INT:
+                return "0";
+            case LONG:
+                return "0L";
+            case FLOAT:
+                return "0.0f";
+            case DOUBLE:
+                return "0.0d";
+            default:
+                return "null";
+        }
+    }
+
+    /**
+     * @return true iff a method on the path throws a checked exception
+     *         the interface method does not declare.
+     */
+    private boolean throwsUndeclared(
+            final List<ExecutableElement> path,
+            final ExecutableElement method) {
+        final TypeMirror runtimeException = elements.getTypeElement(
+                RuntimeException.class.getName()).asType();
+        final TypeMirror error =
+            elements.getTypeElement(Error.class.getName()).asType();
+        for (final ExecutableElement called : path) {
+            for (final TypeMirror thrown : called.getThrownTypes()) {
+                if (types.isSubtype(thrown, runtimeException) ||
+                        types.isSubtype(thrown, error)) {
+                    continue;
+                }
+                boolean declared = false;
+                for (final TypeMirror declaredType : method.getThrownTypes()) {
+                    if (types.isSubtype(thrown, declaredType)) {
+                        declared = true;
+                        break;
+                    }
+                }
+                if (!declared) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String signature(final ExecutableElement method) {
+        final StringBuilder signature =
+            new StringBuilder(method.getSimpleName()).append("(");
+        for (final VariableElement parameter : method.getParameters()) {
+            signature.append(types.erasure(parameter.asType())).append(",");
+        }
+        return signature.append(")").toString();
+    }
+
+    private String typeName(final TypeMirror type) {
+        return types.erasure(type).toString();
+    }
+
+    private String binaryName(final TypeElement type) {
+        return elements.getBinaryName(type).toString();
+    }
+
+}
@@ -0,0 +1,12 @@
+package mrcode.duckprxy.processor;
+
+public interface Calculator {
+
+    int add(int x, int y);
+    int answer(int x);
+    int negate(int x);
+    String describe(int x, String s);
+    int multiply(int x, int y);
+    void reset();
+
+}
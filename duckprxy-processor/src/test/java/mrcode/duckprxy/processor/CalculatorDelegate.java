@@ -0,0 +1,44 @@
+package mrcode.duckprxy.processor;
+
+import java.util.Arrays;
+
+import mrcode.duckprxy.DuckArg;
+import mrcode.duckprxy.DuckArgType;
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.DuckPrxyFor;
+
+@DuckPrxyFor(value = Calculator.class, interfaces = Named.class)
+public class CalculatorDelegate {
+
+    private final SubCalculator subCalculator = new SubCalculator();
+
+    public int add(final int x, final int y) {
+        return x + y;
+    }
+
+    public int answer() {
+        return 42;
+    }
+
+    @DuckMethod("neg.*")
+    public int negation(
+            @DuckArg(DuckArgType.NAME) final String name,
+            @DuckArg(value = DuckArgType.ARGN, pos = 0) final int x) {
+        return "negate".equals(name) ? -x : x;
+    }
+
+    @DuckMethod("describe")
+    public String describeArgs(@DuckArg(DuckArgType.ARGS) final Object[] args) {
+        return Arrays.asList(args).toString();
+    }
+
+    public String getName() {
+        return "calculator";
+    }
+
+    @DuckMethod(subdelegate = true)
+    public SubCalculator getSubCalculator() {
+        return subCalculator;
+    }
+
+}
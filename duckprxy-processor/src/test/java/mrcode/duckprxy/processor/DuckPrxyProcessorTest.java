@@ -0,0 +1,273 @@
+package mrcode.duckprxy.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.DuckPrxy;
+import mrcode.duckprxy.DuckPrxyFor;
+import mrcode.duckprxy.ProxyFactory;
+import mrcode.duckprxy.impl.DuckPrxyImpl;
+import mrcode.duckprxy.impl.GeneratedDuckPrxy;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+
+import org.junit.Test;
+
+public class DuckPrxyProcessorTest extends TestCase {
+
+    @Test
+    public void testGeneratedClassIsUsed() {
+        final Calculator calculator = new GeneratedDuckPrxy().makeProxy(
+                Calculator.class, new CalculatorDelegate(), Named.class);
+        assertEquals(
+                GeneratedDuckPrxy.getGeneratedClassName(
+                        CalculatorDelegate.class.getName(),
+                        Calculator.class.getName(),
+                        Named.class.getName()),
+                calculator.getClass().getName());
+    }
+
+    /**
+     * The class generated for {@link Named} is not used for an interface
+     * with the same simple name from another package.
+     */
+    @Test
+    public void testSameSimpleNameIsNotGenerated() {
+        final mrcode.duckprxy.processor.other.Named named =
+            new GeneratedDuckPrxy().makeProxy(
+                    mrcode.duckprxy.processor.other.Named.class,
+                    new FallbackDelegate());
+        assertEquals("fallback:getName", named.getName());
+        assertFalse(named.getClass().getName().equals(
+                GeneratedDuckPrxy.getGeneratedClassName(
+                        FallbackDelegate.class.getName(),
+                        Named.class.getName())));
+    }
+
+    @Test
+    public void testGeneratedPrxy() {
+        testCalculator(new GeneratedDuckPrxy());
+    }
+
+    @Test
+    public void testJavassistPrxy() {
+        testCalculator(new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":"));
+    }
+
+    @Test
+    public void testGeneratedFactory() {
+        final ProxyFactory<Named> factory = new GeneratedDuckPrxy()
+            .getProxyFactory(Named.class, FallbackDelegate.class);
+        assertEquals(
+                "fallback:getName",
+                factory.create(new FallbackDelegate()).getName());
+    }
+
+    @Test
+    public void testPatternPriority() {
+        final Named generated = new GeneratedDuckPrxy().makeProxy(
+                Named.class, new PatternDelegate());
+        assertFalse(generated.getClass().getName().startsWith("duckprxy:"));
+        assertEquals("name", generated.getName());
+        assertEquals("name", new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":")
+            .makeProxy(Named.class, new PatternDelegate()).getName());
+    }
+
+    @Test
+    public void testGroupArgument() {
+        final Named generated = new GeneratedDuckPrxy().makeProxy(
+                Named.class, new GroupDelegate());
+        assertFalse(generated.getClass().getName().startsWith("duckprxy:"));
+        assertEquals("property:Name", generated.getName());
+    }
+
+    @Test
+    public void testUndeclaredCheckedException() {
+        final Loader loader = new GeneratedDuckPrxy().makeProxy(
+                Loader.class, new LoaderDelegate());
+        try {
+            loader.load("foo");
+            fail("Expected IOException");
+        } catch (Exception e) {
+            assertTrue(e instanceof IOException);
+            assertEquals("foo", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testFallbackWithoutGeneratedClass() {
+        final Named named = new GeneratedDuckPrxy().makeProxy(
+                Named.class, new CalculatorDelegate());
+        assertTrue(named.getClass().getName().startsWith("duckprxy:"));
+        assertEquals("calculator", named.getName());
+    }
+
+    @Test
+    public void testNoInterface() throws Exception {
+        final String source =
+            "@mrcode.duckprxy.DuckPrxyFor(String.class)\n" +
+            "public class Broken {}\n";
+        final DiagnosticCollector<JavaFileObject> diagnostics =
+            new DiagnosticCollector<JavaFileObject>();
+        assertFalse(compile("Broken", source, diagnostics));
+        boolean found = false;
+        for (final Diagnostic<? extends JavaFileObject> diagnostic :
+            diagnostics.getDiagnostics()) {
+            found |= diagnostic.getKind() == Diagnostic.Kind.ERROR &&
+                diagnostic.getMessage(null).contains("is not an interface");
+        }
+        assertTrue(diagnostics.getDiagnostics().toString(), found);
+    }
+
+    @Test
+    public void testStaticSubDelegate() {
+        final StaticSubDelegate delegate =
+            new StaticSubDelegate(new NameHolder("static"));
+        final Named named =
+            new GeneratedDuckPrxy().makeProxy(Named.class, delegate);
+        assertGenerated(StaticSubDelegate.class, named);
+        delegate.setHolder(new NameHolder("replaced"));
+        assertEquals("static", named.getName());
+        assertMethodMissing(new GeneratedDuckPrxy().makeProxy(
+                Named.class, new StaticSubDelegate(null)));
+    }
+
+    @Test
+    public void testDynamicSubDelegate() {
+        final DynamicSubDelegate delegate = new DynamicSubDelegate(null);
+        final Named named =
+            new GeneratedDuckPrxy().makeProxy(Named.class, delegate);
+        assertGenerated(DynamicSubDelegate.class, named);
+        assertMethodMissing(named);
+        delegate.setHolder(new NameHolder("dynamic"));
+        assertEquals("dynamic", named.getName());
+    }
+
+    /**
+     * The methods of a sub delegate whose class is only known at runtime
+     * cannot be generated, so the proxy is left to the fallback.
+     */
+    @Test
+    public void testDynamicSubDelegateOfNonFinalClass() throws Exception {
+        final Named named = new GeneratedDuckPrxy(new DuckPrxyImpl())
+            .makeProxy(
+                    Named.class,
+                    new RuntimeSubDelegate(new NameHolder("runtime")));
+        assertFalse(named.getClass().getName().equals(
+                GeneratedDuckPrxy.getGeneratedClassName(
+                        RuntimeSubDelegate.class.getName(),
+                        Named.class.getName())));
+        assertEquals("runtime", named.getName());
+
+        final String source =
+            "@mrcode.duckprxy.DuckPrxyFor(Runnable.class)\n" +
+            "public class Runtime {\n" +
+            "    @mrcode.duckprxy.DuckMethod(subdelegate = true)\n" +
+            "    public Object getTarget() {\n" +
+            "        return null;\n" +
+            "    }\n" +
+            "}\n";
+        final DiagnosticCollector<JavaFileObject> diagnostics =
+            new DiagnosticCollector<JavaFileObject>();
+        assertTrue(compile("Runtime", source, diagnostics));
+        boolean found = false;
+        for (final Diagnostic<? extends JavaFileObject> diagnostic :
+            diagnostics.getDiagnostics()) {
+            found |= diagnostic.getKind() == Diagnostic.Kind.WARNING &&
+                diagnostic.getMessage(null).contains("DYNAMIC policy");
+        }
+        assertTrue(diagnostics.getDiagnostics().toString(), found);
+    }
+
+    public void testCalculator(final DuckPrxy duckPrxy) {
+        final Calculator calculator = duckPrxy.makeProxy(
+                Calculator.class, new CalculatorDelegate(), Named.class);
+        assertEquals(5, calculator.add(2, 3));
+        assertEquals(42, calculator.answer(7));
+        assertEquals(-4, calculator.negate(4));
+        assertEquals("[1, x]", calculator.describe(1, "x"));
+        assertEquals(12, calculator.multiply(3, 4));
+        assertEquals("calculator", ((Named) calculator).getName());
+        try {
+            calculator.reset();
+            fail("Expected UndeclaredThrowableException");
+        } catch (UndeclaredThrowableException e) {
+            assertTrue(e.getCause() instanceof InvocationTargetException);
+            assertTrue(e.getCause().getCause() instanceof
+                    NoSuchMethodException);
+        }
+    }
+
+    private static void assertGenerated(
+            final Class<?> delegateClass,
+            final Named named) {
+        assertEquals(
+                GeneratedDuckPrxy.getGeneratedClassName(
+                        delegateClass.getName(), Named.class.getName()),
+                named.getClass().getName());
+    }
+
+    private static void assertMethodMissing(final Named named) {
+        try {
+            named.getName();
+            fail("Expected UndeclaredThrowableException");
+        } catch (UndeclaredThrowableException e) {
+            assertTrue(e.getCause() instanceof InvocationTargetException);
+            assertTrue(e.getCause().getCause() instanceof
+                    NoSuchMethodException);
+        }
+    }
+
+    private static boolean compile(
+            final String className,
+            final String source,
+            final DiagnosticCollector<JavaFileObject> diagnostics)
+    throws IOException, URISyntaxException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final File outputDir = File.createTempFile("duckprxy", "");
+        outputDir.delete();
+        outputDir.mkdirs();
+        final StandardJavaFileManager fileManager =
+            compiler.getStandardFileManager(diagnostics, null, null);
+        final JavaFileObject file = new SimpleJavaFileObject(
+                new File(className + ".java").toURI(),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(
+                    final boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        final String classPath = new File(DuckPrxyFor.class
+                .getProtectionDomain().getCodeSource().getLocation().toURI())
+            .getPath();
+        final JavaCompiler.CompilationTask task = compiler.getTask(
+                null,
+                fileManager,
+                diagnostics,
+                Arrays.asList(
+                        "-classpath", classPath,
+                        "-d", outputDir.getPath(),
+                        "-proc:only"),
+                null,
+                Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new DuckPrxyProcessor()));
+        return task.call();
+    }
+
+}
@@ -0,0 +1,24 @@
+package mrcode.duckprxy.processor;
+
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.DuckPrxyFor;
+
+@DuckPrxyFor(Named.class)
+public class DynamicSubDelegate {
+
+    private NameHolder holder;
+
+    public DynamicSubDelegate(final NameHolder holder) {
+        this.holder = holder;
+    }
+
+    @DuckMethod(subdelegate = true)
+    public NameHolder getHolder() {
+        return holder;
+    }
+
+    public void setHolder(final NameHolder holder) {
+        this.holder = holder;
+    }
+
+}
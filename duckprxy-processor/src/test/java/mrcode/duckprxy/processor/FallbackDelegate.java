@@ -0,0 +1,16 @@
+package mrcode.duckprxy.processor;
+
+import mrcode.duckprxy.DuckArg;
+import mrcode.duckprxy.DuckArgType;
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.DuckPrxyFor;
+
+@DuckPrxyFor(Named.class)
+public class FallbackDelegate {
+
+    @DuckMethod(fallback = true)
+    public String fallback(@DuckArg(DuckArgType.NAME) final String name) {
+        return "fallback:" + name;
+    }
+
+}
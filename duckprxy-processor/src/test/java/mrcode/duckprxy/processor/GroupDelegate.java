@@ -0,0 +1,17 @@
+package mrcode.duckprxy.processor;
+
+import mrcode.duckprxy.DuckArg;
+import mrcode.duckprxy.DuckArgType;
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.DuckPrxyFor;
+
+@DuckPrxyFor(Named.class)
+public class GroupDelegate {
+
+    @DuckMethod("get(.*)")
+    public String property(
+            @DuckArg(value = DuckArgType.GROUP, pos = 1) final String name) {
+        return "property:" + name;
+    }
+
+}
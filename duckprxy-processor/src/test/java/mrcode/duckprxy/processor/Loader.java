@@ -0,0 +1,7 @@
+package mrcode.duckprxy.processor;
+
+public interface Loader {
+
+    String load(String path);
+
+}
@@ -0,0 +1,14 @@
+package mrcode.duckprxy.processor;
+
+import java.io.IOException;
+
+import mrcode.duckprxy.DuckPrxyFor;
+
+@DuckPrxyFor(Loader.class)
+class LoaderDelegate {
+
+    public String load(final String path) throws IOException {
+        throw new IOException(path);
+    }
+
+}
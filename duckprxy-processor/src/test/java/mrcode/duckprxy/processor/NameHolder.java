@@ -0,0 +1,15 @@
+package mrcode.duckprxy.processor;
+
+public final class NameHolder {
+
+    private final String name;
+
+    public NameHolder(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+}
@@ -0,0 +1,24 @@
+package mrcode.duckprxy.processor;
+
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.DuckPrxyFor;
+
+@DuckPrxyFor(Named.class)
+public class PatternDelegate {
+
+    @DuckMethod("get.*")
+    public String getter() {
+        return "getter";
+    }
+
+    @DuckMethod(value = "getName", priority = 1)
+    public String name() {
+        return "name";
+    }
+
+    @DuckMethod(".*Name")
+    public String anyName() {
+        return "anyName";
+    }
+
+}
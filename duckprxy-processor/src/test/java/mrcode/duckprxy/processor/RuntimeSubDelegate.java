@@ -0,0 +1,20 @@
+package mrcode.duckprxy.processor;
+
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.DuckPrxyFor;
+
+@DuckPrxyFor(Named.class)
+public class RuntimeSubDelegate {
+
+    private final Object target;
+
+    public RuntimeSubDelegate(final Object target) {
+        this.target = target;
+    }
+
+    @DuckMethod(subdelegate = true)
+    public Object getTarget() {
+        return target;
+    }
+
+}
@@ -0,0 +1,25 @@
+package mrcode.duckprxy.processor;
+
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.DuckPrxyFor;
+import mrcode.duckprxy.SubDelegatePolicy;
+
+@DuckPrxyFor(Named.class)
+public class StaticSubDelegate {
+
+    private NameHolder holder;
+
+    public StaticSubDelegate(final NameHolder holder) {
+        this.holder = holder;
+    }
+
+    @DuckMethod(subdelegate = true, policy = SubDelegatePolicy.STATIC)
+    public NameHolder getHolder() {
+        return holder;
+    }
+
+    public void setHolder(final NameHolder holder) {
+        this.holder = holder;
+    }
+
+}
@@ -0,0 +1,9 @@
+package mrcode.duckprxy.processor;
+
+public final class SubCalculator {
+
+    public int multiply(final int x, final int y) {
+        return x * y;
+    }
+
+}
@@ -0,0 +1,7 @@
+package mrcode.duckprxy.processor.other;
+
+public interface Named {
+
+    String getName();
+
+}
@@ -0,0 +1,34 @@
+package mrcode.duckprxy;
+
+import java.lang.reflect.Method;
+
+/**
+ * Optional hook to observe the invocations of proxied methods. The
+ * engines that support metrics take an instance in their constructor.
+ * Without one, they do not add any instrumentation at all.
+ * <p>
+ * The hook is asked for the {@link MethodMetrics} of a method once per
+ * delegate class, when the engine builds the dispatch of the method for
+ * that class.
+ * Each invocation then only calls {@link MethodMetrics#invoked()} or,
+ * for timed metrics, {@link MethodMetrics#invoked(long)}.
+ * 
+ * @author Christian Haselbach
+ */
+public interface DispatchMetrics {
+
+    /**
+     * @param delegateClass  The class of the delegates the method is
+     *                       dispatched to.
+     * @param method         The proxied interface method.
+     * @param strategy       How the delegation of the method was resolved
+     *                       for the delegate class.
+     * @return The metrics to record the invocations of the method with.
+     *         Must not be null.
+     */
+    MethodMetrics getMethodMetrics(
+            Class<?> delegateClass,
+            Method method,
+            DispatchStrategy strategy);
+
+}
@@ -0,0 +1,41 @@
+package mrcode.duckprxy;
+
+/**
+ * How the delegation of an invoked method was resolved.
+ * 
+ * @author Christian Haselbach
+ */
+public enum DispatchStrategy {
+
+    /**
+     * The delegate has a method with the same name and signature.
+     */
+    EXACT,
+
+    /**
+     * The delegate has a method with the same name and no parameters.
+     */
+    NAME_ONLY,
+
+    /**
+     * A {@link DuckMethod} pattern of a delegate method matches the name.
+     */
+    PATTERN,
+
+    /**
+     * The {@link DuckMethod#fallback()} method of the delegate is used.
+     */
+    FALLBACK,
+
+    /**
+     * The invocation is forwarded to the sub delegate, see
+     * {@link DuckMethod#subdelegate()}.
+     */
+    SUB_DELEGATE,
+
+    /**
+     * There is no delegation. Invoking the method throws an exception.
+     */
+    MISSING
+
+}
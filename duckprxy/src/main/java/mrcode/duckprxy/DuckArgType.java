@@ -0,0 +1,48 @@
+package mrcode.duckprxy;
+
+public enum DuckArgType {
+    
+    /**
+     * An argument that is to be filled with null.
+     */
+    NULL,
+    
+    /**
+     * An argument that is to be filled with the name of the invoked method.
+     * The argument must accept strings. Otherwise the behavior is
+     * unspecified.
+     */
+    NAME,
+    
+    /**
+     * An argument that is to be filled with the arguments.
+     * The argument must accept Object[]. Otherwise the behavior is
+     * unspecified.
+     */
+    ARGS,
+    
+    /**
+     * An argument that is to be filled with the n-th argument, where
+     * n is defined by the pos value of {@link DuckArg}. n must be
+     * non-negative and smaller than the number of arguments provided by the
+     * call. Otherwise the behavior is unspecified.
+     */
+    ARGN,
+
+    /**
+     * An argument that is to be filled with the n-th capture group of the
+     * first {@link DuckMethod} pattern of the delegate method that matches
+     * the name of the invoked method, where n is defined by the pos value
+     * of {@link DuckArg} (0 being the whole name). The patterns are
+     * matched against the name however the delegate method was selected,
+     * e.g., also if its name equals the name of the invoked method. The
+     * argument is null if none of the patterns matches or if the group did
+     * not participate in the match. The argument must accept strings.
+     * Otherwise the behavior is unspecified.
+     * <p>
+     * The value only depends on the name of the invoked method, so it is
+     * computed once per method and not on every call.
+     */
+    GROUP
+
+}
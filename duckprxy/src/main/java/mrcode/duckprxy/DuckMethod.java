@@ -18,6 +18,13 @@ public @interface DuckMethod {
      * @return An array of patterns to match method names.
      */
     String[] value() default {};
+
+    /**
+     * @return The priority of the patterns. If the patterns of several
+     *         methods match a method name, the method with the highest
+     *         priority is used.
+     */
+    int priority() default 0;
     
     /**
      * @return true iff this method shall be used as a fallback.
@@ -28,5 +35,11 @@ public @interface DuckMethod {
      * @return true iff this method is a getter for a subdelegate.
      */
     boolean subdelegate() default false;
+
+    /**
+     * @return When a sub delegate getter is called. Only relevant if
+     *         {@link #subdelegate()} is true.
+     */
+    SubDelegatePolicy policy() default SubDelegatePolicy.DYNAMIC;
     
 }
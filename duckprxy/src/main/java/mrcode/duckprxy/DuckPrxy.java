@@ -0,0 +1,163 @@
+package mrcode.duckprxy;
+
+import java.lang.reflect.Array;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An interface for a duck typing proxy creator service.
+ * <p>
+ * A duck proxy delegates to its delegate by using the looking for a
+ * method, using the first strategy that yields a result:
+ * <ol>
+ * <li> Search for a method with the same name and signature.
+ * <li> Search for a method with the same name, ignoring the signature.
+ * <li> Looking through the defined name patterns, checking whether a method
+ *      has a matching pattern definition (more on that later). 
+ * </ol>
+ * 
+ * If no method yields a method, the duck proxy checks for a subdelegate
+ * (defined via {@link DuckMethod}). If such a subdelegate is found,
+ * the invocation will be forwarded to the subdelegate.
+ * <p>
+ * Once a method is found, the arguments are constructed to call this method.
+ * Let {@code arg_1,...,arg_n} be the arguments for the call and
+ * {@code par_1,...,par_k} the parameters of the duck delegate method.
+ * A {@code par_i} is filled with a value according to its DuckArg definition
+ * if such a definition exists. Parameter with no such definition are filled
+ * up with the arguments of the call. I.e., if {@code k} parameters
+ * {@code par_j} with {@code j &lt; i} and {@code par_j} duck arg definition
+ * exists, that {@code par_i} is filled with {@code arg_(i-k)}. 
+ * <p>
+ * To give a more practical example: If we want to map call
+ * {@code foo(String s, String t)} to a call {@code bar("foo", s, t)}, we can
+ * do this with the following definition:
+ * <code style="white-space:pre">
+ *   &#64;DuckMethod("foo")
+ *   public void bar(
+ *       &#64;DuckArg(DuckArgType.NAME) String name,
+ *       String s, String t) {
+ *   ...}
+ * </code>
+ * 
+ * @author Christian Haselbach
+ */
+public interface DuckPrxy {
+
+    /**
+     * Creates an object that implements the defined interfaces
+     * delegating to a given object, mainly using duck typing.
+     * @param <T>            The class of the main interface.
+     * @param mainInterface  The main interface that the resulting object
+     *                       shall implement.
+     * @param delegate       The object to delegate the calls to.
+     * @param interfaces     Secondary interfaces to implement.
+     * @return               An object implementing the main interface and
+     *                       secondary interfaces, delegating to the delegate
+     *                       object.
+     */
+    <T> T makeProxy(
+            final Class<T> mainInterface,
+            final Object delegate,
+            final Class<?> ... interfaces);
+
+    /**
+     * Creates a factory for objects that implement the defined interfaces
+     * delegating to objects of a given class. Use a factory instead of
+     * {@link #makeProxy(Class, Object, Class...)} when wrapping many
+     * objects of the same class.
+     * <p>
+     * The default implementation simply calls
+     * {@link #makeProxy(Class, Object, Class...)}.
+     * @param <T>            The class of the main interface.
+     * @param mainInterface  The main interface that the resulting objects
+     *                       shall implement.
+     * @param delegateClass  The class of the objects to delegate the calls
+     *                       to.
+     * @param interfaces     Secondary interfaces to implement.
+     * @return               A factory for objects implementing the main
+     *                       interface and secondary interfaces.
+     */
+    default <T> ProxyFactory<T> getProxyFactory(
+            final Class<T> mainInterface,
+            final Class<?> delegateClass,
+            final Class<?> ... interfaces) {
+        final Class<?>[] interfacesCopy = interfaces.clone();
+        return new ProxyFactory<T>() {
+            public T create(final Object delegate) {
+                return makeProxy(
+                        mainInterface,
+                        delegateClass.cast(delegate),
+                        interfacesCopy);
+            }
+        };
+    }
+
+    /**
+     * Creates a proxy like {@link #makeProxy(Class, Object, Class...)},
+     * which additionally implements {@link Rebindable}, so its delegate
+     * can be replaced by another object of the same class.
+     * <p>
+     * The default implementation throws an
+     * {@link UnsupportedOperationException}.
+     * @param <T>            The class of the main interface.
+     * @param mainInterface  The main interface that the resulting object
+     *                       shall implement.
+     * @param delegate       The object to delegate the calls to initially.
+     * @param interfaces     Secondary interfaces to implement.
+     * @return               An object implementing the main interface,
+     *                       secondary interfaces and {@link Rebindable},
+     *                       delegating to the delegate object.
+     */
+    default <T> T makeRebindableProxy(
+            final Class<T> mainInterface,
+            final Object delegate,
+            final Class<?> ... interfaces) {
+        throw new UnsupportedOperationException(
+                getClass().getName() + " does not support rebindable proxies");
+    }
+
+    /**
+     * Creates proxies for a list of delegates, all implementing the same
+     * interfaces. The factory of each distinct delegate class is looked
+     * up once via {@link #getProxyFactory(Class, Class, Class...)}, so
+     * wrapping many delegates costs little more than a constructor call
+     * per delegate.
+     * @param <T>            The class of the main interface.
+     * @param mainInterface  The main interface that the resulting objects
+     *                       shall implement.
+     * @param delegates      The objects to delegate the calls to.
+     * @param interfaces     Secondary interfaces to implement.
+     * @return               An array of the proxies, where the proxy at
+     *                       index {@code i} delegates to the delegate at
+     *                       index {@code i}.
+     */
+    default <T> T[] makeProxies(
+            final Class<T> mainInterface,
+            final List<?> delegates,
+            final Class<?> ... interfaces) {
+        @SuppressWarnings("unchecked")
+        final T[] proxies =
+            (T[]) Array.newInstance(mainInterface, delegates.size());
+        final Map<Class<?>, ProxyFactory<T>> factories =
+            new IdentityHashMap<Class<?>, ProxyFactory<T>>();
+        Class<?> lastClass = null;
+        ProxyFactory<T> lastFactory = null;
+        int i = 0;
+        for (final Object delegate : delegates) {
+            final Class<?> delegateClass = delegate.getClass();
+            if (delegateClass != lastClass) {
+                lastFactory = factories.get(delegateClass);
+                if (lastFactory == null) {
+                    lastFactory = getProxyFactory(
+                            mainInterface, delegateClass, interfaces);
+                    factories.put(delegateClass, lastFactory);
+                }
+                lastClass = delegateClass;
+            }
+            proxies[i++] = lastFactory.create(delegate);
+        }
+        return proxies;
+    }
+}
@@ -0,0 +1,29 @@
+package mrcode.duckprxy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requests a duck proxy class for a duck delegate to be generated at
+ * compile time by the duckprxy annotation processor. The generated proxy
+ * is picked up by {@link mrcode.duckprxy.impl.GeneratedDuckPrxy}.
+ * 
+ * @author Christian Haselbach
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface DuckPrxyFor {
+
+    /**
+     * @return The main interface the proxy shall implement.
+     */
+    Class<?> value();
+
+    /**
+     * @return Secondary interfaces the proxy shall implement.
+     */
+    Class<?>[] interfaces() default {};
+
+}
@@ -0,0 +1,29 @@
+package mrcode.duckprxy;
+
+/**
+ * Receives the invocations of one proxied method, see
+ * {@link DispatchMetrics}. Implementations must be thread safe and should
+ * not contend, e.g., by using {@link java.util.concurrent.atomic.LongAdder}.
+ * 
+ * @author Christian Haselbach
+ */
+public interface MethodMetrics {
+
+    /**
+     * @return true iff the latency of the invocations shall be measured.
+     *         Queried once, when the method's dispatch is built.
+     */
+    boolean isTimed();
+
+    /**
+     * Records an invocation if the metrics are not timed.
+     */
+    void invoked();
+
+    /**
+     * Records an invocation if the metrics are timed.
+     * @param nanos  The duration of the invocation in nanoseconds.
+     */
+    void invoked(long nanos);
+
+}
@@ -0,0 +1,29 @@
+package mrcode.duckprxy;
+
+/**
+ * A factory for duck proxies of a fixed shape, i.e., for a fixed set of
+ * interfaces and a fixed delegate class. All the lookups needed to
+ * create a proxy are done when the factory is created, so creating
+ * a proxy is (almost) as cheap as a constructor call.
+ * <p>
+ * Factories are obtained via
+ * {@link DuckPrxy#getProxyFactory(Class, Class, Class...)} and are thread
+ * safe.
+ * 
+ * @param <T>  The class of the main interface.
+ * @author Christian Haselbach
+ */
+public interface ProxyFactory<T> {
+
+    /**
+     * Creates a proxy delegating to the given object.
+     * @param delegate  The object to delegate the calls to. It must be an
+     *                  instance of the factory's delegate class.
+     * @return An object implementing the main interface and the secondary
+     *         interfaces of the factory, delegating to the delegate object.
+     * @throws ClassCastException  If the delegate is not an instance of
+     *                             the factory's delegate class.
+     */
+    T create(Object delegate);
+
+}
@@ -0,0 +1,70 @@
+package mrcode.duckprxy;
+
+import java.util.Arrays;
+
+/**
+ * The shape of a proxy, i.e., the class of its delegate, its main
+ * interface and its secondary interfaces, e.g., to name the proxies to
+ * generate up front.
+ * 
+ * @author Christian Haselbach
+ */
+public final class ProxyShape {
+
+    private final Class<?> delegateClass;
+    private final Class<?> mainInterface;
+    private final Class<?>[] interfaces;
+
+    /**
+     * @param delegateClass  The class of the delegates.
+     * @param mainInterface  The main interface of the proxies.
+     * @param interfaces     The secondary interfaces of the proxies.
+     */
+    public ProxyShape(
+            final Class<?> delegateClass,
+            final Class<?> mainInterface,
+            final Class<?>... interfaces) {
+        this.delegateClass = delegateClass;
+        this.mainInterface = mainInterface;
+        this.interfaces = interfaces.clone();
+    }
+
+    public Class<?> getDelegateClass() {
+        return delegateClass;
+    }
+
+    public Class<?> getMainInterface() {
+        return mainInterface;
+    }
+
+    public Class<?>[] getInterfaces() {
+        return interfaces.clone();
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * delegateClass.hashCode() + mainInterface.hashCode()) +
+            Arrays.hashCode(interfaces);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ProxyShape)) {
+            return false;
+        }
+        final ProxyShape other = (ProxyShape) obj;
+        return delegateClass == other.delegateClass &&
+            mainInterface == other.mainInterface &&
+            Arrays.equals(interfaces, other.interfaces);
+    }
+
+    @Override
+    public String toString() {
+        return delegateClass.getName() + " as " + mainInterface.getName() +
+            (interfaces.length == 0 ? "" : " " + Arrays.toString(interfaces));
+    }
+
+}
@@ -0,0 +1,34 @@
+package mrcode.duckprxy;
+
+/**
+ * Implemented by the proxies created via
+ * {@link DuckPrxy#makeRebindableProxy(Class, Object, Class...)}. The
+ * delegate of such a proxy can be replaced, so one proxy instance can be
+ * used as a cursor over a sequence of delegates instead of creating a
+ * proxy per delegate:
+ * <code style="white-space:pre">
+ *   MyInterface prxy = duckPrxy.makeRebindableProxy(
+ *           MyInterface.class, rows.get(0));
+ *   for (Row row : rows) {
+ *       ((Rebindable) prxy).rebind(row);
+ *       process(prxy);
+ *   }
+ * </code>
+ * The new delegate must be of the same class as the delegate the proxy
+ * was created with, because how to delegate is determined per delegate
+ * class. Rebinding is not synchronized, so a rebindable proxy must not be
+ * shared between threads without synchronization.
+ * 
+ * @author Christian Haselbach
+ */
+public interface Rebindable {
+
+    /**
+     * Replaces the delegate of the proxy.
+     * @param delegate  The new object to delegate the calls to.
+     * @throws ClassCastException  If the new delegate is not of the same
+     *                             class as the current one.
+     */
+    void rebind(Object delegate);
+
+}
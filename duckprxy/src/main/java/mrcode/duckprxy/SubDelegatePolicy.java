@@ -0,0 +1,28 @@
+package mrcode.duckprxy;
+
+/**
+ * Defines when the sub delegate of a proxy is read from its getter, see
+ * {@link DuckMethod#subdelegate()}.
+ * 
+ * @author Christian Haselbach
+ */
+public enum SubDelegatePolicy {
+
+    /**
+     * The getter is called once, when the proxy is created. The sub
+     * delegate and the resolution of its methods are cached for the
+     * lifetime of the proxy. Use this if the getter always returns the
+     * same object. If it returns null, the invocations forwarded to the
+     * sub delegate fail like those of methods without delegate method.
+     */
+    STATIC,
+
+    /**
+     * The getter is called on every invocation that is forwarded to the
+     * sub delegate, so the sub delegate may change over time, even to an
+     * object of a different class. The resolution of the sub delegate's
+     * methods is cached per class.
+     */
+    DYNAMIC
+
+}
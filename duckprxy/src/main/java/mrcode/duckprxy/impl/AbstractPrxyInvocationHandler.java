@@ -0,0 +1,85 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+import mrcode.duckprxy.Rebindable;
+import mrcode.duckprxy.SubDelegatePolicy;
+
+public abstract class AbstractPrxyInvocationHandler
+implements InvocationHandler, Rebindable {
+    
+    public abstract Method getSubDelegateGetter();
+
+    /**
+     * The delegate. It is only replaced by {@link #rebind(Object)}.
+     */
+    protected Object delegate;
+
+    public AbstractPrxyInvocationHandler(Object delegate) {
+        this.delegate = delegate;
+    }
+
+    public void rebind(final Object newDelegate) {
+        RebindableInvocationHandler.checkRebind(delegate, newDelegate);
+        delegate = newDelegate;
+    }
+
+    /**
+     * @return The sub delegate of the delegate (which may be null) if it
+     *         has the {@link SubDelegatePolicy#STATIC} policy, otherwise
+     *         null.
+     */
+    protected static Object getStaticSubDelegate(
+            final DispatchPlan plan,
+            final Object delegate) {
+        return plan.getSubDelegatePolicy() == SubDelegatePolicy.STATIC ?
+                plan.getSubDelegate(delegate) :
+                null;
+    }
+
+    /**
+     * Invokes a method that the delegate forwards to its sub delegate.
+     * @param plan               The dispatch plan of the delegate's class.
+     * @param staticSubDelegate  The sub delegate read when the handler was
+     *                           created, see {@link #getStaticSubDelegate}.
+     */
+    protected Object invokeSubDelegate(
+            final DispatchPlan plan,
+            final Object staticSubDelegate,
+            final Method method,
+            final Object[] args)
+    throws Exception {
+        return plan.invokeSubDelegate(
+                delegate,
+                plan.getSubDelegatePolicy() == SubDelegatePolicy.STATIC ?
+                        staticSubDelegate :
+                        plan.getSubDelegate(delegate),
+                method,
+                args);
+    }
+
+    protected Object getSubDelegate(Object proxy) {
+        try {
+            return getSubDelegateGetter().invoke(delegate, (Object[])null);
+        } catch (Exception e) {
+            throw new RuntimeException(
+                    "Got unexpected exception in sub delegate getter",
+                    e);
+        }
+    }
+
+    protected static class DelegateClassInformation {
+        protected final Method fallbackMethod;
+        protected final Method subDelegateGetter;
+        protected final MethodPatterns patterns;
+        public DelegateClassInformation(
+                Method fallbackMethod,
+                Method subDelegateGetter,
+                MethodPatterns patterns) {
+            this.fallbackMethod = fallbackMethod;
+            this.subDelegateGetter = subDelegateGetter;
+            this.patterns = patterns;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+import mrcode.duckprxy.DuckArg;
+import mrcode.duckprxy.DuckArgType;
+import mrcode.duckprxy.util.ObjectUtil;
+
+/**
+ * The compiled mapping from the arguments of an invoked method to the
+ * arguments of its delegate method, as defined by the {@link DuckArg}
+ * annotations of the delegate method's parameters.
+ * <p>
+ * The mapping is computed once per invoked method and delegate method,
+ * so mapping the arguments of a call does neither need reflection nor
+ * annotation lookups. It is an array holding, for each delegate
+ * parameter, either the index of the argument to pass or one of the
+ * negative op codes. If the mapping is the identity, the arguments are
+ * passed through without copying.
+ * 
+ * @author Christian Haselbach
+ */
+public final class ArgumentMapping {
+
+    /**
+     * Op code: pass a constant, i.e., null, the default value of a
+     * primitive or the capture group of a {@link DuckArgType#GROUP}.
+     */
+    private static final int CONSTANT = -1;
+
+    /** Op code: pass the name of the invoked method. */
+    private static final int NAME = -2;
+
+    /** Op code: pass the arguments array. */
+    private static final int ARGS = -3;
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private final String name;
+    private final int[] ops;
+
+    /**
+     * The values passed for {@link #CONSTANT}.
+     */
+    private final Object[] constants;
+    private final boolean identity;
+
+    private ArgumentMapping(
+            final String name,
+            final int[] ops,
+            final Object[] constants,
+            final boolean identity) {
+        this.name = name;
+        this.ops = ops;
+        this.constants = constants;
+        this.identity = identity;
+    }
+
+    /**
+     * Compiles the argument mapping for a delegate method.
+     * @param name            The name of the invoked method.
+     * @param delegateMethod  The delegate method.
+     * @param argsLen         The number of arguments of the invoked method.
+     * @return The argument mapping.
+     */
+    public static ArgumentMapping compile(
+            final String name,
+            final Method delegateMethod,
+            final int argsLen) {
+        final Annotation[][] annotations =
+            delegateMethod.getParameterAnnotations();
+        final int len = annotations.length;
+        final int[] ops = new int[len];
+        final Object[] constants = new Object[len];
+        final Class<?>[] parameterTypes = delegateMethod.getParameterTypes();
+        boolean identity = len == argsLen;
+        int argIndex = 0;
+        for (int annoIndex = 0; annoIndex < len; annoIndex++) {
+            final DuckArg duckArg =
+                MethodUtils.getDuckArg(annotations[annoIndex]);
+            if (duckArg == null) {
+                if (argIndex < argsLen) {
+                    ops[annoIndex] = argIndex;
+                    argIndex++;
+                } else {
+                    ops[annoIndex] = CONSTANT;
+                }
+            } else {
+                switch (duckArg.value()) {
+                    case NULL:
+                        ops[annoIndex] = CONSTANT;
+                        break;
+                    case NAME:
+                        ops[annoIndex] = NAME;
+                        break;
+                    case ARGS:
+                        ops[annoIndex] = ARGS;
+                        break;
+                    case ARGN:
+                        ops[annoIndex] = duckArg.pos() < argsLen ?
+                                duckArg.pos() :
+                                CONSTANT;
+                        break;
+                    case GROUP:
+                        ops[annoIndex] = CONSTANT;
+                        constants[annoIndex] = MethodPatterns.getGroup(
+                                delegateMethod, name, duckArg.pos());
+                        break;
+                }
+            }
+            if (ops[annoIndex] == CONSTANT && constants[annoIndex] == null) {
+                constants[annoIndex] =
+                    ObjectUtil.defaultValue(parameterTypes[annoIndex]);
+            }
+            identity &= ops[annoIndex] == annoIndex;
+        }
+        return new ArgumentMapping(name, ops, constants, identity);
+    }
+
+    /**
+     * @return true iff the arguments are passed through unchanged.
+     */
+    public boolean isIdentity() {
+        return identity;
+    }
+
+    /**
+     * Maps the arguments of an invocation to the arguments of the
+     * delegate method.
+     * @param args  The arguments of the invocation (may be null if there
+     *              are none).
+     * @return The arguments for the delegate method.
+     */
+    public Object[] map(final Object[] args) {
+        if (identity) {
+            return args;
+        }
+        final int len = ops.length;
+        if (len == 0) {
+            return NO_ARGUMENTS;
+        }
+        final Object[] delegateArgs = new Object[len];
+        for (int i = 0; i < len; i++) {
+            final int op = ops[i];
+            if (op >= 0) {
+                delegateArgs[i] = args[op];
+            } else if (op == NAME) {
+                delegateArgs[i] = name;
+            } else if (op == ARGS) {
+                delegateArgs[i] = args;
+            } else {
+                delegateArgs[i] = constants[i];
+            }
+        }
+        return delegateArgs;
+    }
+
+}
@@ -0,0 +1,603 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javassist.ClassPool;
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.BadBytecode;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+import mrcode.duckprxy.DuckArg;
+import mrcode.duckprxy.MethodMetrics;
+import mrcode.duckprxy.jfr.MissingMethodEvent;
+import mrcode.duckprxy.util.ObjectUtil;
+
+/**
+ * Emits the bytecode of the methods of the proxy classes generated by the
+ * {@link JavassistDuckPrxy}, without going through Javassist's source
+ * compiler. The delegate methods have been resolved already, so a method
+ * is: load the delegate (or the deepest sub delegate held in a field) and
+ * the remaining sub delegates, push the mapped arguments, invoke the
+ * delegate method and adapt its return value. The
+ * argument mapping and the conversions are the same as those of the
+ * source the {@link JavassistDuckPrxy} compiles otherwise, see
+ * {@link JavassistDuckPrxy#getDelegateCall} and
+ * {@link JavassistDuckPrxy#convert}.
+ *
+ * @author Christian Haselbach
+ */
+final class BytecodeEmitter {
+
+    private static final String DELEGATE_FIELD =
+        JavassistDuckPrxy.DELEGATE_FIELD;
+
+    private static final String SUB_DELEGATE_FIELD_PREFIX =
+        JavassistDuckPrxy.SUB_DELEGATE_FIELD_PREFIX;
+
+    private static final String OBJECT_UTIL = ObjectUtil.class.getName();
+
+    private static final String METHOD_METRICS = MethodMetrics.class.getName();
+
+    private BytecodeEmitter() {
+        // static methods only
+    }
+
+    /**
+     * Creates the code of the constructor of a proxy class, taking the
+     * delegate. It stores the delegate and the sub delegates read once
+     * when the proxy is created. Its stack map has to be rebuilt if there
+     * is more than one sub delegate.
+     * @param classFile              The class file of the proxy class.
+     * @param superclass             The superclass of the proxy class.
+     * @param delegateClass          The class of the delegate field.
+     * @param staticSubDelegatePath  The getters of the sub delegates held
+     *                               in fields.
+     * @return The code of the constructor.
+     */
+    static CodeAttribute createConstructorCode(
+            final ClassFile classFile,
+            final Class<?> superclass,
+            final Class<?> delegateClass,
+            final List<Method> staticSubDelegatePath) {
+        final String className = classFile.getName();
+        final Bytecode code = new Bytecode(classFile.getConstPool(), 0, 2);
+        code.addAload(0);
+        code.addInvokespecial(superclass.getName(), MethodInfo.nameInit, "()V");
+        code.addAload(0);
+        code.addAload(1);
+        code.addPutfield(className, DELEGATE_FIELD, descriptor(delegateClass));
+        final List<Integer> nullBranches = new ArrayList<Integer>();
+        String field = DELEGATE_FIELD;
+        Class<?> type = delegateClass;
+        for (int i = 0; i < staticSubDelegatePath.size(); i++) {
+            final Method getter = staticSubDelegatePath.get(i);
+            if (i > 0) {
+                // The sub delegates below a null sub delegate stay null.
+                code.addAload(0);
+                code.addGetfield(className, field, descriptor(type));
+                code.addOpcode(Opcode.IFNULL);
+                nullBranches.add(code.currentPc());
+                code.addIndex(0);
+            }
+            code.addAload(0);
+            code.addAload(0);
+            code.addGetfield(className, field, descriptor(type));
+            addInvoke(code, type, getter);
+            field = SUB_DELEGATE_FIELD_PREFIX + (i + 1);
+            type = getter.getReturnType();
+            code.addPutfield(className, field, descriptor(type));
+        }
+        final int end = code.currentPc();
+        for (final int branch : nullBranches) {
+            code.write16bit(branch, end - (branch - 1));
+        }
+        code.addOpcode(Opcode.RETURN);
+        return code.toCodeAttribute();
+    }
+
+    /**
+     * Creates a method of a proxy class.
+     * @param classPool        The class pool of the proxy class.
+     * @param classFile        The class file of the proxy class.
+     * @param method           The proxied method.
+     * @param delegateClass    The class of the delegate field.
+     * @param subDelegatePath  The sub delegate getters leading from the
+     *                         delegate to the object to invoke the
+     *                         delegate method on.
+     * @param heldSubDelegates The number of leading sub delegates of the
+     *                         path that are held in fields.
+     * @param delegateMethod   The delegate method or null if there is
+     *                         none.
+     * @param metricsField     The name of the static field holding the
+     *                         {@link MethodMetrics} of the method or null
+     *                         if the method is not instrumented.
+     * @param timed            Whether the latency of the method is
+     *                         recorded.
+     * @return The method.
+     * @throws BadBytecode  If the stack map cannot be computed.
+     */
+    static MethodInfo createMethod(
+            final ClassPool classPool,
+            final ClassFile classFile,
+            final Method method,
+            final Class<?> delegateClass,
+            final List<Method> subDelegatePath,
+            final int heldSubDelegates,
+            final Method delegateMethod,
+            final String metricsField,
+            final boolean timed)
+    throws BadBytecode {
+        final String className = classFile.getName();
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        final Class<?> returnType = method.getReturnType();
+        final int[] parameterSlots = new int[parameterTypes.length];
+        int locals = 1;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameterSlots[i] = locals;
+            locals += size(parameterTypes[i]);
+        }
+        final int start = locals;
+        final Bytecode code = new Bytecode(
+                classFile.getConstPool(), 0, timed ? locals + 2 : locals);
+        if (metricsField != null) {
+            if (timed) {
+                code.addInvokestatic("java.lang.System", "nanoTime", "()J");
+                code.addLstore(start);
+            } else {
+                code.addGetstatic(
+                        className, metricsField, descriptor(MethodMetrics.class));
+                code.addInvokeinterface(METHOD_METRICS, "invoked", "()V", 1);
+            }
+        }
+        final int tryStart = code.currentPc();
+        if (delegateMethod == null) {
+            addMethodMissing(code, className, delegateClass, method.getName());
+        } else {
+            addDelegation(
+                    code,
+                    className,
+                    method,
+                    parameterSlots,
+                    delegateClass,
+                    subDelegatePath,
+                    heldSubDelegates,
+                    delegateMethod);
+        }
+        if (timed) {
+            final int tryEnd = code.currentPc();
+            if (delegateMethod != null) {
+                addInvoked(code, className, metricsField, start);
+                addReturn(code, returnType);
+            }
+            final int handler = code.currentPc();
+            code.setStackDepth(1);
+            addInvoked(code, className, metricsField, start);
+            code.addOpcode(Opcode.ATHROW);
+            code.addExceptionHandler(tryStart, tryEnd, handler, 0);
+        } else if (delegateMethod != null) {
+            addReturn(code, returnType);
+        }
+        final MethodInfo methodInfo = new MethodInfo(
+                classFile.getConstPool(),
+                method.getName(),
+                descriptor(returnType, parameterTypes));
+        methodInfo.setAccessFlags(AccessFlag.PUBLIC);
+        methodInfo.setCodeAttribute(code.toCodeAttribute());
+        if (timed) {
+            methodInfo.rebuildStackMapIf6(classPool, classFile);
+        }
+        return methodInfo;
+    }
+
+    /**
+     * Emits the call of the delegate method, leaving the converted result
+     * (if any) on the stack.
+     */
+    private static void addDelegation(
+            final Bytecode code,
+            final String className,
+            final Method method,
+            final int[] parameterSlots,
+            final Class<?> delegateClass,
+            final List<Method> subDelegatePath,
+            final int heldSubDelegates,
+            final Method delegateMethod) {
+        Class<?> target = heldSubDelegates == 0 ?
+                delegateClass :
+                subDelegatePath.get(heldSubDelegates - 1).getReturnType();
+        code.addAload(0);
+        code.addGetfield(
+                className,
+                heldSubDelegates == 0 ?
+                        DELEGATE_FIELD :
+                        SUB_DELEGATE_FIELD_PREFIX + heldSubDelegates,
+                descriptor(target));
+        for (final Method getter :
+            subDelegatePath.subList(heldSubDelegates, subDelegatePath.size())) {
+            addInvoke(code, target, getter);
+            target = getter.getReturnType();
+        }
+        if (Modifier.isStatic(delegateMethod.getModifiers())) {
+            code.addOpcode(Opcode.POP);
+        }
+        addArguments(code, method, parameterSlots, delegateMethod);
+        addInvoke(code, target, delegateMethod);
+        final Class<?> returnType = method.getReturnType();
+        final Class<?> delegateReturnType = delegateMethod.getReturnType();
+        if (returnType == void.class) {
+            if (delegateReturnType != void.class) {
+                code.addOpcode(size(delegateReturnType) == 2 ?
+                        Opcode.POP2 :
+                        Opcode.POP);
+            }
+        } else if (delegateReturnType == void.class) {
+            addDefaultValue(code, returnType);
+        } else {
+            addConversion(code, delegateReturnType, returnType);
+        }
+    }
+
+    /**
+     * Emits the arguments of the delegate method, see
+     * {@link JavassistDuckPrxy#getDelegateCall}.
+     */
+    private static void addArguments(
+            final Bytecode code,
+            final Method method,
+            final int[] parameterSlots,
+            final Method delegateMethod) {
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        final Annotation[][] annotations =
+            delegateMethod.getParameterAnnotations();
+        final Class<?>[] delegateParameterTypes =
+            delegateMethod.getParameterTypes();
+        final int argsLen = parameterTypes.length;
+        int argIndex = 0;
+        for (int i = 0; i < delegateParameterTypes.length; i++) {
+            final Class<?> type = delegateParameterTypes[i];
+            final DuckArg duckArg = getDuckArg(annotations[i]);
+            if (duckArg == null) {
+                if (argIndex < argsLen) {
+                    addLoad(code, parameterSlots[argIndex],
+                            parameterTypes[argIndex]);
+                    addConversion(code, parameterTypes[argIndex], type);
+                    argIndex++;
+                } else {
+                    addDefaultValue(code, type);
+                }
+                continue;
+            }
+            switch (duckArg.value()) {
+                case NULL:
+                    addDefaultValue(code, type);
+                    break;
+                case NAME:
+                    code.addLdc(method.getName());
+                    break;
+                case ARGS:
+                    code.addIconst(argsLen);
+                    code.addAnewarray("java.lang.Object");
+                    for (int j = 0; j < argsLen; j++) {
+                        code.addOpcode(Opcode.DUP);
+                        code.addIconst(j);
+                        addLoad(code, parameterSlots[j], parameterTypes[j]);
+                        addConversion(code, parameterTypes[j], Object.class);
+                        code.addOpcode(Opcode.AASTORE);
+                    }
+                    break;
+                case ARGN:
+                    if (duckArg.pos() < argsLen) {
+                        addLoad(code, parameterSlots[duckArg.pos()],
+                                parameterTypes[duckArg.pos()]);
+                        addConversion(
+                                code, parameterTypes[duckArg.pos()], type);
+                    } else {
+                        addDefaultValue(code, type);
+                    }
+                    break;
+                case GROUP:
+                    final String group = MethodPatterns.getGroup(
+                            delegateMethod, method.getName(), duckArg.pos());
+                    if (group == null) {
+                        addDefaultValue(code, type);
+                    } else {
+                        code.addLdc(group);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Emits the equivalent of {@link MissingMethodEvent#emit} followed by
+     * throwing what an invocation handler throws for a missing method.
+     */
+    private static void addMethodMissing(
+            final Bytecode code,
+            final String className,
+            final Class<?> delegateClass,
+            final String name) {
+        code.addLdc(name);
+        code.addAload(0);
+        code.addGetfield(className, DELEGATE_FIELD, descriptor(delegateClass));
+        code.addInvokestatic(
+                MissingMethodEvent.class.getName(),
+                "emit",
+                "(Ljava/lang/String;Ljava/lang/Object;)V");
+        final String undeclared = UndeclaredThrowableException.class.getName();
+        final String invocationTarget =
+            InvocationTargetException.class.getName();
+        final String noSuchMethod = NoSuchMethodException.class.getName();
+        code.addNew(undeclared);
+        code.addOpcode(Opcode.DUP);
+        code.addNew(invocationTarget);
+        code.addOpcode(Opcode.DUP);
+        code.addNew(noSuchMethod);
+        code.addOpcode(Opcode.DUP);
+        code.addInvokespecial(noSuchMethod, MethodInfo.nameInit, "()V");
+        code.addInvokespecial(
+                invocationTarget,
+                MethodInfo.nameInit,
+                "(Ljava/lang/Throwable;)V");
+        code.addInvokespecial(
+                undeclared,
+                MethodInfo.nameInit,
+                "(Ljava/lang/Throwable;)V");
+        code.addOpcode(Opcode.ATHROW);
+    }
+
+    /**
+     * Emits {@code metrics.invoked(System.nanoTime() - start)}.
+     */
+    private static void addInvoked(
+            final Bytecode code,
+            final String className,
+            final String metricsField,
+            final int start) {
+        code.addGetstatic(
+                className, metricsField, descriptor(MethodMetrics.class));
+        code.addInvokestatic("java.lang.System", "nanoTime", "()J");
+        code.addLload(start);
+        code.addOpcode(Opcode.LSUB);
+        code.addInvokeinterface(METHOD_METRICS, "invoked", "(J)V", 3);
+    }
+
+    /**
+     * Emits the invocation of a method on an object of the target type.
+     */
+    private static void addInvoke(
+            final Bytecode code,
+            final Class<?> target,
+            final Method method) {
+        final String desc =
+            descriptor(method.getReturnType(), method.getParameterTypes());
+        if (Modifier.isStatic(method.getModifiers())) {
+            code.addInvokestatic(
+                    method.getDeclaringClass().getName(),
+                    method.getName(),
+                    desc);
+        } else if (target.isInterface()) {
+            int count = 1;
+            for (final Class<?> type : method.getParameterTypes()) {
+                count += size(type);
+            }
+            code.addInvokeinterface(
+                    target.getName(), method.getName(), desc, count);
+        } else {
+            code.addInvokevirtual(target.getName(), method.getName(), desc);
+        }
+    }
+
+    /**
+     * Emits the conversion of the value on top of the stack, like
+     * {@link JavassistDuckPrxy#convert}.
+     */
+    private static void addConversion(
+            final Bytecode code,
+            final Class<?> from,
+            final Class<?> to) {
+        if (from == to || (!from.isPrimitive() && to.isAssignableFrom(from))) {
+            return;
+        }
+        if (from.isPrimitive() && to.isPrimitive()) {
+            addPrimitiveConversion(code, from, to);
+        } else if (from.isPrimitive()) {
+            code.addInvokestatic(
+                    OBJECT_UTIL,
+                    "toObject",
+                    "(" + descriptor(from) + ")Ljava/lang/Object;");
+            if (to != Object.class) {
+                code.addCheckcast(to.getName());
+            }
+        } else if (to == boolean.class) {
+            code.addCheckcast("java.lang.Boolean");
+            code.addInvokevirtual("java.lang.Boolean", "booleanValue", "()Z");
+        } else if (to == char.class) {
+            code.addCheckcast("java.lang.Character");
+            code.addInvokevirtual("java.lang.Character", "charValue", "()C");
+        } else if (to.isPrimitive()) {
+            code.addCheckcast("java.lang.Number");
+            code.addInvokevirtual(
+                    "java.lang.Number",
+                    to.getName() + "Value",
+                    "()" + descriptor(to));
+        } else {
+            code.addCheckcast(to.getName());
+        }
+    }
+
+    /**
+     * Emits a primitive cast, e.g., {@code (long) i}.
+     */
+    private static void addPrimitiveConversion(
+            final Bytecode code,
+            final Class<?> from,
+            final Class<?> to) {
+        if (from == boolean.class || to == boolean.class) {
+            return;
+        }
+        if (from == long.class) {
+            if (to == float.class) {
+                code.addOpcode(Opcode.L2F);
+            } else if (to == double.class) {
+                code.addOpcode(Opcode.L2D);
+            } else {
+                code.addOpcode(Opcode.L2I);
+                addIntNarrowing(code, to);
+            }
+        } else if (from == float.class) {
+            if (to == long.class) {
+                code.addOpcode(Opcode.F2L);
+            } else if (to == double.class) {
+                code.addOpcode(Opcode.F2D);
+            } else {
+                code.addOpcode(Opcode.F2I);
+                addIntNarrowing(code, to);
+            }
+        } else if (from == double.class) {
+            if (to == long.class) {
+                code.addOpcode(Opcode.D2L);
+            } else if (to == float.class) {
+                code.addOpcode(Opcode.D2F);
+            } else {
+                code.addOpcode(Opcode.D2I);
+                addIntNarrowing(code, to);
+            }
+        } else if (to == long.class) {
+            code.addOpcode(Opcode.I2L);
+        } else if (to == float.class) {
+            code.addOpcode(Opcode.I2F);
+        } else if (to == double.class) {
+            code.addOpcode(Opcode.I2D);
+        } else {
+            addIntNarrowing(code, to);
+        }
+    }
+
+    private static void addIntNarrowing(final Bytecode code, final Class<?> to) {
+        if (to == byte.class) {
+            code.addOpcode(Opcode.I2B);
+        } else if (to == char.class) {
+            code.addOpcode(Opcode.I2C);
+        } else if (to == short.class) {
+            code.addOpcode(Opcode.I2S);
+        }
+    }
+
+    private static void addDefaultValue(
+            final Bytecode code,
+            final Class<?> type) {
+        if (type == long.class) {
+            code.addOpcode(Opcode.LCONST_0);
+        } else if (type == float.class) {
+            code.addOpcode(Opcode.FCONST_0);
+        } else if (type == double.class) {
+            code.addOpcode(Opcode.DCONST_0);
+        } else if (type.isPrimitive()) {
+            code.addIconst(0);
+        } else {
+            code.addOpcode(Opcode.ACONST_NULL);
+        }
+    }
+
+    static void addLoad(
+            final Bytecode code,
+            final int slot,
+            final Class<?> type) {
+        if (type == long.class) {
+            code.addLload(slot);
+        } else if (type == float.class) {
+            code.addFload(slot);
+        } else if (type == double.class) {
+            code.addDload(slot);
+        } else if (type.isPrimitive()) {
+            code.addIload(slot);
+        } else {
+            code.addAload(slot);
+        }
+    }
+
+    static void addReturn(final Bytecode code, final Class<?> type) {
+        if (type == void.class) {
+            code.addOpcode(Opcode.RETURN);
+        } else if (type == long.class) {
+            code.addOpcode(Opcode.LRETURN);
+        } else if (type == float.class) {
+            code.addOpcode(Opcode.FRETURN);
+        } else if (type == double.class) {
+            code.addOpcode(Opcode.DRETURN);
+        } else if (type.isPrimitive()) {
+            code.addOpcode(Opcode.IRETURN);
+        } else {
+            code.addOpcode(Opcode.ARETURN);
+        }
+    }
+
+    private static DuckArg getDuckArg(final Annotation[] annotations) {
+        for (final Annotation annotation : annotations) {
+            if (annotation instanceof DuckArg) {
+                return (DuckArg) annotation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of local variable (and stack) slots of a value of
+     *         the type.
+     */
+    static int size(final Class<?> type) {
+        return type == long.class || type == double.class ? 2 : 1;
+    }
+
+    /**
+     * @return The method descriptor of the return and parameter types.
+     */
+    static String descriptor(
+            final Class<?> returnType,
+            final Class<?>[] parameterTypes) {
+        final StringBuilder desc = new StringBuilder("(");
+        for (final Class<?> type : parameterTypes) {
+            desc.append(descriptor(type));
+        }
+        return desc.append(')').append(descriptor(returnType)).toString();
+    }
+
+    /**
+     * @return The field descriptor of the type.
+     */
+    static String descriptor(final Class<?> type) {
+        if (type == boolean.class) {
+            return "Z";
+        } else if (type == byte.class) {
+            return "B";
+        } else if (type == char.class) {
+            return "C";
+        } else if (type == short.class) {
+            return "S";
+        } else if (type == int.class) {
+            return "I";
+        } else if (type == long.class) {
+            return "J";
+        } else if (type == float.class) {
+            return "F";
+        } else if (type == double.class) {
+            return "D";
+        } else if (type == void.class) {
+            return "V";
+        } else if (type.isArray()) {
+            return type.getName().replace('.', '/');
+        }
+        return "L" + type.getName().replace('.', '/') + ";";
+    }
+
+}
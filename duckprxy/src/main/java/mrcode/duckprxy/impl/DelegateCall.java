@@ -0,0 +1,135 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.reflect.Method;
+
+import mrcode.duckprxy.jfr.MissingMethodEvent;
+import mrcode.duckprxy.util.ObjectUtil;
+
+/**
+ * The resolved delegation of an invoked method: either a call of a
+ * delegate method with its argument mapping or a forward to the sub
+ * delegate.
+ * 
+ * @author Christian Haselbach
+ */
+public final class DelegateCall {
+
+    /**
+     * The delegation to forward the invocation to the sub delegate.
+     */
+    public static final DelegateCall SUB_DELEGATE =
+        new DelegateCall(null, null, null, null);
+
+    private final Method delegateMethod;
+    private final ArgumentMapping argumentMapping;
+
+    /**
+     * The primitive type to convert the result to, or null if the result
+     * of the delegate method can be returned as is.
+     */
+    private final Class<?> resultType;
+
+    /**
+     * The name of the invoked method if there is no delegate method for
+     * it (see {@link MethodUtils#defaultMethod()}), otherwise null.
+     */
+    private final String missingMethodName;
+
+    private DelegateCall(
+            final Method delegateMethod,
+            final ArgumentMapping argumentMapping,
+            final Class<?> resultType,
+            final String missingMethodName) {
+        this.delegateMethod = delegateMethod;
+        this.argumentMapping = argumentMapping;
+        this.resultType = resultType;
+        this.missingMethodName = missingMethodName;
+    }
+
+    /**
+     * @param method          The invoked method.
+     * @param delegateMethod  The method to delegate to.
+     */
+    public DelegateCall(final Method method, final Method delegateMethod) {
+        this(
+                delegateMethod,
+                ArgumentMapping.compile(
+                        method.getName(),
+                        delegateMethod,
+                        method.getParameterCount()),
+                getResultType(method, delegateMethod),
+                MethodUtils.isDefaultMethod(delegateMethod) ?
+                        method.getName() :
+                        null);
+    }
+
+    /**
+     * @param method  The invoked method.
+     * @return The delegation of a method without delegate method, which
+     *         ends in a {@link NoSuchMethodException} (see
+     *         {@link MethodUtils#defaultMethod()}).
+     */
+    public static DelegateCall missing(final Method method) {
+        return new DelegateCall(method, MethodUtils.getDefaultMethod());
+    }
+
+    /**
+     * @return The primitive return type of the method if the result of the
+     *         delegate method has to be converted to it, otherwise null.
+     */
+    private static Class<?> getResultType(
+            final Method method,
+            final Method delegateMethod) {
+        final Class<?> returnType = method.getReturnType();
+        if (returnType.isPrimitive() && returnType != void.class &&
+                returnType != delegateMethod.getReturnType()) {
+            return returnType;
+        }
+        return null;
+    }
+
+    /**
+     * @return The method to call or null iff the invocation shall be
+     *         forwarded to the sub delegate.
+     */
+    public Method getDelegateMethod() {
+        return delegateMethod;
+    }
+
+    /**
+     * @return The argument mapping or null iff the invocation shall be
+     *         forwarded to the sub delegate.
+     */
+    public ArgumentMapping getArgumentMapping() {
+        return argumentMapping;
+    }
+
+    /**
+     * @return true iff the invocation shall be forwarded to the sub
+     *         delegate.
+     */
+    public boolean isSubDelegate() {
+        return delegateMethod == null;
+    }
+
+    /**
+     * Calls the delegate method.
+     * @param delegate  The delegate.
+     * @param args      The arguments of the invocation.
+     * @return The result of the delegate method, widened to the
+     *         primitive return type of the invoked method if necessary.
+     * @throws Exception  As thrown by {@link Method#invoke}.
+     */
+    public Object invoke(final Object delegate, final Object[] args)
+    throws Exception {
+        if (missingMethodName != null) {
+            MissingMethodEvent.emit(missingMethodName, delegate);
+        }
+        final Object result =
+            delegateMethod.invoke(delegate, argumentMapping.map(args));
+        return resultType == null ?
+                result :
+                ObjectUtil.convert(result, resultType);
+    }
+
+}
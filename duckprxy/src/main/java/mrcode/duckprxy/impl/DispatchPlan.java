@@ -0,0 +1,313 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.SubDelegatePolicy;
+import mrcode.duckprxy.impl.AbstractPrxyInvocationHandler.DelegateClassInformation;
+import mrcode.duckprxy.impl.MethodUtils.MethodRetrieveStrategy;
+import mrcode.duckprxy.jfr.DispatchPlanEvent;
+
+/**
+ * The resolved dispatch information for a delegate class, shared by all
+ * invocation handlers that delegate to objects of this class.
+ * <p>
+ * Plans are immutable and cached per delegate class in a
+ * {@link ClassValue}, so creating a handler for an already known delegate
+ * class does not touch reflection at all. The cache does not prevent the
+ * delegate class from being unloaded. Note, however, that the resolved
+ * calls (see {@link #getDelegateCall(Method)}) and the method maps for
+ * interface sets (see {@link #getMethodMap(Class[])} and
+ * {@link #getDispatchTable(Class[])}) are kept as long as the delegate
+ * class is alive.
+ * 
+ * @author Christian Haselbach
+ */
+public final class DispatchPlan {
+
+    private static final ClassValue<DispatchPlan> PLANS =
+        new ClassValue<DispatchPlan>() {
+            @Override
+            protected DispatchPlan computeValue(final Class<?> type) {
+                return new DispatchPlan(type);
+            }
+        };
+
+    private final Class<?> delegateClass;
+    private final List<MethodRetrieveStrategy> strategies;
+    private final Method subDelegateGetter;
+    private final SubDelegatePolicy subDelegatePolicy;
+    private final ConcurrentMap<Method, DelegateCall> delegateCalls =
+        new ConcurrentHashMap<Method, DelegateCall>();
+    private final ConcurrentMap<List<Class<?>>, Map<Method, DelegateCall>>
+        methodMaps =
+            new ConcurrentHashMap<List<Class<?>>, Map<Method, DelegateCall>>();
+    private final ConcurrentMap<List<Class<?>>, DispatchTable>
+        dispatchTables =
+            new ConcurrentHashMap<List<Class<?>>, DispatchTable>();
+
+    private DispatchPlan(final Class<?> delegateClass) {
+        final DispatchPlanEvent event = new DispatchPlanEvent();
+        event.begin();
+        this.delegateClass = delegateClass;
+        final DelegateClassInformation info =
+            getDelegateClassInformation(delegateClass);
+        this.strategies = makeStrategies(delegateClass, info);
+        this.subDelegateGetter = info.subDelegateGetter;
+        this.subDelegatePolicy = subDelegateGetter == null ?
+                null :
+                subDelegateGetter.getAnnotation(DuckMethod.class).policy();
+        if (event.shouldCommit()) {
+            event.delegateClass = delegateClass;
+            event.commit();
+        }
+    }
+
+    /**
+     * @param delegateClass  The class of the delegate.
+     * @return The (cached) plan for the delegate class.
+     */
+    public static DispatchPlan forClass(final Class<?> delegateClass) {
+        return PLANS.get(delegateClass);
+    }
+
+    public Class<?> getDelegateClass() {
+        return delegateClass;
+    }
+
+    public Method getSubDelegateGetter() {
+        return subDelegateGetter;
+    }
+
+    /**
+     * @return The policy of the sub delegate getter or null if there is no
+     *         sub delegate.
+     */
+    public SubDelegatePolicy getSubDelegatePolicy() {
+        return subDelegatePolicy;
+    }
+
+    /**
+     * @param delegate  A delegate of the plan's class.
+     * @return The sub delegate of the delegate.
+     */
+    public Object getSubDelegate(final Object delegate) {
+        try {
+            return subDelegateGetter.invoke(delegate, (Object[]) null);
+        } catch (Exception e) {
+            throw new RuntimeException(
+                    "Got unexpected exception in sub delegate getter",
+                    e);
+        }
+    }
+
+    /**
+     * Invokes a method on a delegate of the plan's class. If the method
+     * is forwarded to the sub delegate, the sub delegate is read from its
+     * getter, see {@link #invokeSubDelegate}.
+     * @param delegate  A delegate of the plan's class.
+     * @param method    The invoked method.
+     * @param args      The arguments of the invocation.
+     * @return The result of the invocation.
+     * @throws Exception  As thrown by {@link DelegateCall#invoke}.
+     */
+    public Object invoke(
+            final Object delegate,
+            final Method method,
+            final Object[] args)
+    throws Exception {
+        final DelegateCall delegateCall = getDelegateCall(method);
+        if (!delegateCall.isSubDelegate()) {
+            return delegateCall.invoke(delegate, args);
+        }
+        return invokeSubDelegate(
+                delegate, getSubDelegate(delegate), method, args);
+    }
+
+    /**
+     * Invokes a method that a delegate of the plan's class forwards to
+     * its sub delegate. The method is dispatched with the plan of the sub
+     * delegate's actual class, reading the sub delegates below it from
+     * their getters, down to arbitrarily deep chains. If a sub delegate
+     * is null, or if the chain leads back to a class it passed (so none
+     * of the objects has the method), the invocation ends like that of a
+     * method without delegate method (see
+     * {@link MethodUtils#defaultMethod()}).
+     * @param delegate     A delegate of the plan's class.
+     * @param subDelegate  The sub delegate of the delegate or null.
+     * @param method       The invoked method.
+     * @param args         The arguments of the invocation.
+     * @return The result of the invocation.
+     * @throws Exception  As thrown by {@link DelegateCall#invoke}.
+     */
+    public Object invokeSubDelegate(
+            final Object delegate,
+            final Object subDelegate,
+            final Method method,
+            final Object[] args)
+    throws Exception {
+        List<DispatchPlan> passed = null;
+        Object parent = delegate;
+        Object target = subDelegate;
+        while (target != null) {
+            final DispatchPlan plan = forClass(target.getClass());
+            if (plan == this || passed != null && passed.contains(plan)) {
+                break;
+            }
+            final DelegateCall delegateCall = plan.getDelegateCall(method);
+            if (!delegateCall.isSubDelegate()) {
+                return delegateCall.invoke(target, args);
+            }
+            if (passed == null) {
+                passed = new ArrayList<DispatchPlan>();
+            }
+            passed.add(plan);
+            parent = target;
+            target = plan.getSubDelegate(target);
+        }
+        return DelegateCall.missing(method).invoke(parent, args);
+    }
+
+    /**
+     * Returns the delegation of an invoked method. The delegation is
+     * resolved on the first invocation of the method and memoized for
+     * all proxies delegating to objects of the plan's delegate class.
+     * @param method  The invoked method.
+     * @return The delegation of the method.
+     */
+    public DelegateCall getDelegateCall(final Method method) {
+        final DelegateCall cached = delegateCalls.get(method);
+        if (cached != null) {
+            return cached;
+        }
+        final Method delegateMethod = getDelegateMethod(
+                method.getName(),
+                method.getParameterTypes());
+        final DelegateCall delegateCall = delegateMethod == null ?
+                DelegateCall.SUB_DELEGATE :
+                new DelegateCall(method, delegateMethod);
+        final DelegateCall raced =
+            delegateCalls.putIfAbsent(method, delegateCall);
+        return raced == null ? delegateCall : raced;
+    }
+
+    /**
+     * Looks up the delegate method by trying the strategies in order.
+     * @param name            The name of the invoked method.
+     * @param parameterTypes  The parameter types of the invoked method.
+     * @return The delegate method or null iff the invocation shall be
+     *         forwarded to the sub delegate.
+     */
+    public Method getDelegateMethod(
+            final String name,
+            final Class<?>[] parameterTypes) {
+        Method delegateMethod = null;
+        for(MethodRetrieveStrategy strategy : strategies) {
+            delegateMethod = strategy.getMethod(name, parameterTypes);
+            if (delegateMethod != null) {
+                break;
+            }
+        }
+        return delegateMethod;
+    }
+
+    /**
+     * Returns the delegations of all methods of the given interfaces.
+     * The mapping is computed once per interface set.
+     * @param interfaces  The interfaces implemented by the proxy.
+     * @return An unmodifiable mapping of interface methods to their
+     *         delegations.
+     */
+    public Map<Method, DelegateCall> getMethodMap(final Class<?>[] interfaces) {
+        final Map<Method, DelegateCall> cached =
+            methodMaps.get(Arrays.asList(interfaces));
+        if (cached != null) {
+            return cached;
+        }
+        final Map<Method, DelegateCall> methodMap =
+            new HashMap<Method, DelegateCall>();
+        for (final Class<?> iface : interfaces) {
+            for (final Method method : iface.getMethods()) {
+                methodMap.put(method, getDelegateCall(method));
+            }
+        }
+        final Map<Method, DelegateCall> result =
+            Collections.unmodifiableMap(methodMap);
+        final Map<Method, DelegateCall> raced = methodMaps.putIfAbsent(
+                Arrays.asList(interfaces.clone()), result);
+        return raced == null ? result : raced;
+    }
+
+    /**
+     * Returns the dispatch table of the proxies of the given interfaces.
+     * The table is created once per interface set and shared by all
+     * handlers of such proxies.
+     * @param interfaces  The interfaces implemented by the proxy.
+     * @return The dispatch table.
+     */
+    public DispatchTable getDispatchTable(final Class<?>[] interfaces) {
+        final DispatchTable cached =
+            dispatchTables.get(Arrays.asList(interfaces));
+        if (cached != null) {
+            return cached;
+        }
+        final DispatchTable dispatchTable = new DispatchTable(this, interfaces);
+        final DispatchTable raced = dispatchTables.putIfAbsent(
+                Arrays.asList(interfaces.clone()), dispatchTable);
+        return raced == null ? dispatchTable : raced;
+    }
+
+    static List<MethodRetrieveStrategy> makeStrategies(
+            final Class<?> delegateClass,
+            final DelegateClassInformation info) {
+        MethodRetrieveStrategy fallbackStrategy;
+        if (info.subDelegateGetter != null) {
+            fallbackStrategy = MethodUtils.defaultMethodStrategy(null);
+        } else if (info.fallbackMethod != null) {
+            fallbackStrategy =
+                MethodUtils.defaultMethodStrategy(info.fallbackMethod);
+        } else {
+            fallbackStrategy = MethodUtils.defaultMethodStrategy();
+        }
+        List<MethodRetrieveStrategy> strategies =
+            Arrays.asList(new MethodRetrieveStrategy[] {
+                    MethodUtils.methodByNameAndArgsStrategy(delegateClass),
+                    MethodUtils.methodByNameWithoutArgsStrategy(
+                            delegateClass),
+                    MethodUtils.methodByPatternStrategy(
+                            delegateClass, info.patterns),
+                    fallbackStrategy});
+        return strategies;
+    }
+
+    static DelegateClassInformation getDelegateClassInformation(
+            final Class<?> delegateClass) {
+        Method fallbackMethod = null;
+        Method subDelegateGetter = null;
+        for (final Method method : delegateClass.getMethods()) {
+            final DuckMethod duckMethod =
+                method.getAnnotation(DuckMethod.class);
+            if (duckMethod != null) {
+                if (duckMethod.fallback()) {
+                    fallbackMethod = method;
+                }
+                if (duckMethod.subdelegate()) {
+                    subDelegateGetter = method;
+                }
+            }
+        }
+        return new DelegateClassInformation(
+                fallbackMethod,
+                subDelegateGetter,
+                MethodPatterns.forClass(delegateClass));
+    }
+
+}
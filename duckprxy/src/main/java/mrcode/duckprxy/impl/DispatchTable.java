@@ -0,0 +1,155 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * The delegations of the methods of a proxy shape, i.e., of a delegate
+ * class and a set of interfaces, shared by all handlers of proxies of
+ * this shape.
+ * <p>
+ * A JDK proxy class passes the same {@link Method} objects to its
+ * handler on every invocation, so the delegations are looked up by the
+ * identity of the invoked method, which is much cheaper than
+ * {@link Method#hashCode()} and {@link Method#equals(Object)}. The
+ * identity table is filled when a method object is seen for the first
+ * time, from the method map of the plan (see
+ * {@link DispatchPlan#getMethodMap(Class[])}). It is replaced, never
+ * modified, so a lookup does not need any locking.
+ * <p>
+ * The identity table holds at most one entry per method of the method map
+ * and per method of {@link Object}. Methods seen beyond that, e.g., the
+ * method objects of further proxy classes of the same shape, are looked
+ * up in the method map every time, without locking.
+ *
+ * @author Christian Haselbach
+ */
+public final class DispatchTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int OBJECT_METHODS = Object.class.getMethods().length;
+
+    private final DispatchPlan plan;
+    private final Map<Method, DelegateCall> methodMap;
+    private final int maxSize;
+
+    /**
+     * The identity table: the methods at the even indexes, followed by
+     * their delegations, with linear probing (like
+     * {@link java.util.IdentityHashMap}). At most half of the slots are
+     * used, so there is always a free slot ending a probe.
+     */
+    private volatile Object[] table = new Object[2 * INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Whether the identity table holds {@link #maxSize} methods, so
+     * further methods are looked up without taking the lock.
+     */
+    private volatile boolean full;
+
+    /**
+     * @param plan        The dispatch plan for the delegate class.
+     * @param interfaces  The interfaces implemented by the proxies.
+     */
+    DispatchTable(final DispatchPlan plan, final Class<?>[] interfaces) {
+        this.plan = plan;
+        this.methodMap = plan.getMethodMap(interfaces);
+        this.maxSize = methodMap.size() + OBJECT_METHODS;
+    }
+
+    public DispatchPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * @param method  The invoked method.
+     * @return The delegation of the method.
+     */
+    public DelegateCall get(final Method method) {
+        final Object[] tab = table;
+        final int mask = tab.length - 1;
+        int i = index(method, mask);
+        while (true) {
+            final Object key = tab[i];
+            if (key == method) {
+                return (DelegateCall) tab[i + 1];
+            }
+            if (key == null) {
+                return full ? lookUp(method) : add(method);
+            }
+            i = (i + 2) & mask;
+        }
+    }
+
+    private synchronized DelegateCall add(final Method method) {
+        Object[] tab = table;
+        int mask = tab.length - 1;
+        int i = index(method, mask);
+        while (tab[i] != null) {
+            if (tab[i] == method) {
+                return (DelegateCall) tab[i + 1];
+            }
+            i = (i + 2) & mask;
+        }
+        final DelegateCall delegateCall = lookUp(method);
+        if (size >= maxSize) {
+            return delegateCall;
+        }
+        final boolean grow = 4 * (size + 1) > tab.length;
+        tab = grow ? new Object[2 * tab.length] : tab.clone();
+        mask = tab.length - 1;
+        if (grow) {
+            final Object[] old = table;
+            for (int j = 0; j < old.length; j += 2) {
+                if (old[j] != null) {
+                    put(tab, mask, old[j], old[j + 1]);
+                }
+            }
+        }
+        put(tab, mask, method, delegateCall);
+        size++;
+        table = tab;
+        full = size >= maxSize;
+        return delegateCall;
+    }
+
+    /**
+     * Looks a method up without the identity table.
+     */
+    private DelegateCall lookUp(final Method method) {
+        final DelegateCall delegateCall = methodMap.get(method);
+        if (delegateCall == null) {
+            // Methods not declared by the interfaces, i.e., those of
+            // Object.
+            return plan.getDelegateCall(method);
+        }
+        return delegateCall;
+    }
+
+    /**
+     * @return The number of methods in the identity table.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private static void put(
+            final Object[] tab,
+            final int mask,
+            final Object method,
+            final Object delegateCall) {
+        int i = index(method, mask);
+        while (tab[i] != null) {
+            i = (i + 2) & mask;
+        }
+        tab[i] = method;
+        tab[i + 1] = delegateCall;
+    }
+
+    private static int index(final Object method, final int mask) {
+        return (System.identityHashCode(method) << 1) & mask;
+    }
+
+}
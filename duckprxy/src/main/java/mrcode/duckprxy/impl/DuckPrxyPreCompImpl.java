@@ -0,0 +1,106 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+
+import mrcode.duckprxy.DispatchMetrics;
+import mrcode.duckprxy.DuckPrxy;
+import mrcode.duckprxy.ProxyFactory;
+import mrcode.duckprxy.jfr.ProxyCreationEvent;
+
+public class DuckPrxyPreCompImpl implements DuckPrxy {
+
+    /**
+     * The metrics of the proxied methods or null if there are none.
+     */
+    private final MethodMetricsRegistry metricsRegistry;
+
+    public DuckPrxyPreCompImpl() {
+        this(null);
+    }
+
+    /**
+     * Constructor to record the invocations of the proxied methods.
+     * @param metrics  The hook to report the invocations to, or null.
+     */
+    public DuckPrxyPreCompImpl(final DispatchMetrics metrics) {
+        this.metricsRegistry = MethodMetricsRegistry.forMetrics(metrics);
+    }
+
+    public <T> T makeProxy(
+            final Class<T> mainInterface,
+            final Object delegate,
+            final Class<?>... interfaces) {
+        final Class<?>[] allInterfaces =
+            JdkProxyFactory.getAllInterfaces(mainInterface, interfaces);
+        final ProxyCreationEvent event = new ProxyCreationEvent();
+        event.begin();
+        final InvocationHandler invocationHandler = withMetrics(
+                new PrxyPreCompInvocationHandler(delegate, allInterfaces),
+                delegate.getClass());
+        @SuppressWarnings("unchecked")
+        final T proxy = (T) Proxy.newProxyInstance(
+                delegate.getClass().getClassLoader(),
+                allInterfaces,
+                invocationHandler);
+        event.commit(delegate, mainInterface, proxy);
+        return proxy;
+    }
+
+    public <T> T makeRebindableProxy(
+            final Class<T> mainInterface,
+            final Object delegate,
+            final Class<?>... interfaces) {
+        final Class<?>[] allInterfaces =
+            RebindableInvocationHandler.getAllInterfaces(
+                    mainInterface, interfaces);
+        final ProxyCreationEvent event = new ProxyCreationEvent();
+        event.begin();
+        final AbstractPrxyInvocationHandler handler =
+            new PrxyPreCompInvocationHandler(
+                        delegate, allInterfaces);
+        @SuppressWarnings("unchecked")
+        final T proxy = (T) Proxy.newProxyInstance(
+                delegate.getClass().getClassLoader(),
+                allInterfaces,
+                new RebindableInvocationHandler(
+                        handler,
+                        withMetrics(handler, delegate.getClass())));
+        event.commit(delegate, mainInterface, proxy);
+        return proxy;
+    }
+
+    public <T> ProxyFactory<T> getProxyFactory(
+            final Class<T> mainInterface,
+            final Class<?> delegateClass,
+            final Class<?>... interfaces) {
+        final Class<?>[] allInterfaces =
+            JdkProxyFactory.getAllInterfaces(mainInterface, interfaces);
+        final DispatchTable dispatchTable =
+            DispatchPlan.forClass(delegateClass)
+            .getDispatchTable(allInterfaces);
+        return new JdkProxyFactory<T>(delegateClass, allInterfaces) {
+            @Override
+            protected InvocationHandler createInvocationHandler(
+                    final Object delegate) {
+                return withMetrics(
+                        new PrxyPreCompInvocationHandler(
+                                delegate, dispatchTable),
+                        delegateClass);
+            }
+        };
+    }
+
+    /**
+     * @return The handler, wrapped to record the invocations if the
+     *         engine has metrics.
+     */
+    private InvocationHandler withMetrics(
+            final InvocationHandler handler,
+            final Class<?> delegateClass) {
+        return metricsRegistry == null ?
+                handler :
+                metricsRegistry.wrap(handler, delegateClass);
+    }
+
+}
@@ -0,0 +1,196 @@
+package mrcode.duckprxy.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import mrcode.duckprxy.DuckPrxy;
+import mrcode.duckprxy.DuckPrxyFor;
+import mrcode.duckprxy.ProxyFactory;
+
+/**
+ * Implementation of DuckPrxy using the proxy classes generated at compile
+ * time for delegates annotated with {@link DuckPrxyFor}.
+ * Creating such a proxy is a plain constructor call, and calls are
+ * delegated by plain Java code, i.e., neither reflection nor bytecode
+ * generation is used at runtime.
+ * <p>
+ * If there is no generated proxy class for a delegate class and set of
+ * interfaces, the proxy is created by a fallback implementation, by
+ * default {@link JavassistDuckPrxy}, whose semantics the generated
+ * classes follow.
+ * 
+ * @author Christian Haselbach
+ */
+public class GeneratedDuckPrxy implements DuckPrxy {
+
+    /**
+     * Infix of the names of the generated classes.
+     */
+    private static final String CLASS_NAME_INFIX = "$$DuckPrxy$";
+
+    /**
+     * Name of the {@link ProxyFactory} class nested in a generated class.
+     */
+    private static final String FACTORY_SUFFIX = "$Factory";
+
+    /**
+     * Stand-in for a missing generated class in {@link #FACTORIES}.
+     */
+    private static final Object NOT_GENERATED = new Object();
+
+    /**
+     * The factories of the generated classes per delegate class and
+     * interface set, or {@link #NOT_GENERATED}.
+     */
+    private static final ClassValue<ConcurrentMap<List<Class<?>>, Object>>
+        FACTORIES = new ClassValue<ConcurrentMap<List<Class<?>>, Object>>() {
+            @Override
+            protected ConcurrentMap<List<Class<?>>, Object> computeValue(
+                    final Class<?> type) {
+                return new ConcurrentHashMap<List<Class<?>>, Object>();
+            }
+        };
+
+    private final DuckPrxy fallback;
+
+    public GeneratedDuckPrxy() {
+        this(new JavassistDuckPrxy());
+    }
+
+    /**
+     * @param fallback  Creates the proxies for which no class has been
+     *                  generated.
+     */
+    public GeneratedDuckPrxy(final DuckPrxy fallback) {
+        this.fallback = fallback;
+    }
+
+    public <T> T makeProxy(
+            final Class<T> mainInterface,
+            final Object delegate,
+            final Class<?>... interfaces) {
+        final ProxyFactory<T> factory = getGeneratedFactory(
+                mainInterface, delegate.getClass(), interfaces);
+        if (factory == null) {
+            return fallback.makeProxy(mainInterface, delegate, interfaces);
+        }
+        return factory.create(delegate);
+    }
+
+    /**
+     * Rebindable proxies are always created by the fallback.
+     */
+    public <T> T makeRebindableProxy(
+            final Class<T> mainInterface,
+            final Object delegate,
+            final Class<?>... interfaces) {
+        return fallback.makeRebindableProxy(
+                mainInterface, delegate, interfaces);
+    }
+
+    public <T> ProxyFactory<T> getProxyFactory(
+            final Class<T> mainInterface,
+            final Class<?> delegateClass,
+            final Class<?>... interfaces) {
+        final ProxyFactory<T> factory = getGeneratedFactory(
+                mainInterface, delegateClass, interfaces);
+        if (factory == null) {
+            return fallback.getProxyFactory(
+                    mainInterface, delegateClass, interfaces);
+        }
+        return factory;
+    }
+
+    /**
+     * @return The factory of the generated class or null if there is none.
+     */
+    protected <T> ProxyFactory<T> getGeneratedFactory(
+            final Class<T> mainInterface,
+            final Class<?> delegateClass,
+            final Class<?>[] interfaces) {
+        final Class<?>[] allInterfaces =
+            JdkProxyFactory.getAllInterfaces(mainInterface, interfaces);
+        final ConcurrentMap<List<Class<?>>, Object> factories =
+            FACTORIES.get(delegateClass);
+        Object factory = factories.get(Arrays.asList(allInterfaces));
+        if (factory == null) {
+            factory = loadFactory(delegateClass, allInterfaces);
+            final Object raced = factories.putIfAbsent(
+                    Arrays.asList(allInterfaces), factory);
+            if (raced != null) {
+                factory = raced;
+            }
+        }
+        if (factory == NOT_GENERATED) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        final ProxyFactory<T> result = (ProxyFactory<T>) factory;
+        return result;
+    }
+
+    private static Object loadFactory(
+            final Class<?> delegateClass,
+            final Class<?>[] allInterfaces) {
+        final String[] interfaceNames = new String[allInterfaces.length - 1];
+        for (int i=0; i<interfaceNames.length; i++) {
+            interfaceNames[i] = allInterfaces[i+1].getName();
+        }
+        final String className = getGeneratedClassName(
+                delegateClass.getName(),
+                allInterfaces[0].getName(),
+                interfaceNames);
+        try {
+            return Class.forName(
+                    className + FACTORY_SUFFIX,
+                    true,
+                    delegateClass.getClassLoader())
+                .getConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return NOT_GENERATED;
+        } catch (Exception e) {
+            throw new RuntimeException(
+                    "Cannot instantiate factory of " + className, e);
+        }
+    }
+
+    /**
+     * Returns the binary name of the proxy class generated for a delegate
+     * class and interfaces. The class is in the package of the delegate
+     * class. Its nested class {@code Factory} is the
+     * {@link ProxyFactory} of the proxies.
+     * <p>
+     * The name contains the simple names of the interfaces, followed by a
+     * hash of their binary names, so interfaces with the same simple name
+     * from different packages give different classes.
+     * @param delegateClassName  The binary name of the delegate class.
+     * @param mainInterfaceName  The binary name of the main interface.
+     * @param interfaceNames     The binary names of the secondary
+     *                           interfaces.
+     * @return The binary name of the generated class.
+     */
+    public static String getGeneratedClassName(
+            final String delegateClassName,
+            final String mainInterfaceName,
+            final String... interfaceNames) {
+        final StringBuilder builder = new StringBuilder(delegateClassName)
+        .append(CLASS_NAME_INFIX).append(simpleName(mainInterfaceName));
+        final StringBuilder qualified = new StringBuilder(mainInterfaceName);
+        for (final String interfaceName : interfaceNames) {
+            builder.append("$").append(simpleName(interfaceName));
+            qualified.append(",").append(interfaceName);
+        }
+        // String.hashCode is specified, so the processor and the runtime
+        // lookup agree on it.
+        return builder.append("$")
+            .append(Integer.toHexString(qualified.toString().hashCode()))
+            .toString();
+    }
+
+    private static String simpleName(final String binaryName) {
+        return binaryName.substring(binaryName.lastIndexOf('.') + 1);
+    }
+
+}
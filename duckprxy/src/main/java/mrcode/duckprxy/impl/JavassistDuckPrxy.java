@@ -0,0 +1,1463 @@
+package mrcode.duckprxy.impl;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtConstructor;
+import javassist.CtField;
+import javassist.CtMethod;
+import javassist.LoaderClassPath;
+import javassist.Modifier;
+import javassist.NotFoundException;
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.BadBytecode;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.Descriptor;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+import javassist.util.proxy.DefineClassHelper;
+import mrcode.duckprxy.DispatchMetrics;
+import mrcode.duckprxy.DispatchStrategy;
+import mrcode.duckprxy.DuckArg;
+import mrcode.duckprxy.DuckMethod;
+import mrcode.duckprxy.DuckPrxy;
+import mrcode.duckprxy.MethodMetrics;
+import mrcode.duckprxy.ProxyFactory;
+import mrcode.duckprxy.ProxyShape;
+import mrcode.duckprxy.Rebindable;
+import mrcode.duckprxy.SubDelegatePolicy;
+import mrcode.duckprxy.jfr.MissingMethodEvent;
+import mrcode.duckprxy.jfr.ProxyClassGenerationEvent;
+import mrcode.duckprxy.jfr.ProxyCreationEvent;
+import mrcode.duckprxy.impl.AbstractPrxyInvocationHandler.DelegateClassInformation;
+import mrcode.duckprxy.impl.MethodUtils.MethodRetrieveStrategy;
+import mrcode.duckprxy.util.ObjectUtil;
+
+/**
+ * Javassist implementation of DuckPrxy.
+ * A new class is generated for a proxy which will delegate
+ * calls to the provided delegate object.
+ * No runtime reflection is used, making it very efficient.
+ * Also, it can implement classes, not just interfaces.
+ * However, there are some down-sides:
+ * <ul>
+ * <li> By default, the proxy classes are defined in the context class
+ * loader and are never garbage collected. Use
+ * {@link ProxyClassDefinition#DELEGATE_CHILD_CLASS_LOADER} to have them
+ * collected together with the delegate class.
+ * <li> Javassist cannot handle inner interfaces and classes. Hence,
+ * javassist duck proxies cannot implement inner interfaces
+ * (and inner classes, but the reflection based implementation
+ * cannot implement classes at all).
+ * <li> Generating a class takes time. To avoid this at runtime, the
+ * classes can be generated at build time, see {@link PregeneratedClasses}.
+ * </ul>
+ * There are some rough edges: The proxy creator assumes that the delegate
+ * methods have a appropriate parameter and return types. This is not checked.
+ * You will probably get strange javassist or class loading exceptions
+ * when this assumption is not met.
+ */
+public class JavassistDuckPrxy implements DuckPrxy {
+    
+    /**
+     * Method missing body simulates the behavior of throwing
+     * NoSuchMethodExcpetion in an invocation handler.
+     */
+    private static final String METHOD_MISSING_BODY =
+        "throw new java.lang.reflect.UndeclaredThrowableException(" +
+        "new java.lang.reflect.InvocationTargetException(" +
+        "new NoSuchMethodException()));";
+
+    /**
+     * Suffix of the name of the {@link ProxyFactory} class generated
+     * together with a proxy class.
+     */
+    private static final String FACTORY_SUFFIX = "$Factory";
+
+    /**
+     * Whether a class overrides
+     * {@link #getDelegateCall(String, Method, Class[])}.
+     */
+    private static final ClassValue<Boolean> DELEGATE_CALL_HOOK_OVERRIDDEN =
+        new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(final Class<?> type) {
+                return overrides(
+                        type,
+                        "getDelegateCall",
+                        String.class, Method.class, Class[].class);
+            }
+        };
+
+    /**
+     * Whether a class overrides
+     * {@link #getMethodDelegate(Method, Class, List, Method, StringBuilder)}.
+     */
+    private static final ClassValue<Boolean> METHOD_DELEGATE_HOOK_OVERRIDDEN =
+        new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(final Class<?> type) {
+                return overrides(
+                        type,
+                        "getMethodDelegate",
+                        Method.class, Class.class, List.class, Method.class,
+                        StringBuilder.class);
+            }
+        };
+
+    /**
+     * Name of the field holding the delegate.
+     */
+    static final String DELEGATE_FIELD = "delegate";
+
+    /**
+     * Prefix of the names of the fields holding the sub delegates with
+     * the {@link SubDelegatePolicy#STATIC} policy, followed by their depth
+     * (starting at 1).
+     */
+    static final String SUB_DELEGATE_FIELD_PREFIX = "subDelegate";
+
+    /**
+     * Prefix of the names of the static fields holding the
+     * {@link MethodMetrics} of the generated methods.
+     */
+    private static final String METRICS_FIELD_PREFIX = "metrics";
+
+    /**
+     * Numbers the engines with metrics, see {@link #createClassName}.
+     */
+    private static final AtomicInteger INSTRUMENTED_ENGINES =
+        new AtomicInteger();
+
+    /**
+     * The factories of the generated proxy classes, per proxy class.
+     */
+    private static final ClassValue<ProxyFactory<?>> PROXY_FACTORIES =
+        new ClassValue<ProxyFactory<?>>() {
+            @Override
+            protected ProxyFactory<?> computeValue(final Class<?> type) {
+                try {
+                    return (ProxyFactory<?>) Class.forName(
+                            type.getName() + FACTORY_SUFFIX,
+                            true,
+                            type.getClassLoader())
+                        .getConstructor().newInstance();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    
+    /**
+     * The caches of the engines without metrics, per class name prefix.
+     * Such engines generate classes of the same names, so they share a
+     * cache and each class is defined only once, even if several engines
+     * ask for it at the same time (which would otherwise fail with a
+     * {@link LinkageError} for the second definition).
+     */
+    private static final ConcurrentMap<String, ProxyClassCache>
+        SHARED_CACHES = new ConcurrentHashMap<String, ProxyClassCache>();
+
+    /**
+     * Cache for the generated proxy classes.
+     */
+    private final ProxyClassCache proxyClassCache;
+    
+    /**
+     * Prefix for the generated class names.
+     */
+    private final String classNamePrefix;
+
+    /**
+     * Where to define the generated classes.
+     */
+    private final ProxyClassDefinition classDefinition;
+
+    /**
+     * The metrics of the proxied methods or null if there are none. Only
+     * if there are metrics, the generated methods are instrumented.
+     */
+    private final MethodMetricsRegistry metricsRegistry;
+
+    /**
+     * The part of the generated class names telling the instrumented
+     * classes of this engine from those of other engines, or the empty
+     * string if there are no metrics.
+     */
+    private final String instrumentation;
+
+    /**
+     * The class loaders for the generated classes per delegate class, used
+     * with {@link ProxyClassDefinition#DELEGATE_CHILD_CLASS_LOADER}.
+     */
+    private final ClassValue<ProxyClassLoader> proxyClassLoaders =
+        new ClassValue<ProxyClassLoader>() {
+            @Override
+            protected ProxyClassLoader computeValue(final Class<?> type) {
+                return new ProxyClassLoader(type.getClassLoader());
+            }
+        };
+
+    public JavassistDuckPrxy() {
+        this("duckprxy:");
+    }
+    
+    /**
+     * Constructor to set own class name prefix.
+     * Normally, you do not want to override the class name prefix.
+     * @param classNamePrefix  Override value for class name prefix.
+     */
+    public JavassistDuckPrxy(String classNamePrefix) {
+        this(classNamePrefix, ProxyClassDefinition.CONTEXT_CLASS_LOADER);
+    }
+
+    /**
+     * Constructor to choose where the proxy classes are defined.
+     * @param classDefinition  Where to define the generated classes.
+     */
+    public JavassistDuckPrxy(ProxyClassDefinition classDefinition) {
+        this("duckprxy:", classDefinition);
+    }
+
+    /**
+     * Constructor to set own class name prefix and to choose where the
+     * proxy classes are defined.
+     * @param classNamePrefix  Override value for class name prefix.
+     * @param classDefinition  Where to define the generated classes.
+     */
+    public JavassistDuckPrxy(
+            String classNamePrefix,
+            ProxyClassDefinition classDefinition) {
+        this(classNamePrefix, classDefinition, null);
+    }
+
+    /**
+     * Constructor to record the invocations of the proxied methods.
+     * @param metrics  The hook to report the invocations to, or null.
+     */
+    public JavassistDuckPrxy(DispatchMetrics metrics) {
+        this(
+                "duckprxy:",
+                ProxyClassDefinition.CONTEXT_CLASS_LOADER,
+                metrics);
+    }
+
+    /**
+     * Constructor to set own class name prefix, to choose where the proxy
+     * classes are defined and to record the invocations of the proxied
+     * methods. With metrics, each generated method gets a static field
+     * holding its {@link MethodMetrics} and calls it on every invocation.
+     * Without metrics, no instrumentation is generated. Pregenerated
+     * classes are not instrumented, so they are not used with metrics.
+     * @param classNamePrefix  Override value for class name prefix.
+     * @param classDefinition  Where to define the generated classes.
+     * @param metrics          The hook to report the invocations to, or
+     *                         null.
+     */
+    public JavassistDuckPrxy(
+            String classNamePrefix,
+            ProxyClassDefinition classDefinition,
+            DispatchMetrics metrics) {
+        this.classNamePrefix = classNamePrefix;
+        this.classDefinition = classDefinition;
+        this.metricsRegistry = MethodMetricsRegistry.forMetrics(metrics);
+        this.instrumentation = metricsRegistry == null ?
+                "" :
+                "+metrics" + INSTRUMENTED_ENGINES.incrementAndGet();
+        this.proxyClassCache = metricsRegistry == null ?
+                getSharedCache(classNamePrefix) :
+                new ProxyClassCache();
+    }
+
+    /**
+     * @return The cache shared by the engines without metrics using the
+     *         given class name prefix.
+     */
+    private static ProxyClassCache getSharedCache(
+            final String classNamePrefix) {
+        final ProxyClassCache cache = SHARED_CACHES.get(classNamePrefix);
+        if (cache != null) {
+            return cache;
+        }
+        final ProxyClassCache created = new ProxyClassCache();
+        final ProxyClassCache raced =
+            SHARED_CACHES.putIfAbsent(classNamePrefix, created);
+        return raced == null ? created : raced;
+    }
+
+    public <T> T makeProxy(
+            final Class<T> mainInterface,
+            final Object delegate,
+            final Class<?>... interfaces) {
+        final ProxyCreationEvent event = new ProxyCreationEvent();
+        event.begin();
+        final T proxy = getProxyFactory(
+                mainInterface,
+                delegate.getClass(),
+                interfaces).create(delegate);
+        event.commit(delegate, mainInterface, proxy);
+        return proxy;
+    }
+
+    /**
+     * The rebindable proxy class is the proxy class with {@link Rebindable}
+     * as an additional interface, whose method replaces the delegate.
+     */
+    public <T> T makeRebindableProxy(
+            final Class<T> mainInterface,
+            final Object delegate,
+            final Class<?>... interfaces) {
+        final Class<?>[] allInterfaces =
+            new Class<?>[interfaces.length + 1];
+        System.arraycopy(interfaces, 0, allInterfaces, 0, interfaces.length);
+        allInterfaces[interfaces.length] = Rebindable.class;
+        return makeProxy(mainInterface, delegate, allInterfaces);
+    }
+
+    /**
+     * Generates (or loads) the proxy classes of the given shapes in
+     * parallel in the common {@link ForkJoinPool}, so that the first
+     * proxies of these shapes are created without delay.
+     * @param shapes  The shapes of the proxies to generate.
+     * @see #warmUp(Collection, ForkJoinPool)
+     */
+    public void warmUp(final Collection<ProxyShape> shapes) {
+        warmUp(shapes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Generates (or loads) the proxy classes of the given shapes in
+     * parallel, so that the first proxies of these shapes are created
+     * without delay. Each class is generated with its own class pool (see
+     * {@link #getClassPool}), so the generation scales with the number of
+     * threads of the pool. The classes are defined as if they had been
+     * generated by the calling thread, in particular in its context class
+     * loader.
+     * @param shapes  The shapes of the proxies to generate.
+     * @param pool    The pool to generate the classes in.
+     * @throws RuntimeException  If a proxy class cannot be generated.
+     */
+    public void warmUp(
+            final Collection<ProxyShape> shapes,
+            final ForkJoinPool pool) {
+        final ClassLoader contextClassLoader =
+            Thread.currentThread().getContextClassLoader();
+        final List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for (final ProxyShape shape : shapes) {
+            tasks.add(ForkJoinTask.adapt(new Runnable() {
+                public void run() {
+                    final Thread thread = Thread.currentThread();
+                    final ClassLoader previous =
+                        thread.getContextClassLoader();
+                    thread.setContextClassLoader(contextClassLoader);
+                    try {
+                        getProxyFactory(
+                                shape.getMainInterface(),
+                                shape.getDelegateClass(),
+                                shape.getInterfaces());
+                    } finally {
+                        thread.setContextClassLoader(previous);
+                    }
+                }
+            }));
+        }
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Returns the factory of the proxy class. Along with each proxy class,
+     * a factory class is generated that calls the proxy's constructor
+     * directly, so creating a proxy does not need any reflection.
+     */
+    public <T> ProxyFactory<T> getProxyFactory(
+            final Class<T> mainInterface,
+            final Class<?> delegateClass,
+            final Class<?>... interfaces) {
+        final String className = createClassName(
+                delegateClass,
+                mainInterface,
+                interfaces);
+        try {
+            final Class<?> proxyClass = getProxyClass(
+                    className,
+                    delegateClass,
+                    mainInterface,
+                    interfaces,
+                    null);
+            @SuppressWarnings("unchecked")
+            final ProxyFactory<T> factory =
+                (ProxyFactory<T>) PROXY_FACTORIES.get(proxyClass);
+            return factory;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    public Class<?> getProxyClass(
+            final String className,
+            final Object delegate,
+            final Class<?> delegateClass,
+            final Class<?> mainInterface,
+            final Class<?>[] interfaces,
+            final ClassPool classPool)
+    throws CannotCompileException, NotFoundException {
+        return getProxyClass(
+                className,
+                delegateClass,
+                mainInterface,
+                interfaces,
+                classPool);
+    }
+
+    /**
+     * Returns the proxy class from the cache. If it is not cached yet, it
+     * is loaded from the {@link PregeneratedClasses} or generated.
+     * @param classPool  The class pool to generate the class with, or null
+     *                   for the one returned by {@link #getClassPool}.
+     */
+    private Class<?> getProxyClass(
+            final String className,
+            final Class<?> delegateClass,
+            final Class<?> mainInterface,
+            final Class<?>[] interfaces,
+            final ClassPool classPool)
+    throws CannotCompileException, NotFoundException {
+        try {
+            return proxyClassCache.getProxyClass(
+                    getDefiningClassLoader(delegateClass),
+                    delegateClass,
+                    mainInterface,
+                    interfaces,
+                    new Callable<Class<?>>() {
+                        public Class<?> call() throws Exception {
+                            final ProxyClassGenerationEvent event =
+                                new ProxyClassGenerationEvent();
+                            event.begin();
+                            final String factoryName =
+                                className + FACTORY_SUFFIX;
+                            final PregeneratedClasses pregenerated =
+                                PregeneratedClasses.forClass(delegateClass);
+                            byte[] bytecode = metricsRegistry == null ?
+                                    pregenerated.getBytecode(className) :
+                                    null;
+                            byte[] factoryBytecode =
+                                pregenerated.getBytecode(factoryName);
+                            final boolean pregeneratedClass =
+                                bytecode != null && factoryBytecode != null;
+                            if (!pregeneratedClass) {
+                                final Map<String, byte[]> classFiles =
+                                    generateClassFiles(
+                                            className,
+                                            delegateClass,
+                                            mainInterface,
+                                            interfaces,
+                                            classPool == null ?
+                                                    getClassPool(delegateClass) :
+                                                    classPool);
+                                bytecode = classFiles.get(className);
+                                factoryBytecode = classFiles.get(factoryName);
+                            }
+                            final Class<?> proxyClass = defineClass(
+                                    className, bytecode, delegateClass);
+                            defineClass(
+                                    factoryName, factoryBytecode, delegateClass);
+                            if (metricsRegistry != null) {
+                                bindMetrics(
+                                        proxyClass,
+                                        delegateClass,
+                                        mainInterface,
+                                        interfaces);
+                            }
+                            if (event.shouldCommit()) {
+                                event.className = className;
+                                event.delegateClass = delegateClass;
+                                event.mainInterface = mainInterface;
+                                event.methodCount =
+                                    proxyClass.getDeclaredMethods().length;
+                                event.pregenerated = pregeneratedClass;
+                                event.commit();
+                            }
+                            return proxyClass;
+                        }
+                    });
+        } catch (CannotCompileException e) {
+            throw e;
+        } catch (NotFoundException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the class pool to generate a proxy class for the delegate
+     * class with. Each generation gets a new pool, isolated from the
+     * default pool and discarded afterwards: Generating proxy classes in
+     * parallel does not contend for the locks of a shared pool, and the
+     * {@link CtClass} objects of the referenced types do not pile up.
+     * @return A new class pool seeing the classes of the delegate class's
+     *         class loader and, if the proxy classes are defined there,
+     *         the context class loader.
+     */
+    protected ClassPool getClassPool(final Class<?> delegateClass) {
+        final ClassPool classPool = createClassPool(delegateClass);
+        if (classDefinition == ProxyClassDefinition.CONTEXT_CLASS_LOADER) {
+            appendLoaderClassPath(
+                    classPool,
+                    Thread.currentThread().getContextClassLoader());
+        }
+        return classPool;
+    }
+
+    /**
+     * @return A new class pool seeing the classes of the delegate class's
+     *         class loader, the classes of duckprxy and the system classes,
+     *         in this order, so a class loader loading classes itself
+     *         (e.g., of a plugin) provides the class files of its classes.
+     */
+    private static ClassPool createClassPool(final Class<?> delegateClass) {
+        final ClassPool classPool = new ClassPool(false);
+        appendLoaderClassPath(classPool, delegateClass.getClassLoader());
+        appendLoaderClassPath(
+                classPool, JavassistDuckPrxy.class.getClassLoader());
+        classPool.appendSystemPath();
+        return classPool;
+    }
+
+    private static void appendLoaderClassPath(
+            final ClassPool classPool,
+            final ClassLoader loader) {
+        if (loader != null) {
+            classPool.appendClassPath(new LoaderClassPath(loader));
+        }
+    }
+
+    /**
+     * @return The class loader the proxy class for the delegate class is
+     *         defined in.
+     */
+    protected ClassLoader getDefiningClassLoader(final Class<?> delegateClass) {
+        if (classDefinition == ProxyClassDefinition.CONTEXT_CLASS_LOADER) {
+            return Thread.currentThread().getContextClassLoader();
+        }
+        return proxyClassLoaders.get(delegateClass);
+    }
+
+    /**
+     * Defines a generated class.
+     */
+    private Class<?> defineClass(
+            final String className,
+            final byte[] bytecode,
+            final Class<?> delegateClass)
+    throws CannotCompileException {
+        if (classDefinition == ProxyClassDefinition.CONTEXT_CLASS_LOADER) {
+            return DefineClassHelper.toClass(
+                    className,
+                    null,
+                    Thread.currentThread().getContextClassLoader(),
+                    null,
+                    bytecode);
+        }
+        return proxyClassLoaders.get(delegateClass).define(
+                className, bytecode);
+    }
+
+    /**
+     * Generates the class files of the proxy class and its factory class
+     * without defining them, e.g., to store them as
+     * {@link PregeneratedClasses} at build time.
+     * @param mainInterface  The main interface (or class) of the proxy.
+     * @param delegateClass  The class of the delegate.
+     * @param interfaces     The secondary interfaces of the proxy.
+     * @return The class files per class name.
+     * @throws CannotCompileException  If the proxy cannot be compiled.
+     * @throws NotFoundException       If a class is not found.
+     * @throws IOException             If the class files cannot be
+     *                                 written.
+     */
+    public Map<String, byte[]> generateClassFiles(
+            final Class<?> mainInterface,
+            final Class<?> delegateClass,
+            final Class<?>... interfaces)
+    throws CannotCompileException, NotFoundException, IOException {
+        return generateClassFiles(
+                createClassName(delegateClass, mainInterface, interfaces),
+                delegateClass,
+                mainInterface,
+                interfaces,
+                createClassPool(delegateClass));
+    }
+
+    private Map<String, byte[]> generateClassFiles(
+            final String className,
+            final Class<?> delegateClass,
+            final Class<?> mainInterface,
+            final Class<?>[] interfaces,
+            final ClassPool classPool)
+    throws CannotCompileException, NotFoundException, IOException {
+        final Map<String, byte[]> classFiles =
+            new LinkedHashMap<String, byte[]>();
+        final CtClass ctClass = createCtClass(
+                className,
+                delegateClass,
+                mainInterface,
+                interfaces,
+                classPool);
+        classFiles.put(className, ctClass.toBytecode());
+        ctClass.detach();
+        final CtClass factoryClass =
+            createFactoryClass(className, delegateClass, classPool);
+        classFiles.put(factoryClass.getName(), factoryClass.toBytecode());
+        factoryClass.detach();
+        return classFiles;
+    }
+
+    /**
+     * @return The cache of the generated proxy classes, e.g., to look at
+     *         its statistics. Engines without metrics share the cache with
+     *         the other engines of the same class name prefix.
+     */
+    public ProxyClassCache getProxyClassCache() {
+        return proxyClassCache;
+    }
+
+    /**
+     * Creates the proxy class. It is final, and the delegate is held in a
+     * private final field set by the constructor (unless the class is
+     * {@link Rebindable}), so the JIT can trust the field and inline the
+     * delegate calls into the callers of the proxy. Unless the class is
+     * {@link Rebindable}, sub delegates with the
+     * {@link SubDelegatePolicy#STATIC} policy are read by the constructor
+     * and held in final fields as well.
+     */
+    private CtClass createCtClass(
+            final String className,
+            final Class<?> delegateClass,
+            final Class<?> mainInterface,
+            final Class<?>[] interfaces,
+            final ClassPool classPool)
+    throws CannotCompileException, NotFoundException {
+        final DelegateClassInformation info =
+            getDelegateClassInformation(delegateClass);
+        final List<MethodRetrieveStrategy> strategies =
+            makeStrategies(delegateClass, info);
+        final boolean rebindable =
+            Arrays.asList(interfaces).contains(Rebindable.class);
+        final int fieldModifiers =
+            rebindable ? Modifier.PRIVATE : Modifier.PRIVATE | Modifier.FINAL;
+        // A rebindable proxy is a cursor, so it does not read the sub
+        // delegates of each delegate it is bound to up front.
+        final List<Method> staticSubDelegatePath = rebindable ?
+                Collections.<Method>emptyList() :
+                getStaticSubDelegatePath(delegateClass);
+        final CtClass ctClass = classPool.makeClass(className);
+        ctClass.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
+        final CtClass delegateCtClass = classPool.get(delegateClass.getName());
+        final CtField delegateField = new CtField(
+                delegateCtClass,
+                DELEGATE_FIELD,
+                ctClass);
+        delegateField.setModifiers(fieldModifiers);
+        ctClass.addField(delegateField);
+        for (int i = 0; i < staticSubDelegatePath.size(); i++) {
+            final CtField subDelegateField = new CtField(
+                    classPool.get(
+                            staticSubDelegatePath.get(i).getReturnType()
+                            .getName()),
+                    SUB_DELEGATE_FIELD_PREFIX + (i + 1),
+                    ctClass);
+            subDelegateField.setModifiers(fieldModifiers);
+            ctClass.addField(subDelegateField);
+        }
+        if (mainInterface.isInterface()) {
+            ctClass.addInterface(classPool.get(mainInterface.getName()));
+        } else {
+            ctClass.setSuperclass(classPool.get(mainInterface.getName()));
+        }
+        addInterface(
+                classPool,
+                ctClass,
+                mainInterface,
+                delegateClass,
+                strategies,
+                info.subDelegateGetter,
+                staticSubDelegatePath);
+        for (final Class<?> interfce : interfaces) {
+            ctClass.addInterface(classPool.get(interfce.getName()));
+            if (interfce == Rebindable.class) {
+                continue;
+            }
+            addInterface(
+                    classPool,
+                    ctClass,
+                    interfce,
+                    delegateClass,
+                    strategies,
+                    info.subDelegateGetter,
+                    staticSubDelegatePath);
+        }
+        // Added last, so the indexes of the other methods do not depend on
+        // the position of Rebindable, see bindMetrics.
+        if (rebindable) {
+            addRebindMethod(ctClass, delegateClass);
+        }
+        final CtConstructor delegateConstructor =
+            new CtConstructor(new CtClass[] {delegateCtClass}, ctClass);
+        delegateConstructor.getMethodInfo().setCodeAttribute(
+                BytecodeEmitter.createConstructorCode(
+                        ctClass.getClassFile(),
+                        mainInterface.isInterface() ?
+                                Object.class :
+                                mainInterface,
+                        delegateClass,
+                        staticSubDelegatePath));
+        if (staticSubDelegatePath.size() > 1) {
+            try {
+                delegateConstructor.getMethodInfo().rebuildStackMapIf6(
+                        classPool, ctClass.getClassFile());
+            } catch (BadBytecode e) {
+                throw new CannotCompileException(e);
+            }
+        }
+        ctClass.addConstructor(delegateConstructor);
+        return ctClass;
+    }
+
+    /**
+     * @return The getters of the sub delegates that are read once, when
+     *         a proxy is created, i.e., the getters with the
+     *         {@link SubDelegatePolicy#STATIC} policy that are reached
+     *         from the delegate via such getters only. The path ends
+     *         before a getter leading back to a class on the path (e.g.,
+     *         a getter returning its own class); the sub delegates below
+     *         are read on every invocation.
+     */
+    private List<Method> getStaticSubDelegatePath(
+            final Class<?> delegateClass) {
+        final List<Method> path = new ArrayList<Method>();
+        final Set<Class<?>> visited = new HashSet<Class<?>>();
+        visited.add(delegateClass);
+        Method getter = getDelegateClassInformation(delegateClass)
+            .subDelegateGetter;
+        while (getter != null &&
+                getter.getAnnotation(DuckMethod.class).policy() ==
+                    SubDelegatePolicy.STATIC &&
+                visited.add(getter.getReturnType())) {
+            path.add(getter);
+            getter = getDelegateClassInformation(getter.getReturnType())
+                .subDelegateGetter;
+        }
+        return path;
+    }
+
+    /**
+     * Adds {@link Rebindable#rebind(Object)}, which replaces the delegate
+     * by an object of the same class.
+     */
+    private static void addRebindMethod(
+            final CtClass ctClass,
+            final Class<?> delegateClass)
+    throws CannotCompileException {
+        final String delegateClassName = delegateClass.getName();
+        final StringBuilder body = new StringBuilder()
+            .append("public void rebind(Object newDelegate) {\n")
+            .append("    if (newDelegate.getClass() != delegate.getClass()) {\n")
+            .append("        throw new ClassCastException(")
+            .append("\"Cannot rebind a proxy delegating to ")
+            .append(delegateClassName).append(" to \" + ")
+            .append("newDelegate.getClass().getName());\n")
+            .append("    }\n")
+            .append("    delegate = (").append(delegateClassName)
+            .append(") newDelegate;\n")
+            .append("}");
+        ctClass.addMethod(CtMethod.make(body.toString(), ctClass));
+    }
+
+    /**
+     * Creates the factory class of a proxy class. Its create method is
+     * {@code return new Proxy((Delegate) delegate);}. The class is built
+     * from bytecode, because the proxy class name is not a valid Java
+     * identifier.
+     */
+    private CtClass createFactoryClass(
+            final String className,
+            final Class<?> delegateClass,
+            final ClassPool classPool) {
+        final ClassFile classFile =
+            new ClassFile(false, className + FACTORY_SUFFIX, null);
+        classFile.setAccessFlags(
+                AccessFlag.PUBLIC | AccessFlag.FINAL | AccessFlag.SUPER);
+        classFile.setInterfaces(new String[] {ProxyFactory.class.getName()});
+
+        final MethodInfo constructor = new MethodInfo(
+                classFile.getConstPool(), MethodInfo.nameInit, "()V");
+        constructor.setAccessFlags(AccessFlag.PUBLIC);
+        final Bytecode constructorCode =
+            new Bytecode(classFile.getConstPool(), 1, 1);
+        constructorCode.addAload(0);
+        constructorCode.addInvokespecial(
+                "java.lang.Object", MethodInfo.nameInit, "()V");
+        constructorCode.addOpcode(Opcode.RETURN);
+        constructor.setCodeAttribute(constructorCode.toCodeAttribute());
+        classFile.addMethod2(constructor);
+
+        final MethodInfo create = new MethodInfo(
+                classFile.getConstPool(),
+                "create",
+                "(Ljava/lang/Object;)Ljava/lang/Object;");
+        create.setAccessFlags(AccessFlag.PUBLIC);
+        final Bytecode createCode =
+            new Bytecode(classFile.getConstPool(), 3, 2);
+        createCode.addNew(className);
+        createCode.addOpcode(Opcode.DUP);
+        createCode.addAload(1);
+        createCode.addCheckcast(delegateClass.getName());
+        createCode.addInvokespecial(
+                className,
+                MethodInfo.nameInit,
+                "(" + Descriptor.of(delegateClass.getName()) + ")V");
+        createCode.addOpcode(Opcode.ARETURN);
+        create.setCodeAttribute(createCode.toCodeAttribute());
+        classFile.addMethod2(create);
+
+        return classPool.makeClass(classFile);
+    }
+    
+    /**
+     * Creates the name of a proxy class. The classes of an engine with
+     * metrics get a name of their own, since their methods are bound to
+     * the engine's metrics, so they neither clash with nor are mistaken
+     * for the classes of other engines defined in the same class loader.
+     */
+    protected String createClassName(
+            final Class<?> delegateClass,
+            final Class<?> mainInterface,
+            final Class<?>[] interfaces) {
+        final StringBuilder builder = new StringBuilder(classNamePrefix)
+        .append(delegateClass.getName())
+        .append("+").append(mainInterface.getName());
+        for (final Class<?> intrfce : interfaces) {
+            builder.append("+").append(intrfce.getName());
+        }
+        return builder.append(instrumentation).toString();
+    }
+    
+    protected void addInterface(
+            final ClassPool classPool,
+            final CtClass ctClass,
+            final Class<?> interfce,
+            final Class<?> delegateClass,
+            final List<MethodRetrieveStrategy> strategies,
+            final Method subDelegateGetter,
+            final List<Method> staticSubDelegatePath)
+    throws NotFoundException, CannotCompileException {
+        for (final Method method : interfce.getMethods()) {
+            if (!method.getDeclaringClass().equals(Object.class) &&
+                    isInterfaceMethod(method.getModifiers())) {
+                addMethod(
+                        classPool,
+                        ctClass,
+                        method,
+                        delegateClass,
+                        strategies,
+                        subDelegateGetter,
+                        staticSubDelegatePath);
+            }
+        }
+    }
+
+    protected void addMethod(
+            final ClassPool classPool,
+            final CtClass ctClass,
+            final Method method,
+            final Class<?> delegateClass,
+            final List<MethodRetrieveStrategy> strategies,
+            final Method subDelegateGetter,
+            final List<Method> staticSubDelegatePath)
+    throws NotFoundException, CannotCompileException {
+        final List<Method> subDelegatePath = new ArrayList<Method>();
+        Method delegateMethod = findMethodDelegate(
+                method,
+                delegateClass,
+                strategies, subDelegateGetter,
+                subDelegatePath);
+        final boolean compilingSource = isCompilingSource();
+        final StringBuilder delegatePath;
+        if (compilingSource &&
+                METHOD_DELEGATE_HOOK_OVERRIDDEN.get(getClass())) {
+            delegatePath = new StringBuilder(DELEGATE_FIELD).append(".");
+            delegateMethod = getMethodDelegate(
+                    method,
+                    delegateClass,
+                    strategies,
+                    subDelegateGetter,
+                    delegatePath);
+        } else {
+            final int heldSubDelegates = Math.min(
+                    subDelegatePath.size(), staticSubDelegatePath.size());
+            delegatePath = new StringBuilder(
+                    heldSubDelegates == 0 ?
+                            DELEGATE_FIELD :
+                            SUB_DELEGATE_FIELD_PREFIX + heldSubDelegates)
+                .append(".");
+            for (final Method getter : subDelegatePath.subList(
+                    heldSubDelegates, subDelegatePath.size())) {
+                delegatePath.append(getter.getName()).append("().");
+            }
+        }
+        final MethodMetrics methodMetrics = metricsRegistry == null ?
+                null :
+                metricsRegistry.getMethodMetrics(
+                        delegateClass,
+                        method,
+                        getDispatchStrategy(
+                                delegateClass,
+                                method,
+                                delegateMethod,
+                                subDelegatePath));
+        final String metricsField = methodMetrics == null ?
+                null :
+                addMetricsField(ctClass);
+        if (!compilingSource) {
+            try {
+                ctClass.addMethod(CtMethod.make(
+                        BytecodeEmitter.createMethod(
+                                classPool,
+                                ctClass.getClassFile(),
+                                method,
+                                delegateClass,
+                                subDelegatePath,
+                                Math.min(
+                                        subDelegatePath.size(),
+                                        staticSubDelegatePath.size()),
+                                delegateMethod,
+                                metricsField,
+                                methodMetrics != null &&
+                                    methodMetrics.isTimed()),
+                        ctClass));
+            } catch (BadBytecode e) {
+                throw new CannotCompileException(e);
+            }
+            return;
+        }
+        final String methodName = method.getName();
+        final CtMethod ctMethod = new CtMethod(
+                getCtClass(classPool, method.getReturnType()),
+                methodName,
+                getCtClass(classPool, method.getParameterTypes()),
+                ctClass);
+        final StringBuilder body = new StringBuilder();
+        if (delegateMethod != null) {
+            final Class<?> returnType = method.getReturnType();
+            final Class<?> delegateReturnType =
+                delegateMethod.getReturnType();
+            final String delegateCall = delegatePath.toString() +
+            getDelegateCall(
+                    methodName,
+                    delegateMethod,
+                    method.getParameterTypes());
+            body.append("{\n    ");
+            if (returnType == void.class) {
+                body.append(delegateCall).append(";\n");
+            } else if (delegateReturnType == void.class) {
+                body.append(delegateCall).append(";\n");
+                body.append("    return ").append(defaultValue(returnType))
+                .append(";\n");
+            } else {
+                body.append("return ").append(convert(
+                        delegateCall, delegateReturnType, returnType))
+                .append(";\n");
+            }
+            body.append("}");
+        } else {
+            body.append("{\n    ")
+            .append(MissingMethodEvent.class.getName())
+            .append(".emit(\"").append(methodName).append("\", delegate);\n")
+            .append("    ").append(METHOD_MISSING_BODY).append("\n}");
+        }
+        if (metricsField == null) {
+            ctMethod.setBody(body.toString());
+        } else {
+            ctMethod.setBody(addMetrics(
+                    body.toString(), metricsField, methodMetrics.isTimed()));
+        }
+        ctClass.addMethod(ctMethod);
+    }
+
+    /**
+     * Whether the bodies of the generated methods are compiled from Java
+     * source with Javassist's compiler. Otherwise, they are emitted as
+     * bytecode directly (see {@link BytecodeEmitter}), which is several
+     * times faster. The source hooks {@link #getDelegateCall} and
+     * {@link #getMethodDelegate(Method, Class, List, Method, StringBuilder)}
+     * only take effect on the source path, so it is used if a subclass
+     * overrides one of them.
+     * @return true iff a source hook is overridden.
+     */
+    protected boolean isCompilingSource() {
+        return DELEGATE_CALL_HOOK_OVERRIDDEN.get(getClass()) ||
+            METHOD_DELEGATE_HOOK_OVERRIDDEN.get(getClass());
+    }
+
+    /**
+     * @return true iff a subclass of {@link JavassistDuckPrxy} between the
+     *         given class and it declares the method.
+     */
+    private static boolean overrides(
+            final Class<?> type,
+            final String name,
+            final Class<?>... parameterTypes) {
+        for (Class<?> c = type; c != JavassistDuckPrxy.class;
+                c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // not declared here
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The strategy that resolved the delegate method.
+     */
+    private static DispatchStrategy getDispatchStrategy(
+            final Class<?> delegateClass,
+            final Method method,
+            final Method delegateMethod,
+            final List<Method> subDelegatePath) {
+        if (delegateMethod == null) {
+            return DispatchStrategy.MISSING;
+        }
+        if (!subDelegatePath.isEmpty()) {
+            return DispatchStrategy.SUB_DELEGATE;
+        }
+        return MethodUtils.getDispatchStrategy(
+                delegateClass, method, delegateMethod);
+    }
+
+    /**
+     * Adds the static field holding the {@link MethodMetrics} of the
+     * method that is added next. It is named after the index of the
+     * method in the class and set by {@link #bindMetrics}.
+     * @return The name of the field.
+     */
+    private static String addMetricsField(final CtClass ctClass)
+    throws NotFoundException, CannotCompileException {
+        final String fieldName =
+            METRICS_FIELD_PREFIX + ctClass.getDeclaredMethods().length;
+        final CtField field = new CtField(
+                ctClass.getClassPool().get(MethodMetrics.class.getName()),
+                fieldName,
+                ctClass);
+        field.setModifiers(Modifier.PUBLIC | Modifier.STATIC);
+        ctClass.addField(field);
+        return fieldName;
+    }
+
+    /**
+     * Instruments the source of a generated method to record its
+     * invocations.
+     * @return The instrumented body.
+     */
+    private static String addMetrics(
+            final String body,
+            final String fieldName,
+            final boolean timed) {
+        if (timed) {
+            return "{\n    long start = System.nanoTime();\n    try {\n" +
+                body + "\n    } finally {\n        " + fieldName +
+                ".invoked(System.nanoTime() - start);\n    }\n}";
+        }
+        return "{\n    " + fieldName + ".invoked();\n" + body + "\n}";
+    }
+
+    /**
+     * Sets the metrics fields of a newly defined proxy class, enumerating
+     * the methods in the same order as {@link #createCtClass}.
+     */
+    private void bindMetrics(
+            final Class<?> proxyClass,
+            final Class<?> delegateClass,
+            final Class<?> mainInterface,
+            final Class<?>[] interfaces)
+    throws Exception {
+        final Class<?>[] allInterfaces =
+            JdkProxyFactory.getAllInterfaces(mainInterface, interfaces);
+        int index = 0;
+        for (final Class<?> interfce : allInterfaces) {
+            if (interfce == Rebindable.class) {
+                continue;
+            }
+            for (final Method method : interfce.getMethods()) {
+                if (!method.getDeclaringClass().equals(Object.class) &&
+                        isInterfaceMethod(method.getModifiers())) {
+                    proxyClass.getField(METRICS_FIELD_PREFIX + index).set(
+                            null,
+                            metricsRegistry.getMethodMetrics(
+                                    delegateClass, method));
+                    index++;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Looks up the delegate method of a proxied method, descending into
+     * the sub delegates if the delegate has none.
+     * @param subDelegatePath  Receives the getters of the sub delegates
+     *                         leading to the object having the delegate
+     *                         method.
+     * @return The delegate method or null if there is none.
+     */
+    private Method findMethodDelegate(
+            final Method method,
+            final Class<?> delegateClass,
+            final List<MethodRetrieveStrategy> strategies,
+            final Method subDelegateGetter,
+            final List<Method> subDelegatePath) {
+        final Method delegateMethod = getDelegateMethod(
+                strategies,
+                method.getName(),
+                method.getParameterTypes());
+        if (delegateMethod != null) {
+            return delegateMethod;
+        }
+        if (subDelegateGetter == null ||
+                subDelegatePath.contains(subDelegateGetter)) {
+            // No sub delegate, or a cycle of sub delegate classes none of
+            // which has the method.
+            return null;
+        }
+        final Class<?> subDelegateClass = subDelegateGetter.getReturnType();
+        final DelegateClassInformation info =
+            getDelegateClassInformation(subDelegateClass);
+        subDelegatePath.add(subDelegateGetter);
+        return findMethodDelegate(
+                method,
+                subDelegateClass,
+                makeStrategies(subDelegateClass, info),
+                info.subDelegateGetter,
+                subDelegatePath);
+    }
+
+    /**
+     * Looks up the delegate method of a proxied method, descending into
+     * the sub delegates if the delegate has none. This is a hook of the
+     * source path: if a subclass overrides it, the method bodies are
+     * compiled from source (see {@link #isCompilingSource()}) and the
+     * sub delegates are read on every invocation.
+     * @param delegatePath  Receives the calls of the sub delegate getters
+     *                      leading to the object having the delegate
+     *                      method, each followed by a dot.
+     * @return The delegate method or null if there is none.
+     */
+    protected Method getMethodDelegate(
+            final Method method,
+            final Class<?> delegateClass,
+            final List<MethodRetrieveStrategy> strategies,
+            final Method subDelegateGetter,
+            final StringBuilder delegatePath) {
+        final List<Method> subDelegatePath = new ArrayList<Method>();
+        final Method delegateMethod = findMethodDelegate(
+                method,
+                delegateClass,
+                strategies,
+                subDelegateGetter,
+                subDelegatePath);
+        for (final Method getter : subDelegatePath) {
+            delegatePath.append(getter.getName()).append("().");
+        }
+        return delegateMethod;
+    }
+
+    /**
+     * Builds the call of the delegate method from the Java source of the
+     * arguments. This is a hook of the source path: if a subclass
+     * overrides it, the method bodies are compiled from source (see
+     * {@link #isCompilingSource()}).
+     * @param name            The name of the proxied method.
+     * @param delegateMethod  The delegate method.
+     * @param parameterTypes  The parameter types of the proxied method.
+     * @return The call, without the object it is invoked on.
+     */
+    protected String getDelegateCall(
+            final String name,
+            final Method delegateMethod,
+            final Class<?>[] parameterTypes) {
+        final Annotation[][] annotations =
+            delegateMethod.getParameterAnnotations();
+        final Class<?>[] delegateParameterTypes =
+            delegateMethod.getParameterTypes();
+        final int len = annotations.length; 
+        final int argsLen = parameterTypes.length;
+        int argIndex = 0;
+        final StringBuilder delegateArgs =
+            new StringBuilder().append(delegateMethod.getName())
+            .append("(");
+        for (int annoIndex = 0; annoIndex < len; annoIndex++) {
+            if (annoIndex > 0) {
+                delegateArgs.append(", ");
+            }
+            final Class<?> type = delegateParameterTypes[annoIndex];
+            final DuckArg duckArg = getDuckArg(annotations[annoIndex]);
+            if (duckArg == null) {
+                if (argIndex < argsLen) {
+                    delegateArgs.append(convert(
+                            "$" + (argIndex + 1),
+                            parameterTypes[argIndex],
+                            type));
+                    argIndex++;
+                } else {
+                    delegateArgs.append(defaultValue(type));
+                }
+            } else {
+                switch (duckArg.value()) {
+                    case NULL:
+                        delegateArgs.append(defaultValue(type));
+                        break;
+                    case NAME:
+                        delegateArgs.append("\"").append(name).append("\"");
+                        break;
+                    case ARGS:
+                        appendPutArgumentsIntoArray(
+                                parameterTypes, delegateArgs);
+                        break;
+                    case ARGN:
+                        delegateArgs.append(duckArg.pos() < argsLen ?
+                                convert(
+                                        "$" + (duckArg.pos() + 1),
+                                        parameterTypes[duckArg.pos()],
+                                        type) :
+                                defaultValue(type));
+                        break;
+                    case GROUP:
+                        // Method names are identifiers, so the group does
+                        // not need escaping.
+                        final String group = MethodPatterns.getGroup(
+                                delegateMethod, name, duckArg.pos());
+                        delegateArgs.append(group == null ?
+                                defaultValue(type) :
+                                "\"" + group + "\"");
+                        break;
+                }
+            }
+        }
+        delegateArgs.append(")");
+        return delegateArgs.toString();
+    }
+
+    private void appendPutArgumentsIntoArray(
+            final Class<?>[] parameterTypes,
+            final StringBuilder delegateArgs) {
+        delegateArgs.append("new Object[] {");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                delegateArgs.append(", ");
+            }
+            delegateArgs.append(convert(
+                    "$" + (i + 1), parameterTypes[i], Object.class));
+        }
+        delegateArgs.append("}");
+    }
+
+    /**
+     * Converts the value of an expression, like a method invocation
+     * context does. Primitives are passed through or widened without
+     * boxing. They are boxed only if the target type is a reference type.
+     * @param expression  The expression to convert.
+     * @param from        The type of the expression.
+     * @param to          The type to convert to.
+     * @return The converting expression.
+     */
+    protected static String convert(
+            final String expression,
+            final Class<?> from,
+            final Class<?> to) {
+        if (from == to || (!from.isPrimitive() && to.isAssignableFrom(from))) {
+            return expression;
+        }
+        if (from.isPrimitive() && to.isPrimitive()) {
+            return "((" + to.getName() + ") " + expression + ")";
+        }
+        if (from.isPrimitive()) {
+            final String boxed = ObjectUtil.class.getName() +
+                ".toObject(" + expression + ")";
+            return to == Object.class ?
+                    boxed :
+                    "((" + getSourceName(to) + ") " + boxed + ")";
+        }
+        if (to == boolean.class) {
+            return "((Boolean) " + expression + ").booleanValue()";
+        }
+        if (to == char.class) {
+            return "((Character) " + expression + ").charValue()";
+        }
+        if (to.isPrimitive()) {
+            return "((Number) " + expression + ")." + to.getName() +
+                "Value()";
+        }
+        return "((" + getSourceName(to) + ") " + expression + ")";
+    }
+
+    /**
+     * @return The name of a type as used in source, e.g., {@code byte[]}.
+     */
+    private static String getSourceName(final Class<?> type) {
+        return type.isArray() ?
+                getSourceName(type.getComponentType()) + "[]" :
+                type.getName();
+    }
+
+    /**
+     * @return The source of the default value of a type.
+     */
+    protected static String defaultValue(final Class<?> type) {
+        if (type == boolean.class) {
+            return "false";
+        } else if (type == byte.class) {
+            return "(byte) 0";
+        } else if (type == char.class) {
+            return "(char) 0";
+        } else if (type == short.class) {
+            return "(short) 0";
+        } else if (type == int.class) {
+            return "0";
+        } else if (type == long.class) {
+            return "0L";
+        } else if (type == float.class) {
+            return "0.0f";
+        } else if (type == double.class) {
+            return "0.0d";
+        }
+        return "null";
+    }
+    
+    public DuckArg getDuckArg(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (DuckArg.class.equals(annotation.annotationType())) {
+                return (DuckArg) annotation;
+            }
+        }
+        return null;
+    }
+    
+    protected CtClass getCtClass(
+            final ClassPool classPool,
+            final Class<?> clazz)
+    throws NotFoundException {
+        if (clazz == null) {
+            return null;
+        }
+        return classPool.get(clazz.getName());
+    }
+    
+    protected CtClass[] getCtClass(
+            final ClassPool classPool,
+            final Class<?>[] classes)
+    throws NotFoundException {
+        CtClass[] ctClasses = new CtClass[classes.length];
+        for (int i=0; i<classes.length; i++) {
+            ctClasses[i] = classPool.get(classes[i].getName());
+        }
+        return ctClasses;
+    }
+
+    protected List<MethodRetrieveStrategy> makeStrategies(
+            final Class<?> delegateClass,
+            final DelegateClassInformation info) {
+        final List<MethodRetrieveStrategy> strategies =
+            new ArrayList<MethodRetrieveStrategy>();
+        strategies.add(MethodUtils.methodByNameAndArgsStrategy(delegateClass));
+        strategies.add(MethodUtils.methodByNameWithoutArgsStrategy(
+                delegateClass));
+        strategies.add(MethodUtils.methodByPatternStrategy(
+                delegateClass, info.patterns));
+        if (info.fallbackMethod != null) {
+            strategies.add(MethodUtils.defaultMethodStrategy(
+                    info.fallbackMethod));
+        }
+        return strategies;
+    }
+
+    protected DelegateClassInformation getDelegateClassInformation(
+            final Class<?> delegateClass) {
+        Method fallbackMethod = null;
+        Method subDelegateGetter = null;
+        for (final Method method : delegateClass.getMethods()) {
+            final DuckMethod duckMethod =
+                method.getAnnotation(DuckMethod.class);
+            if (duckMethod != null) {
+                if (duckMethod.fallback()) {
+                    fallbackMethod = method;
+                }
+                if (duckMethod.subdelegate()) {
+                    subDelegateGetter = method;
+                }
+            }
+        }
+        return new DelegateClassInformation(
+                fallbackMethod,
+                subDelegateGetter,
+                MethodPatterns.forClass(delegateClass));
+    }
+    
+    private static Method getDelegateMethod(
+            final List<MethodRetrieveStrategy> strategies,
+            final String name,
+            final Class<?>[] parameterTypes) {
+        Method delegateMethod = null;
+        for(MethodRetrieveStrategy strategy : strategies) {
+            delegateMethod = strategy.getMethod(name, parameterTypes);
+            if (delegateMethod != null) {
+                break;
+            }
+        }
+        return delegateMethod;
+    }
+
+    /**
+     * Helper method to check whether a method is of interest,
+     * i.e., is it a public non-static method.
+     * @param modifiers The modifiers of the method
+     * @return true iff the method is of interest.
+     */
+    protected static boolean isInterfaceMethod(final int modifiers) {
+        return Modifier.isPublic(modifiers) &&
+        (modifiers & (4094 + Modifier.STATIC)) == 0;
+    }
+    
+}
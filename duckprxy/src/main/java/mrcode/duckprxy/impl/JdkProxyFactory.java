@@ -0,0 +1,131 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+
+import mrcode.duckprxy.ProxyFactory;
+
+/**
+ * Base class of the proxy factories of the {@link Proxy} based
+ * implementations. The proxy class and its constructor are looked up
+ * once, so creating a proxy is the creation of the invocation handler
+ * plus a constructor call, instead of going through
+ * {@link Proxy#newProxyInstance} every time.
+ * 
+ * @param <T>  The class of the main interface.
+ * @author Christian Haselbach
+ */
+public abstract class JdkProxyFactory<T> implements ProxyFactory<T> {
+
+    private static final InvocationHandler NO_HANDLER =
+        new InvocationHandler() {
+            public Object invoke(
+                    final Object proxy,
+                    final Method method,
+                    final Object[] args) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+    private final Class<?> delegateClass;
+
+    /**
+     * The constructor of the proxy class, of type
+     * {@code (InvocationHandler)Object}.
+     */
+    private final MethodHandle constructor;
+
+    /**
+     * @param delegateClass  The class of the delegates.
+     * @param interfaces     All interfaces the proxies implement.
+     */
+    protected JdkProxyFactory(
+            final Class<?> delegateClass,
+            final Class<?>[] interfaces) {
+        this.delegateClass = delegateClass;
+        final Class<?> proxyClass = Proxy.newProxyInstance(
+                delegateClass.getClassLoader(),
+                interfaces,
+                NO_HANDLER).getClass();
+        try {
+            this.constructor = findConstructor(proxyClass).asType(
+                    MethodType.methodType(
+                            Object.class, InvocationHandler.class));
+        } catch (Exception e) {
+            throw new RuntimeException(
+                    "Cannot access constructor of " + proxyClass, e);
+        }
+    }
+
+    /**
+     * @param mainInterface         The main interface of a proxy.
+     * @param interfaces            Its secondary interfaces.
+     * @param additionalInterfaces  Interfaces the engine adds, e.g.,
+     *                              {@link mrcode.duckprxy.Rebindable}.
+     * @return All interfaces of the proxy, i.e., the main interface, the
+     *         secondary interfaces and the additional interfaces.
+     */
+    public static Class<?>[] getAllInterfaces(
+            final Class<?> mainInterface,
+            final Class<?>[] interfaces,
+            final Class<?>... additionalInterfaces) {
+        final Class<?>[] allInterfaces = new Class<?>[
+                1 + interfaces.length + additionalInterfaces.length];
+        allInterfaces[0] = mainInterface;
+        System.arraycopy(interfaces, 0, allInterfaces, 1, interfaces.length);
+        System.arraycopy(
+                additionalInterfaces, 0,
+                allInterfaces, 1 + interfaces.length,
+                additionalInterfaces.length);
+        return allInterfaces;
+    }
+
+    /**
+     * The proxy class of non-public interfaces is not public itself, so
+     * its constructor is made accessible by reflection in that case.
+     */
+    private static MethodHandle findConstructor(final Class<?> proxyClass)
+    throws Exception {
+        if (Modifier.isPublic(proxyClass.getModifiers())) {
+            return MethodHandles.publicLookup().findConstructor(
+                    proxyClass,
+                    MethodType.methodType(void.class, InvocationHandler.class));
+        }
+        final Constructor<?> constructor =
+            proxyClass.getConstructor(InvocationHandler.class);
+        constructor.setAccessible(true);
+        return MethodHandles.lookup().unreflectConstructor(constructor);
+    }
+
+    /**
+     * @param delegate  The delegate of the proxy.
+     * @return The invocation handler for a proxy delegating to the given
+     *         delegate.
+     */
+    protected abstract InvocationHandler createInvocationHandler(
+            Object delegate);
+
+    public T create(final Object delegate) {
+        final InvocationHandler invocationHandler =
+            createInvocationHandler(delegateClass.cast(delegate));
+        try {
+            @SuppressWarnings("unchecked")
+            final T proxy = (T) (Object) constructor.invokeExact(
+                    invocationHandler);
+            return proxy;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+}
@@ -0,0 +1,922 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mrcode.duckprxy.DispatchMetrics;
+import mrcode.duckprxy.DuckArg;
+import mrcode.duckprxy.DuckPrxy;
+import mrcode.duckprxy.MethodMetrics;
+import mrcode.duckprxy.ProxyFactory;
+import mrcode.duckprxy.Rebindable;
+import mrcode.duckprxy.SubDelegatePolicy;
+import mrcode.duckprxy.jfr.MissingMethodEvent;
+import mrcode.duckprxy.jfr.ProxyCreationEvent;
+
+/**
+ * Method handle implementation of DuckPrxy.
+ * For every method of the implemented interfaces, a method handle is
+ * created that already contains everything needed to delegate the call:
+ * the mapping of the arguments defined by {@link DuckArg}, the
+ * conversion of the return value and, if the engine has metrics, the
+ * recording of the invocation. Per delegate class and interface set, a
+ * proxy class is generated that holds these handles in static final
+ * fields (see {@link MethodHandleProxyEmitter}). Hence, the JIT inlines
+ * the handles, and a call through a proxy costs about as much as one
+ * through a proxy of the {@link JavassistDuckPrxy}, without compiling
+ * any source.
+ * <p>
+ * The delegate methods are looked up with a private lookup in their
+ * declaring class. Hence, unlike with the other implementations, the
+ * delegate can be an instance of a non-public or anonymous class.
+ * <p>
+ * Sub delegates follow their {@link SubDelegatePolicy}: a static sub
+ * delegate is held by the proxy, a dynamic one is read on every call.
+ * The method of the sub delegate is called directly if the class of the
+ * sub delegate is the declared return type of the getter, and looked up
+ * for its actual class otherwise. If the sub delegate is null, the
+ * method is missing. Like with {@link JavassistDuckPrxy}, exceptions
+ * thrown by the delegate are not wrapped.
+ * <p>
+ * The proxy classes are defined in a child of the delegate class's class
+ * loader, or, for non-public interfaces, in the package of the
+ * interfaces.
+ *
+ * @author Christian Haselbach
+ */
+public class MethodHandleDuckPrxy implements DuckPrxy {
+
+    /**
+     * The package of the proxy classes of public interfaces.
+     */
+    private static final String PROXY_PACKAGE = "duckprxy.methodhandle.";
+
+    /**
+     * The infix of the names of the proxy classes.
+     */
+    private static final String PROXY_INFIX = "$MethodHandlePrxy";
+
+    /**
+     * The type of the handles looking a method up for the actual class of
+     * a sub delegate: {@code (Object delegate, Object[] args)}.
+     */
+    private static final MethodType HANDLE_TYPE = MethodType.methodType(
+            Object.class, Object.class, Object[].class);
+
+    /**
+     * Handle for a missing delegate method, simulating the behavior of
+     * throwing NoSuchMethodException in an invocation handler. Its first
+     * parameter is the name of the invoked method.
+     */
+    private static final MethodHandle METHOD_MISSING;
+
+    /**
+     * Handle of {@link #invokeSubDelegate}.
+     */
+    private static final MethodHandle INVOKE_SUB_DELEGATE;
+
+    /**
+     * Handle of {@link #isOfClass}.
+     */
+    private static final MethodHandle IS_OF_CLASS;
+
+    /**
+     * Handle of {@link MethodMetrics#invoked()}.
+     */
+    private static final MethodHandle INVOKED;
+
+    /**
+     * Handle of {@link #invokedSince}.
+     */
+    private static final MethodHandle INVOKED_SINCE;
+
+    /**
+     * Handle of {@link System#nanoTime()}.
+     */
+    private static final MethodHandle NANO_TIME;
+
+    /**
+     * Marks the methods forwarded to the sub delegate in
+     * {@link #CLASS_HANDLES}.
+     */
+    private static final MethodHandle SUB_DELEGATE;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            METHOD_MISSING = lookup.findStatic(
+                    MethodHandleDuckPrxy.class,
+                    "methodMissing",
+                    HANDLE_TYPE.insertParameterTypes(0, String.class));
+            INVOKE_SUB_DELEGATE = lookup.findStatic(
+                    MethodHandleDuckPrxy.class,
+                    "invokeSubDelegate",
+                    MethodType.methodType(
+                            Object.class,
+                            DispatchPlan.class,
+                            Method.class,
+                            Object.class,
+                            Object.class,
+                            Object[].class));
+            IS_OF_CLASS = lookup.findStatic(
+                    MethodHandleDuckPrxy.class,
+                    "isOfClass",
+                    MethodType.methodType(
+                            boolean.class, Class.class, Object.class));
+            INVOKED = lookup.findVirtual(
+                    MethodMetrics.class,
+                    "invoked",
+                    MethodType.methodType(void.class));
+            INVOKED_SINCE = lookup.findStatic(
+                    MethodHandleDuckPrxy.class,
+                    "invokedSince",
+                    MethodType.methodType(
+                            void.class, MethodMetrics.class, long.class));
+            NANO_TIME = lookup.findStatic(
+                    System.class,
+                    "nanoTime",
+                    MethodType.methodType(long.class));
+            SUB_DELEGATE = MethodHandles.empty(HANDLE_TYPE);
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The handles of type {@link #HANDLE_TYPE} per delegate class and
+     * invoked method, used to dispatch to a sub delegate by its actual
+     * class.
+     */
+    private static final ClassValue<ConcurrentMap<Method, MethodHandle>>
+        CLASS_HANDLES = new ClassValue<ConcurrentMap<Method, MethodHandle>>() {
+            @Override
+            protected ConcurrentMap<Method, MethodHandle> computeValue(
+                    final Class<?> type) {
+                return new ConcurrentHashMap<Method, MethodHandle>();
+            }
+        };
+
+    /**
+     * The class loaders of the proxy classes of public interfaces, per
+     * delegate class.
+     */
+    private static final ClassValue<ProxyClassLoader> PROXY_CLASS_LOADERS =
+        new ClassValue<ProxyClassLoader>() {
+            @Override
+            protected ProxyClassLoader computeValue(final Class<?> type) {
+                return new ProxyClassLoader(type.getClassLoader());
+            }
+        };
+
+    /**
+     * The proxy factories of the engines without metrics. Those of an
+     * engine with metrics are its own, since the handles of its proxy
+     * classes record to its metrics.
+     */
+    private static final ClassValue<
+            ConcurrentMap<List<Class<?>>, ProxyFactory<Object>>>
+        SHARED_FACTORIES = createFactories();
+
+    /**
+     * The handles of the proxy classes that are being defined, until
+     * their static initializers take them.
+     */
+    private static final ConcurrentMap<String, MethodHandle[]>
+        PENDING_HANDLES = new ConcurrentHashMap<String, MethodHandle[]>();
+
+    private static final AtomicInteger PROXY_CLASS_COUNT = new AtomicInteger();
+
+    /**
+     * The metrics of the proxied methods or null if there are none.
+     */
+    private final MethodMetricsRegistry metricsRegistry;
+
+    /**
+     * The proxy factories per delegate class and interface set.
+     */
+    private final ClassValue<
+            ConcurrentMap<List<Class<?>>, ProxyFactory<Object>>> factories;
+
+    public MethodHandleDuckPrxy() {
+        this(null);
+    }
+
+    /**
+     * Constructor to record the invocations of the proxied methods.
+     * @param metrics  The hook to report the invocations to, or null.
+     */
+    public MethodHandleDuckPrxy(final DispatchMetrics metrics) {
+        this.metricsRegistry = MethodMetricsRegistry.forMetrics(metrics);
+        this.factories = metricsRegistry == null ?
+                SHARED_FACTORIES :
+                createFactories();
+    }
+
+    public <T> T makeProxy(
+            final Class<T> mainInterface,
+            final Object delegate,
+            final Class<?>... interfaces) {
+        return createProxy(
+                mainInterface,
+                delegate,
+                JdkProxyFactory.getAllInterfaces(mainInterface, interfaces));
+    }
+
+    public <T> T makeRebindableProxy(
+            final Class<T> mainInterface,
+            final Object delegate,
+            final Class<?>... interfaces) {
+        return createProxy(
+                mainInterface,
+                delegate,
+                RebindableInvocationHandler.getAllInterfaces(
+                        mainInterface, interfaces));
+    }
+
+    private <T> T createProxy(
+            final Class<T> mainInterface,
+            final Object delegate,
+            final Class<?>[] allInterfaces) {
+        final ProxyCreationEvent event = new ProxyCreationEvent();
+        event.begin();
+        @SuppressWarnings("unchecked")
+        final T proxy = (T) getFactory(delegate.getClass(), allInterfaces)
+            .create(delegate);
+        event.commit(delegate, mainInterface, proxy);
+        return proxy;
+    }
+
+    public <T> ProxyFactory<T> getProxyFactory(
+            final Class<T> mainInterface,
+            final Class<?> delegateClass,
+            final Class<?>... interfaces) {
+        @SuppressWarnings("unchecked")
+        final ProxyFactory<T> factory = (ProxyFactory<T>) getFactory(
+                delegateClass,
+                JdkProxyFactory.getAllInterfaces(mainInterface, interfaces));
+        return factory;
+    }
+
+    /**
+     * Takes the handles of a proxy class. It is called once by the static
+     * initializer of the proxy class.
+     * @param className  The name of the proxy class.
+     * @return The handles of the proxy class, see
+     *         {@link MethodHandleProxyEmitter#createProxyClass}.
+     */
+    public static MethodHandle[] takeHandles(final String className) {
+        return PENDING_HANDLES.remove(className);
+    }
+
+    /**
+     * @return The (cached) factory of the proxies of the delegate class
+     *         implementing the interfaces.
+     */
+    private ProxyFactory<Object> getFactory(
+            final Class<?> delegateClass,
+            final Class<?>[] interfaces) {
+        final ConcurrentMap<List<Class<?>>, ProxyFactory<Object>> cache =
+            factories.get(delegateClass);
+        final ProxyFactory<Object> cached =
+            cache.get(Arrays.asList(interfaces));
+        if (cached != null) {
+            return cached;
+        }
+        final ProxyFactory<Object> factory =
+            createFactory(delegateClass, interfaces);
+        final ProxyFactory<Object> raced = cache.putIfAbsent(
+                Arrays.asList(interfaces.clone()), factory);
+        return raced == null ? factory : raced;
+    }
+
+    /**
+     * Generates a proxy class and creates the factory of its instances.
+     */
+    private ProxyFactory<Object> createFactory(
+            final Class<?> delegateClass,
+            final Class<?>[] interfaces) {
+        final DispatchPlan plan = DispatchPlan.forClass(delegateClass);
+        final boolean staticSubDelegate =
+            plan.getSubDelegatePolicy() == SubDelegatePolicy.STATIC;
+        final List<Method> methods = getProxiedMethods(interfaces);
+        final MethodHandle[] handles = new MethodHandle[
+                staticSubDelegate ? methods.size() + 1 : methods.size()];
+        try {
+            for (int i = 0; i < methods.size(); i++) {
+                handles[i] = withMetrics(
+                        makeHandle(delegateClass, methods.get(i)),
+                        delegateClass,
+                        methods.get(i));
+            }
+            if (staticSubDelegate) {
+                handles[methods.size()] =
+                    getSubDelegateHandle(plan.getSubDelegateGetter());
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+
+        final Class<?> nonPublicInterface = getNonPublicInterface(interfaces);
+        final String className = (nonPublicInterface == null ?
+                PROXY_PACKAGE + delegateClass.getName() :
+                nonPublicInterface.getName()) +
+            PROXY_INFIX + PROXY_CLASS_COUNT.incrementAndGet();
+        final byte[] bytecode = MethodHandleProxyEmitter.createProxyClass(
+                className,
+                nonPublicInterface == null,
+                interfaces,
+                methods,
+                staticSubDelegate);
+        final MethodHandle constructor;
+        PENDING_HANDLES.put(className, handles);
+        try {
+            final MethodHandles.Lookup lookup;
+            final Class<?> proxyClass;
+            if (nonPublicInterface == null) {
+                lookup = MethodHandles.publicLookup();
+                proxyClass = PROXY_CLASS_LOADERS.get(delegateClass).define(
+                        className, bytecode);
+            } else {
+                lookup = MethodHandles.privateLookupIn(
+                        nonPublicInterface, MethodHandles.lookup());
+                proxyClass = lookup.defineClass(bytecode);
+            }
+            Class.forName(className, true, proxyClass.getClassLoader());
+            constructor = lookup.findConstructor(
+                    proxyClass,
+                    MethodType.methodType(void.class, Object.class))
+                .asType(MethodType.methodType(Object.class, Object.class));
+        } catch (Exception e) {
+            throw new RuntimeException(
+                    "Cannot define proxy class " + className, e);
+        } finally {
+            PENDING_HANDLES.remove(className);
+        }
+
+        return new ProxyFactory<Object>() {
+            public Object create(final Object delegate) {
+                try {
+                    return (Object) constructor.invokeExact(
+                            (Object) delegateClass.cast(delegate));
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new RuntimeException(t);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the methods a proxy implements: those of the interfaces and
+     * the methods of {@link Object} that are forwarded by proxies. The
+     * method of {@link Rebindable} is implemented by the proxy class
+     * itself.
+     * @param interfaces  The interfaces of the proxy.
+     * @return The methods, one per signature.
+     */
+    private static List<Method> getProxiedMethods(final Class<?>[] interfaces) {
+        final Map<String, Method> methods = new LinkedHashMap<String, Method>();
+        try {
+            for (final Method method : new Method[] {
+                    Object.class.getMethod("hashCode"),
+                    Object.class.getMethod("equals", Object.class),
+                    Object.class.getMethod("toString")}) {
+                methods.put(signature(method), method);
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        for (final Class<?> iface : interfaces) {
+            if (iface == Rebindable.class) {
+                continue;
+            }
+            for (final Method method : iface.getMethods()) {
+                final String signature = signature(method);
+                if (!Modifier.isStatic(method.getModifiers()) &&
+                        !methods.containsKey(signature)) {
+                    methods.put(signature, method);
+                }
+            }
+        }
+        return new ArrayList<Method>(methods.values());
+    }
+
+    private static String signature(final Method method) {
+        return method.getName() + BytecodeEmitter.descriptor(
+                method.getReturnType(), method.getParameterTypes());
+    }
+
+    /**
+     * @return One of the non-public interfaces or null if all interfaces
+     *         are public.
+     * @throws IllegalArgumentException  If there are non-public interfaces
+     *                                   in different packages.
+     */
+    private static Class<?> getNonPublicInterface(
+            final Class<?>[] interfaces) {
+        Class<?> nonPublicInterface = null;
+        for (final Class<?> iface : interfaces) {
+            if (Modifier.isPublic(iface.getModifiers())) {
+                continue;
+            }
+            if (nonPublicInterface != null &&
+                    (nonPublicInterface.getClassLoader() !=
+                        iface.getClassLoader() ||
+                    !nonPublicInterface.getPackageName().equals(
+                            iface.getPackageName()))) {
+                throw new IllegalArgumentException(
+                        "Non-public interfaces from different packages");
+            }
+            nonPublicInterface = iface;
+        }
+        return nonPublicInterface;
+    }
+
+    /**
+     * Creates the handle delegating calls of a method.
+     * @param delegateClass  The class of the delegate.
+     * @param method         The method to delegate.
+     * @return A handle of type
+     *         {@code (Object delegate, Object subDelegate, P_1, ..., P_n)R}
+     *         of the types of the method. The sub delegate is the one held
+     *         by the proxy if the policy is
+     *         {@link SubDelegatePolicy#STATIC} and ignored otherwise.
+     * @throws IllegalAccessException  If a delegate method is not
+     *                                 accessible.
+     */
+    protected static MethodHandle makeHandle(
+            final Class<?> delegateClass,
+            final Method method)
+    throws IllegalAccessException {
+        final DispatchPlan plan = DispatchPlan.forClass(delegateClass);
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        final Method delegateMethod = plan.getDelegateMethod(
+                method.getName(),
+                parameterTypes);
+        if (delegateMethod == null) {
+            final MethodHandle handle = makeSubDelegateCall(plan, method);
+            if (plan.getSubDelegatePolicy() == SubDelegatePolicy.STATIC) {
+                return handle;
+            }
+            // Reads the sub delegate from the delegate on every call:
+            // (d, s, P...) -> (d, getter(s), P...) -> (d, ignored, P...)
+            final int[] reorder = new int[parameterTypes.length + 2];
+            for (int i = 2; i < reorder.length; i++) {
+                reorder[i] = i;
+            }
+            return MethodHandles.permuteArguments(
+                    MethodHandles.filterArguments(
+                            handle,
+                            1,
+                            getSubDelegateHandle(plan.getSubDelegateGetter())),
+                    handle.type(),
+                    reorder);
+        }
+        if (MethodUtils.isDefaultMethod(delegateMethod)) {
+            return makeMethodMissing(method);
+        }
+        return MethodHandles.dropArguments(
+                makeDelegateCall(method, delegateMethod),
+                1,
+                Object.class);
+    }
+
+    /**
+     * Creates the handle of a method forwarded to the sub delegate. If the
+     * class of the sub delegate is the declared return type of the getter,
+     * its delegate method is called directly. Otherwise, the
+     * method is looked up for the actual class of the sub delegate.
+     * @return A handle of type
+     *         {@code (Object delegate, Object subDelegate, P_1, ..., P_n)R}.
+     */
+    private static MethodHandle makeSubDelegateCall(
+            final DispatchPlan plan,
+            final Method method)
+    throws IllegalAccessException {
+        final MethodType type = handleType(method);
+        final MethodHandle lookedUp = MethodHandles.insertArguments(
+                INVOKE_SUB_DELEGATE, 0, plan, method)
+            .asCollector(Object[].class, method.getParameterCount())
+            .asType(type);
+        final Class<?> subDelegateClass =
+            plan.getSubDelegateGetter().getReturnType();
+        if (subDelegateClass == plan.getDelegateClass() ||
+                subDelegateClass.isInterface() ||
+                Modifier.isAbstract(subDelegateClass.getModifiers())) {
+            return lookedUp;
+        }
+        final Method delegateMethod = DispatchPlan.forClass(subDelegateClass)
+            .getDelegateMethod(method.getName(), method.getParameterTypes());
+        if (delegateMethod == null ||
+                MethodUtils.isDefaultMethod(delegateMethod)) {
+            return lookedUp;
+        }
+        final MethodHandle isDeclaredClass = MethodHandles.dropArguments(
+                IS_OF_CLASS.bindTo(subDelegateClass),
+                0,
+                Object.class);
+        return MethodHandles.guardWithTest(
+                MethodHandles.dropArguments(
+                        isDeclaredClass,
+                        2,
+                        method.getParameterTypes()),
+                MethodHandles.dropArguments(
+                        makeDelegateCall(method, delegateMethod),
+                        0,
+                        Object.class),
+                lookedUp);
+    }
+
+    /**
+     * @return A handle of type
+     *         {@code (Object delegate, Object subDelegate, P_1, ..., P_n)R}
+     *         ending like a method without delegate method.
+     */
+    private static MethodHandle makeMethodMissing(final Method method) {
+        return MethodHandles.dropArguments(
+                MethodHandles.insertArguments(
+                        METHOD_MISSING, 0, method.getName())
+                    .asCollector(Object[].class, method.getParameterCount()),
+                1,
+                Object.class)
+            .asType(handleType(method));
+    }
+
+    /**
+     * @return The type {@code (Object, Object, P_1, ..., P_n)R} of the
+     *         handle of the method.
+     */
+    private static MethodType handleType(final Method method) {
+        return MethodType.methodType(
+                method.getReturnType(),
+                method.getParameterTypes())
+            .insertParameterTypes(0, Object.class, Object.class);
+    }
+
+    /**
+     * @return A handle of type {@code (Object)Object} calling the sub
+     *         delegate getter.
+     */
+    private static MethodHandle getSubDelegateHandle(final Method getter)
+    throws IllegalAccessException {
+        return unreflect(getter).asType(
+                MethodType.methodType(Object.class, Object.class));
+    }
+
+    /**
+     * Adapts the delegate method to the invoked method, filling the
+     * parameters as defined by their {@link DuckArg} annotations.
+     * @param method          The invoked method.
+     * @param delegateMethod  The method to delegate to.
+     * @return A handle of type {@code (Object delegate, P_1, ..., P_n)R} of
+     *         the types of the invoked method. A primitive result is
+     *         widened to the return type, and a void result becomes its
+     *         default value.
+     * @throws IllegalAccessException  If the delegate method is not
+     *                                 accessible.
+     */
+    protected static MethodHandle makeDelegateCall(
+            final Method method,
+            final Method delegateMethod)
+    throws IllegalAccessException {
+        final String name = method.getName();
+        final Class<?>[] argTypes = method.getParameterTypes();
+        final int argsLen = argTypes.length;
+        MethodHandle handle = unreflect(delegateMethod);
+        if (Modifier.isStatic(delegateMethod.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        } else {
+            handle = handle.asType(
+                    handle.type().changeParameterType(0, Object.class));
+        }
+        final Class<?>[] parameterTypes = delegateMethod.getParameterTypes();
+        final Annotation[][] annotations =
+            delegateMethod.getParameterAnnotations();
+        final int len = parameterTypes.length;
+        int argIndex = 0;
+        for (int annoIndex = 0; annoIndex < len; annoIndex++) {
+            final Class<?> type = parameterTypes[annoIndex];
+            final DuckArg duckArg =
+                MethodUtils.getDuckArg(annotations[annoIndex]);
+            final MethodHandle filter;
+            if (duckArg == null) {
+                if (argIndex < argsLen) {
+                    filter = argumentFilter(argTypes, argIndex, type);
+                    argIndex++;
+                } else {
+                    filter = constantFilter(argTypes, type, null);
+                }
+            } else {
+                switch (duckArg.value()) {
+                    case NAME:
+                        filter = constantFilter(argTypes, type, name);
+                        break;
+                    case ARGS:
+                        filter = MethodHandles.identity(Object[].class)
+                            .asCollector(Object[].class, argsLen)
+                            .asType(MethodType.methodType(type, argTypes));
+                        break;
+                    case ARGN:
+                        filter = duckArg.pos() < argsLen ?
+                                argumentFilter(argTypes, duckArg.pos(), type) :
+                                constantFilter(argTypes, type, null);
+                        break;
+                    case GROUP:
+                        filter = constantFilter(
+                                argTypes,
+                                type,
+                                MethodPatterns.getGroup(
+                                        delegateMethod, name, duckArg.pos()));
+                        break;
+                    case NULL:
+                    default:
+                        filter = constantFilter(argTypes, type, null);
+                        break;
+                }
+            }
+            // Each filter takes all arguments of the invoked method.
+            handle = MethodHandles.collectArguments(
+                    handle, 1 + annoIndex * argsLen, filter);
+        }
+        // (Object, P_1, ..., P_n, ..., P_1, ..., P_n) -> (Object, P_1, ..., P_n)
+        final int[] reorder = new int[1 + len * argsLen];
+        for (int i = 1; i < reorder.length; i++) {
+            reorder[i] = 1 + (i - 1) % argsLen;
+        }
+        handle = MethodHandles.permuteArguments(
+                handle,
+                MethodType.methodType(handle.type().returnType(), argTypes)
+                    .insertParameterTypes(0, Object.class),
+                reorder);
+        final Class<?> returnType = method.getReturnType();
+        if (returnType == void.class) {
+            return handle.asType(handle.type().changeReturnType(void.class));
+        }
+        if (handle.type().returnType() == void.class) {
+            return MethodHandles.filterReturnValue(
+                    handle, MethodHandles.zero(returnType));
+        }
+        return convertReturn(handle, returnType);
+    }
+
+    /**
+     * @return A handle of type {@code (P_1, ..., P_n)type} returning the
+     *         argument at the given index.
+     */
+    private static MethodHandle argumentFilter(
+            final Class<?>[] argTypes,
+            final int index,
+            final Class<?> type) {
+        final MethodHandle identity = convertReturn(
+                MethodHandles.identity(argTypes[index]), type);
+        return MethodHandles.dropArguments(
+                MethodHandles.dropArguments(
+                        identity,
+                        0,
+                        Arrays.asList(argTypes).subList(0, index)),
+                index + 1,
+                Arrays.asList(argTypes).subList(index + 1, argTypes.length));
+    }
+
+    /**
+     * @return A handle of type {@code (P_1, ..., P_n)type} ignoring the
+     *         arguments and returning the given value or, if the value is
+     *         null, the type's default value.
+     */
+    private static MethodHandle constantFilter(
+            final Class<?>[] argTypes,
+            final Class<?> type,
+            final Object value) {
+        return MethodHandles.dropArguments(
+                value == null ?
+                        MethodHandles.zero(type) :
+                        MethodHandles.constant(type, value),
+                0,
+                argTypes);
+    }
+
+    /**
+     * Converts the result of a handle like {@link Method#invoke} converts
+     * arguments: Primitive values are widened, and all other conversions
+     * go through {@link Object}, i.e., boxing, casting and unboxing.
+     */
+    private static MethodHandle convertReturn(
+            final MethodHandle handle,
+            final Class<?> returnType) {
+        final Class<?> type = handle.type().returnType();
+        if (type == returnType) {
+            return handle;
+        }
+        if (type.isPrimitive() == returnType.isPrimitive()) {
+            try {
+                return handle.asType(
+                        handle.type().changeReturnType(returnType));
+            } catch (WrongMethodTypeException e) {
+                // a narrowing primitive conversion, failing when invoked
+            }
+        }
+        return handle
+            .asType(handle.type().changeReturnType(Object.class))
+            .asType(handle.type().changeReturnType(returnType));
+    }
+
+    /**
+     * Creates a handle for a method, using a private lookup in the
+     * declaring class where possible.
+     */
+    private static MethodHandle unreflect(final Method method)
+    throws IllegalAccessException {
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(
+                    method.getDeclaringClass(),
+                    MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            lookup = MethodHandles.publicLookup();
+        }
+        return lookup.unreflect(method);
+    }
+
+    /**
+     * @return The handle, wrapped to record the invocations if the
+     *         engine has metrics and the method is one of the interfaces.
+     */
+    private MethodHandle withMetrics(
+            final MethodHandle handle,
+            final Class<?> delegateClass,
+            final Method method) {
+        if (metricsRegistry == null ||
+                method.getDeclaringClass() == Object.class) {
+            return handle;
+        }
+        final MethodMetrics methodMetrics =
+            metricsRegistry.getMethodMetrics(delegateClass, method);
+        if (!methodMetrics.isTimed()) {
+            return MethodHandles.foldArguments(
+                    handle, INVOKED.bindTo(methodMetrics));
+        }
+        // (long start, ...) with a cleanup of type
+        // (Throwable, [R result,] long start)R
+        final Class<?> returnType = handle.type().returnType();
+        final MethodHandle invokedSince =
+            INVOKED_SINCE.bindTo(methodMetrics);
+        final MethodHandle cleanup;
+        if (returnType == void.class) {
+            cleanup = MethodHandles.dropArguments(
+                    invokedSince, 0, Throwable.class);
+        } else {
+            cleanup = MethodHandles.foldArguments(
+                    MethodHandles.dropArguments(
+                            MethodHandles.dropArguments(
+                                    MethodHandles.identity(returnType),
+                                    0,
+                                    Throwable.class),
+                            2,
+                            long.class),
+                    MethodHandles.dropArguments(
+                            invokedSince,
+                            0,
+                            Throwable.class,
+                            returnType));
+        }
+        return MethodHandles.foldArguments(
+                MethodHandles.tryFinally(
+                        MethodHandles.dropArguments(handle, 0, long.class),
+                        cleanup),
+                NANO_TIME);
+    }
+
+    /**
+     * Invokes a method that a delegate forwards to its sub delegate,
+     * dispatching it by the actual class of the sub delegate, like
+     * {@link DispatchPlan#invokeSubDelegate}.
+     * @param delegatePlan  The plan of the delegate.
+     * @param method        The invoked method.
+     * @param delegate      The delegate.
+     * @param subDelegate   The sub delegate of the delegate or null.
+     * @param args          The arguments of the invocation.
+     * @return The result of the invocation.
+     * @throws Throwable  As thrown by the delegate method.
+     */
+    @SuppressWarnings("unused")
+    private static Object invokeSubDelegate(
+            final DispatchPlan delegatePlan,
+            final Method method,
+            final Object delegate,
+            final Object subDelegate,
+            final Object[] args)
+    throws Throwable {
+        List<DispatchPlan> passed = null;
+        Object parent = delegate;
+        Object target = subDelegate;
+        while (target != null) {
+            final DispatchPlan plan = DispatchPlan.forClass(target.getClass());
+            if (plan == delegatePlan ||
+                    passed != null && passed.contains(plan)) {
+                break;
+            }
+            final MethodHandle handle = getClassHandle(plan, method);
+            if (handle != SUB_DELEGATE) {
+                return (Object) handle.invokeExact(target, args);
+            }
+            if (passed == null) {
+                passed = new ArrayList<DispatchPlan>();
+            }
+            passed.add(plan);
+            parent = target;
+            target = plan.getSubDelegate(target);
+        }
+        return methodMissing(method.getName(), parent, args);
+    }
+
+    /**
+     * @return The (cached) handle of type {@link #HANDLE_TYPE} calling the
+     *         method on a delegate of the plan's class, or
+     *         {@link #SUB_DELEGATE} if it is forwarded to the sub delegate.
+     */
+    private static MethodHandle getClassHandle(
+            final DispatchPlan plan,
+            final Method method) {
+        final ConcurrentMap<Method, MethodHandle> handles =
+            CLASS_HANDLES.get(plan.getDelegateClass());
+        final MethodHandle cached = handles.get(method);
+        if (cached != null) {
+            return cached;
+        }
+        final Method delegateMethod = plan.getDelegateMethod(
+                method.getName(), method.getParameterTypes());
+        final MethodHandle handle;
+        if (delegateMethod == null) {
+            handle = SUB_DELEGATE;
+        } else if (MethodUtils.isDefaultMethod(delegateMethod)) {
+            handle = MethodHandles.insertArguments(
+                    METHOD_MISSING, 0, method.getName());
+        } else {
+            try {
+                handle = makeDelegateCall(method, delegateMethod)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(HANDLE_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        final MethodHandle raced = handles.putIfAbsent(method, handle);
+        return raced == null ? handle : raced;
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean isOfClass(
+            final Class<?> type,
+            final Object object) {
+        return object != null && object.getClass() == type;
+    }
+
+    @SuppressWarnings("unused")
+    private static void invokedSince(
+            final MethodMetrics methodMetrics,
+            final long start) {
+        methodMetrics.invoked(System.nanoTime() - start);
+    }
+
+    private static Object methodMissing(
+            final String name,
+            final Object delegate,
+            final Object[] args) {
+        MissingMethodEvent.emit(name, delegate);
+        throw new UndeclaredThrowableException(
+                new InvocationTargetException(new NoSuchMethodException()));
+    }
+
+    private static ClassValue<
+            ConcurrentMap<List<Class<?>>, ProxyFactory<Object>>>
+    createFactories() {
+        return new ClassValue<
+                ConcurrentMap<List<Class<?>>, ProxyFactory<Object>>>() {
+            @Override
+            protected ConcurrentMap<List<Class<?>>, ProxyFactory<Object>>
+            computeValue(final Class<?> type) {
+                return new ConcurrentHashMap<
+                    List<Class<?>>, ProxyFactory<Object>>();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,318 @@
+package mrcode.duckprxy.impl;
+
+import static mrcode.duckprxy.impl.BytecodeEmitter.addLoad;
+import static mrcode.duckprxy.impl.BytecodeEmitter.addReturn;
+import static mrcode.duckprxy.impl.BytecodeEmitter.descriptor;
+import static mrcode.duckprxy.impl.BytecodeEmitter.size;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.FieldInfo;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+import mrcode.duckprxy.Rebindable;
+
+/**
+ * Emits the proxy classes of the {@link MethodHandleDuckPrxy}. A proxy
+ * class holds the handle of every proxied method in a static final
+ * field, so the JIT treats the handle as a constant and inlines it into
+ * the proxy method, and the proxy method into its caller. A method is:
+ * invoke the handle with the delegate, the sub delegate held by the
+ * proxy (or null) and the arguments, and return its result.
+ * <p>
+ * The handles are taken from {@link MethodHandleDuckPrxy#takeHandles} in
+ * the static initializer. The methods do not branch, so the class files
+ * do not need stack maps.
+ *
+ * @author Christian Haselbach
+ */
+final class MethodHandleProxyEmitter {
+
+    static final String DELEGATE_FIELD = "delegate";
+
+    static final String SUB_DELEGATE_FIELD = "subDelegate";
+
+    static final String HANDLE_FIELD_PREFIX = "handle";
+
+    static final String SUB_DELEGATE_GETTER_FIELD = "subDelegateGetter";
+
+    private static final String OBJECT = Object.class.getName();
+
+    private static final String METHOD_HANDLE = MethodHandle.class.getName();
+
+    private static final String OBJECT_DESCRIPTOR = descriptor(Object.class);
+
+    private static final String METHOD_HANDLE_DESCRIPTOR =
+        descriptor(MethodHandle.class);
+
+    private MethodHandleProxyEmitter() {
+        // static methods only
+    }
+
+    /**
+     * Creates a proxy class. Its constructor takes the delegate.
+     * @param className          The name of the proxy class.
+     * @param isPublic           Whether the proxy class is public.
+     * @param interfaces         The interfaces of the proxy class.
+     * @param methods            The proxied methods. The handle of the
+     *                           i-th method is the i-th handle, of type
+     *                           {@code (Object delegate, Object subDelegate,
+     *                           P_1, ..., P_n)R}.
+     * @param staticSubDelegate  Whether the proxies hold the sub delegate
+     *                           read when they are created (or rebound).
+     *                           If so, the handle after those of the
+     *                           methods is the sub delegate getter, of type
+     *                           {@code (Object)Object}.
+     * @return The class file of the proxy class.
+     */
+    static byte[] createProxyClass(
+            final String className,
+            final boolean isPublic,
+            final Class<?>[] interfaces,
+            final List<Method> methods,
+            final boolean staticSubDelegate) {
+        final ClassFile classFile = new ClassFile(false, className, null);
+        classFile.setAccessFlags(isPublic ?
+                AccessFlag.PUBLIC | AccessFlag.FINAL | AccessFlag.SUPER :
+                AccessFlag.FINAL | AccessFlag.SUPER);
+        final String[] interfaceNames = new String[interfaces.length];
+        boolean rebindable = false;
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaceNames[i] = interfaces[i].getName();
+            rebindable |= interfaces[i] == Rebindable.class;
+        }
+        classFile.setInterfaces(interfaceNames);
+
+        addField(
+                classFile,
+                DELEGATE_FIELD,
+                rebindable ? AccessFlag.PRIVATE :
+                    AccessFlag.PRIVATE | AccessFlag.FINAL);
+        if (staticSubDelegate) {
+            addField(
+                    classFile,
+                    SUB_DELEGATE_FIELD,
+                    rebindable ? AccessFlag.PRIVATE :
+                        AccessFlag.PRIVATE | AccessFlag.FINAL);
+        }
+        final int handles = staticSubDelegate ?
+                methods.size() + 1 :
+                methods.size();
+        for (int i = 0; i < handles; i++) {
+            final FieldInfo field = new FieldInfo(
+                    classFile.getConstPool(),
+                    i < methods.size() ?
+                            HANDLE_FIELD_PREFIX + i :
+                            SUB_DELEGATE_GETTER_FIELD,
+                    METHOD_HANDLE_DESCRIPTOR);
+            field.setAccessFlags(
+                    AccessFlag.PRIVATE | AccessFlag.STATIC | AccessFlag.FINAL);
+            classFile.addField2(field);
+        }
+
+        classFile.addMethod2(createStaticInitializer(
+                classFile, methods.size(), staticSubDelegate));
+        classFile.addMethod2(createConstructor(classFile, staticSubDelegate));
+        for (int i = 0; i < methods.size(); i++) {
+            classFile.addMethod2(createMethod(
+                    classFile, methods.get(i), i, staticSubDelegate));
+        }
+        if (rebindable) {
+            classFile.addMethod2(createRebind(classFile, staticSubDelegate));
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            final DataOutputStream out = new DataOutputStream(bytes);
+            classFile.write(out);
+            out.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void addField(
+            final ClassFile classFile,
+            final String name,
+            final int accessFlags) {
+        final FieldInfo field = new FieldInfo(
+                classFile.getConstPool(), name, OBJECT_DESCRIPTOR);
+        field.setAccessFlags(accessFlags);
+        classFile.addField2(field);
+    }
+
+    /**
+     * Creates the static initializer, storing the handles of the class in
+     * its fields.
+     */
+    private static MethodInfo createStaticInitializer(
+            final ClassFile classFile,
+            final int methods,
+            final boolean staticSubDelegate) {
+        final String className = classFile.getName();
+        final Bytecode code = new Bytecode(classFile.getConstPool(), 0, 0);
+        code.addLdc(className);
+        code.addInvokestatic(
+                MethodHandleDuckPrxy.class.getName(),
+                "takeHandles",
+                descriptor(MethodHandle[].class, new Class<?>[] {String.class}));
+        final int handles = staticSubDelegate ? methods + 1 : methods;
+        for (int i = 0; i < handles; i++) {
+            code.addOpcode(Opcode.DUP);
+            code.addIconst(i);
+            code.addOpcode(Opcode.AALOAD);
+            code.addPutstatic(
+                    className,
+                    i < methods ?
+                            HANDLE_FIELD_PREFIX + i :
+                            SUB_DELEGATE_GETTER_FIELD,
+                    METHOD_HANDLE_DESCRIPTOR);
+        }
+        code.addOpcode(Opcode.POP);
+        code.addOpcode(Opcode.RETURN);
+        final MethodInfo initializer = new MethodInfo(
+                classFile.getConstPool(), MethodInfo.nameClinit, "()V");
+        initializer.setAccessFlags(AccessFlag.STATIC);
+        initializer.setCodeAttribute(code.toCodeAttribute());
+        return initializer;
+    }
+
+    /**
+     * Creates the constructor, storing the delegate and, if it is held,
+     * the sub delegate.
+     */
+    private static MethodInfo createConstructor(
+            final ClassFile classFile,
+            final boolean staticSubDelegate) {
+        final Bytecode code = new Bytecode(classFile.getConstPool(), 0, 2);
+        code.addAload(0);
+        code.addInvokespecial(OBJECT, MethodInfo.nameInit, "()V");
+        code.addAload(0);
+        code.addAload(1);
+        code.addPutfield(
+                classFile.getName(), DELEGATE_FIELD, OBJECT_DESCRIPTOR);
+        if (staticSubDelegate) {
+            addReadSubDelegate(code, classFile.getName());
+        }
+        code.addOpcode(Opcode.RETURN);
+        final MethodInfo constructor = new MethodInfo(
+                classFile.getConstPool(),
+                MethodInfo.nameInit,
+                "(" + OBJECT_DESCRIPTOR + ")V");
+        constructor.setAccessFlags(AccessFlag.PUBLIC);
+        constructor.setCodeAttribute(code.toCodeAttribute());
+        return constructor;
+    }
+
+    /**
+     * Creates {@link Rebindable#rebind(Object)}, which replaces the
+     * delegate by another one of the same class and reads the held sub
+     * delegate again.
+     */
+    private static MethodInfo createRebind(
+            final ClassFile classFile,
+            final boolean staticSubDelegate) {
+        final String className = classFile.getName();
+        final Bytecode code = new Bytecode(classFile.getConstPool(), 0, 2);
+        code.addAload(0);
+        code.addGetfield(className, DELEGATE_FIELD, OBJECT_DESCRIPTOR);
+        code.addAload(1);
+        code.addInvokestatic(
+                RebindableInvocationHandler.class.getName(),
+                "checkRebind",
+                "(" + OBJECT_DESCRIPTOR + OBJECT_DESCRIPTOR + ")V");
+        code.addAload(0);
+        code.addAload(1);
+        code.addPutfield(className, DELEGATE_FIELD, OBJECT_DESCRIPTOR);
+        if (staticSubDelegate) {
+            addReadSubDelegate(code, className);
+        }
+        code.addOpcode(Opcode.RETURN);
+        final MethodInfo rebind = new MethodInfo(
+                classFile.getConstPool(),
+                "rebind",
+                "(" + OBJECT_DESCRIPTOR + ")V");
+        rebind.setAccessFlags(AccessFlag.PUBLIC);
+        rebind.setCodeAttribute(code.toCodeAttribute());
+        return rebind;
+    }
+
+    /**
+     * Emits {@code this.subDelegate = subDelegateGetter.invokeExact(d)},
+     * with the delegate d in local variable 1.
+     */
+    private static void addReadSubDelegate(
+            final Bytecode code,
+            final String className) {
+        code.addAload(0);
+        code.addGetstatic(
+                className, SUB_DELEGATE_GETTER_FIELD, METHOD_HANDLE_DESCRIPTOR);
+        code.addAload(1);
+        code.addInvokevirtual(
+                METHOD_HANDLE,
+                "invokeExact",
+                "(" + OBJECT_DESCRIPTOR + ")" + OBJECT_DESCRIPTOR);
+        code.addPutfield(className, SUB_DELEGATE_FIELD, OBJECT_DESCRIPTOR);
+    }
+
+    /**
+     * Creates a proxied method, invoking its handle.
+     */
+    private static MethodInfo createMethod(
+            final ClassFile classFile,
+            final Method method,
+            final int index,
+            final boolean staticSubDelegate) {
+        final String className = classFile.getName();
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        final Class<?> returnType = method.getReturnType();
+        int locals = 1;
+        for (final Class<?> type : parameterTypes) {
+            locals += size(type);
+        }
+        final Bytecode code =
+            new Bytecode(classFile.getConstPool(), 0, locals);
+        code.addGetstatic(
+                className, HANDLE_FIELD_PREFIX + index, METHOD_HANDLE_DESCRIPTOR);
+        code.addAload(0);
+        code.addGetfield(className, DELEGATE_FIELD, OBJECT_DESCRIPTOR);
+        if (staticSubDelegate) {
+            code.addAload(0);
+            code.addGetfield(className, SUB_DELEGATE_FIELD, OBJECT_DESCRIPTOR);
+        } else {
+            code.addOpcode(Opcode.ACONST_NULL);
+        }
+        int slot = 1;
+        for (final Class<?> type : parameterTypes) {
+            addLoad(code, slot, type);
+            slot += size(type);
+        }
+        final StringBuilder handleDescriptor = new StringBuilder("(")
+            .append(OBJECT_DESCRIPTOR)
+            .append(OBJECT_DESCRIPTOR);
+        for (final Class<?> type : parameterTypes) {
+            handleDescriptor.append(descriptor(type));
+        }
+        handleDescriptor.append(')').append(descriptor(returnType));
+        code.addInvokevirtual(
+                METHOD_HANDLE, "invokeExact", handleDescriptor.toString());
+        addReturn(code, returnType);
+        final MethodInfo methodInfo = new MethodInfo(
+                classFile.getConstPool(),
+                method.getName(),
+                descriptor(returnType, parameterTypes));
+        methodInfo.setAccessFlags(AccessFlag.PUBLIC);
+        methodInfo.setCodeAttribute(code.toCodeAttribute());
+        return methodInfo;
+    }
+
+}
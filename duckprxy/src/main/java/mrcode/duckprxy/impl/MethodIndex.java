@@ -0,0 +1,123 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the public methods of a class by name and signature.
+ * <p>
+ * Unlike {@link Class#getMethod(String, Class...)}, a lookup does not
+ * throw an exception if there is no such method, but returns null.
+ * This makes misses cheap, which is the common case when trying
+ * the method retrieve strategies one after the other.
+ * <p>
+ * The index is built once per class and cached in a {@link ClassValue}.
+ * 
+ * @author Christian Haselbach
+ */
+public final class MethodIndex {
+
+    private static final Class<?>[] NO_PARAMETERS = new Class<?>[0];
+
+    private static final ClassValue<MethodIndex> INDEXES =
+        new ClassValue<MethodIndex>() {
+            @Override
+            protected MethodIndex computeValue(final Class<?> type) {
+                return new MethodIndex(type);
+            }
+        };
+
+    /**
+     * The public methods by name. If there is more than one method with
+     * the same signature (e.g., due to covariant return types), only the
+     * one with the most specific return type is kept.
+     */
+    private final Map<String, Method[]> methodsByName;
+
+    /**
+     * The parameter types of the methods in {@link #methodsByName}, kept
+     * to avoid cloning them on every lookup.
+     */
+    private final Map<String, Class<?>[][]> parameterTypesByName;
+
+    private MethodIndex(final Class<?> clazz) {
+        final Map<String, List<Method>> methods =
+            new HashMap<String, List<Method>>();
+        for (final Method method : clazz.getMethods()) {
+            List<Method> sameName = methods.get(method.getName());
+            if (sameName == null) {
+                sameName = new ArrayList<Method>();
+                methods.put(method.getName(), sameName);
+            }
+            addMostSpecific(sameName, method);
+        }
+        methodsByName = new HashMap<String, Method[]>();
+        parameterTypesByName = new HashMap<String, Class<?>[][]>();
+        for (final Map.Entry<String, List<Method>> entry :
+            methods.entrySet()) {
+            final Method[] sameName = entry.getValue().toArray(new Method[0]);
+            final Class<?>[][] parameterTypes = new Class<?>[sameName.length][];
+            for (int i = 0; i < sameName.length; i++) {
+                parameterTypes[i] = sameName[i].getParameterTypes();
+            }
+            methodsByName.put(entry.getKey(), sameName);
+            parameterTypesByName.put(entry.getKey(), parameterTypes);
+        }
+    }
+
+    private static void addMostSpecific(
+            final List<Method> sameName,
+            final Method method) {
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < sameName.size(); i++) {
+            final Method other = sameName.get(i);
+            if (Arrays.equals(parameterTypes, other.getParameterTypes())) {
+                if (other.getReturnType().isAssignableFrom(
+                        method.getReturnType())) {
+                    sameName.set(i, method);
+                }
+                return;
+            }
+        }
+        sameName.add(method);
+    }
+
+    /**
+     * @param clazz  A class.
+     * @return The (cached) method index of the class.
+     */
+    public static MethodIndex forClass(final Class<?> clazz) {
+        return INDEXES.get(clazz);
+    }
+
+    /**
+     * Looks up a public method by name and parameter types.
+     * @param name            The name of the method.
+     * @param parameterTypes  The parameter types; null is treated like
+     *                        an empty array.
+     * @return The method or null iff there is no such method.
+     */
+    public Method getMethod(
+            final String name,
+            final Class<?>[] parameterTypes) {
+        final Method[] methods = methodsByName.get(name);
+        if (methods == null) {
+            return null;
+        }
+        final Class<?>[][] methodParameterTypes =
+            parameterTypesByName.get(name);
+        final Class<?>[] types =
+            parameterTypes == null ? NO_PARAMETERS : parameterTypes;
+        for (int i = 0; i < methods.length; i++) {
+            if (Arrays.equals(types, methodParameterTypes[i])) {
+                return methods[i];
+            }
+        }
+        return null;
+    }
+
+}
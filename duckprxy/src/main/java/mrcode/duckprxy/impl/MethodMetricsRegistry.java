@@ -0,0 +1,147 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import mrcode.duckprxy.DispatchMetrics;
+import mrcode.duckprxy.DispatchStrategy;
+import mrcode.duckprxy.MethodMetrics;
+
+/**
+ * The {@link MethodMetrics} of an engine, memoized per delegate class and
+ * invoked method, so the {@link DispatchMetrics} hook is asked only once
+ * per method.
+ * <p>
+ * For the engines based on {@link java.lang.reflect.Proxy}, the registry
+ * wraps the invocation handlers. Engines without metrics do not create a
+ * registry, so their handlers are not wrapped at all.
+ * 
+ * @author Christian Haselbach
+ */
+public final class MethodMetricsRegistry {
+
+    private final DispatchMetrics metrics;
+
+    private final ClassValue<ConcurrentMap<Method, MethodMetrics>> tables =
+        new ClassValue<ConcurrentMap<Method, MethodMetrics>>() {
+            @Override
+            protected ConcurrentMap<Method, MethodMetrics> computeValue(
+                    final Class<?> type) {
+                return new ConcurrentHashMap<Method, MethodMetrics>();
+            }
+        };
+
+    /**
+     * @param metrics  The hook to report to.
+     */
+    public MethodMetricsRegistry(final DispatchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param metrics  The hook to report to or null.
+     * @return A registry for the hook or null if the hook is null.
+     */
+    public static MethodMetricsRegistry forMetrics(
+            final DispatchMetrics metrics) {
+        return metrics == null ? null : new MethodMetricsRegistry(metrics);
+    }
+
+    /**
+     * Returns the metrics of a method, using the {@link DispatchPlan} of
+     * the delegate class to tell the strategy.
+     * @param delegateClass  The class of the delegate.
+     * @param method         The invoked method.
+     * @return The metrics of the method.
+     */
+    public MethodMetrics getMethodMetrics(
+            final Class<?> delegateClass,
+            final Method method) {
+        final ConcurrentMap<Method, MethodMetrics> table =
+            tables.get(delegateClass);
+        final MethodMetrics cached = table.get(method);
+        if (cached != null) {
+            return cached;
+        }
+        return getMethodMetrics(
+                delegateClass,
+                method,
+                MethodUtils.getDispatchStrategy(
+                        delegateClass,
+                        method,
+                        DispatchPlan.forClass(delegateClass).getDelegateMethod(
+                                method.getName(),
+                                method.getParameterTypes())));
+    }
+
+    /**
+     * Returns the metrics of a method whose strategy is already known.
+     * @param delegateClass  The class of the delegate.
+     * @param method         The invoked method.
+     * @param strategy       How the delegation of the method was resolved.
+     * @return The metrics of the method.
+     */
+    public MethodMetrics getMethodMetrics(
+            final Class<?> delegateClass,
+            final Method method,
+            final DispatchStrategy strategy) {
+        final ConcurrentMap<Method, MethodMetrics> table =
+            tables.get(delegateClass);
+        final MethodMetrics cached = table.get(method);
+        if (cached != null) {
+            return cached;
+        }
+        final MethodMetrics methodMetrics =
+            metrics.getMethodMetrics(delegateClass, method, strategy);
+        final MethodMetrics raced = table.putIfAbsent(method, methodMetrics);
+        return raced == null ? methodMetrics : raced;
+    }
+
+    /**
+     * @param handler        The invocation handler of a proxy.
+     * @param delegateClass  The class of the proxy's delegate.
+     * @return A handler recording the invocations before passing them on
+     *         to the given handler.
+     */
+    public InvocationHandler wrap(
+            final InvocationHandler handler,
+            final Class<?> delegateClass) {
+        return new MeteredInvocationHandler(handler, delegateClass);
+    }
+
+    private final class MeteredInvocationHandler
+    implements InvocationHandler {
+
+        private final InvocationHandler handler;
+        private final Class<?> delegateClass;
+
+        MeteredInvocationHandler(
+                final InvocationHandler handler,
+                final Class<?> delegateClass) {
+            this.handler = handler;
+            this.delegateClass = delegateClass;
+        }
+
+        public Object invoke(
+                final Object proxy,
+                final Method method,
+                final Object[] args)
+        throws Throwable {
+            final MethodMetrics methodMetrics =
+                getMethodMetrics(delegateClass, method);
+            if (!methodMetrics.isTimed()) {
+                methodMetrics.invoked();
+                return handler.invoke(proxy, method, args);
+            }
+            final long start = System.nanoTime();
+            try {
+                return handler.invoke(proxy, method, args);
+            } finally {
+                methodMetrics.invoked(System.nanoTime() - start);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import mrcode.duckprxy.DuckMethod;
+
+/**
+ * The {@link DuckMethod} patterns of a delegate class, compiled into a
+ * single matcher.
+ * <p>
+ * If several patterns match a method name, the one with the highest
+ * {@link DuckMethod#priority()} wins. Ties are broken by the name of the
+ * delegate method, then by its number of parameters and then by the
+ * order of the patterns in {@link DuckMethod#value()}, so the result
+ * does not depend on the order of {@link Class#getMethods()}.
+ * <p>
+ * The patterns are combined into one alternation in priority order, so
+ * matching a name is a single regular expression match, independent of
+ * the number of patterns. Patterns that cannot be combined (because they
+ * use numbered back references or clashing group names) are matched one
+ * after the other instead. The results are memoized per method name.
+ * <p>
+ * The patterns are compiled once per class and cached in a
+ * {@link ClassValue}.
+ *
+ * @author Christian Haselbach
+ */
+public final class MethodPatterns {
+
+    /**
+     * Memoized result for names that do not match any pattern.
+     */
+    private static final Object NO_MATCH = new Object();
+
+    private static final ClassValue<MethodPatterns> PATTERNS =
+        new ClassValue<MethodPatterns>() {
+            @Override
+            protected MethodPatterns computeValue(final Class<?> type) {
+                return new MethodPatterns(type);
+            }
+        };
+
+    /**
+     * The patterns in priority order.
+     */
+    private final Pattern[] patterns;
+
+    /**
+     * The methods of the patterns.
+     */
+    private final Method[] methods;
+
+    /**
+     * The alternation of all patterns, or null if they are matched one
+     * after the other.
+     */
+    private final Pattern combined;
+
+    /**
+     * The index of the capturing group of each pattern in
+     * {@link #combined}.
+     */
+    private final int[] groups;
+
+    private final ConcurrentMap<String, Object> matches =
+        new ConcurrentHashMap<String, Object>();
+
+    private MethodPatterns(final Class<?> clazz) {
+        final List<Entry> entries = new ArrayList<Entry>();
+        for (final Method method : clazz.getMethods()) {
+            final DuckMethod duckMethod =
+                method.getAnnotation(DuckMethod.class);
+            if (duckMethod != null) {
+                final String[] values = duckMethod.value();
+                for (int i = 0; i < values.length; i++) {
+                    entries.add(new Entry(
+                            Pattern.compile(values[i]),
+                            method,
+                            duckMethod.priority(),
+                            i));
+                }
+            }
+        }
+        Collections.sort(entries, ENTRY_ORDER);
+        final int len = entries.size();
+        patterns = new Pattern[len];
+        methods = new Method[len];
+        groups = new int[len];
+        for (int i = 0; i < len; i++) {
+            patterns[i] = entries.get(i).pattern;
+            methods[i] = entries.get(i).method;
+        }
+        combined = len > 1 ? combine(patterns, groups) : null;
+    }
+
+    /**
+     * @param clazz  A delegate class.
+     * @return The (cached) patterns of the class.
+     */
+    public static MethodPatterns forClass(final Class<?> clazz) {
+        return PATTERNS.get(clazz);
+    }
+
+    /**
+     * @param name  The name of an invoked method.
+     * @return The method of the pattern with the highest priority
+     *         matching the name or null if there is none.
+     */
+    public Method getMethod(final String name) {
+        final Object cached = matches.get(name);
+        if (cached != null) {
+            return cached == NO_MATCH ? null : (Method) cached;
+        }
+        final Method method = match(name);
+        matches.putIfAbsent(name, method == null ? NO_MATCH : method);
+        return method;
+    }
+
+    /**
+     * Returns a capture group of the first {@link DuckMethod} pattern of a
+     * delegate method matching the name of an invoked method.
+     * @param delegateMethod  The delegate method.
+     * @param name            The name of the invoked method.
+     * @param group           The index of the group, 0 being the whole
+     *                        name.
+     * @return The value of the group or null if no pattern matches or the
+     *         group did not participate in the match.
+     */
+    public static String getGroup(
+            final Method delegateMethod,
+            final String name,
+            final int group) {
+        final DuckMethod duckMethod =
+            delegateMethod.getAnnotation(DuckMethod.class);
+        if (duckMethod == null) {
+            return null;
+        }
+        return getGroup(duckMethod.value(), name, group);
+    }
+
+    /**
+     * Returns a capture group of the first pattern matching the name of
+     * an invoked method.
+     * @param patterns  The patterns.
+     * @param name      The name of the invoked method.
+     * @param group     The index of the group, 0 being the whole name.
+     * @return The value of the group or null if no pattern matches or the
+     *         group did not participate in the match.
+     */
+    public static String getGroup(
+            final String[] patterns,
+            final String name,
+            final int group) {
+        for (final String pattern : patterns) {
+            final Matcher matcher = Pattern.compile(pattern).matcher(name);
+            if (matcher.matches()) {
+                return group >= 0 && group <= matcher.groupCount() ?
+                        matcher.group(group) :
+                        null;
+            }
+        }
+        return null;
+    }
+
+    private Method match(final String name) {
+        if (combined != null) {
+            final Matcher matcher = combined.matcher(name);
+            if (!matcher.matches()) {
+                return null;
+            }
+            for (int i = 0; i < groups.length; i++) {
+                if (matcher.start(groups[i]) >= 0) {
+                    return methods[i];
+                }
+            }
+            return null;
+        }
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i].matcher(name).matches()) {
+                return methods[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Combines the patterns into one alternation. Java tries the
+     * alternatives from left to right, so the first pattern matching the
+     * whole name wins.
+     * @param patterns  The patterns in priority order.
+     * @param groups    Receives the group index of each pattern.
+     * @return The combined pattern or null if the patterns cannot be
+     *         combined.
+     */
+    private static Pattern combine(
+            final Pattern[] patterns,
+            final int[] groups) {
+        final StringBuilder regex = new StringBuilder();
+        int group = 1;
+        for (int i = 0; i < patterns.length; i++) {
+            final String pattern = patterns[i].pattern();
+            for (int j = 0; j < pattern.length() - 1; j++) {
+                if (pattern.charAt(j) == '\\') {
+                    if (Character.isDigit(pattern.charAt(j + 1))) {
+                        return null;
+                    }
+                    j++;
+                }
+            }
+            if (i > 0) {
+                regex.append('|');
+            }
+            regex.append('(').append(pattern).append(')');
+            groups[i] = group;
+            group += 1 + patterns[i].matcher("").groupCount();
+        }
+        try {
+            return Pattern.compile(regex.toString());
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    private static final Comparator<Entry> ENTRY_ORDER =
+        new Comparator<Entry>() {
+            public int compare(final Entry e1, final Entry e2) {
+                if (e1.priority != e2.priority) {
+                    return e1.priority > e2.priority ? -1 : 1;
+                }
+                final int byName =
+                    e1.method.getName().compareTo(e2.method.getName());
+                if (byName != 0) {
+                    return byName;
+                }
+                final int byCount = e1.method.getParameterCount() -
+                    e2.method.getParameterCount();
+                if (byCount != 0) {
+                    return byCount;
+                }
+                return e1.index - e2.index;
+            }
+        };
+
+    private static final class Entry {
+        final Pattern pattern;
+        final Method method;
+        final int priority;
+        final int index;
+
+        Entry(
+                final Pattern pattern,
+                final Method method,
+                final int priority,
+                final int index) {
+            this.pattern = pattern;
+            this.method = method;
+            this.priority = priority;
+            this.index = index;
+        }
+    }
+
+}
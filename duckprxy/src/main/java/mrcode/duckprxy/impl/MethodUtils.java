@@ -0,0 +1,148 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+import mrcode.duckprxy.DispatchStrategy;
+import mrcode.duckprxy.DuckArg;
+
+public class MethodUtils {
+    
+    /**
+     * A strategy to look up the delegate method for an invoked method.
+     * Strategies return null if they do not yield a method. They do not
+     * throw exceptions on a miss.
+     */
+    public interface MethodRetrieveStrategy {
+        Method getMethod(
+                String name,
+                Class<?>[] parameterTypes);
+    }
+
+    public static MethodRetrieveStrategy methodByNameAndArgsStrategy(
+            final Class<?> clazz) {
+        final MethodIndex index = MethodIndex.forClass(clazz);
+        return new MethodRetrieveStrategy() {
+            public Method getMethod(
+                    final String name,
+                    final Class<?>[] parameterTypes) {
+                return index.getMethod(name, parameterTypes);
+            }
+        };
+    }
+
+    public static MethodRetrieveStrategy methodByNameWithoutArgsStrategy(
+            final Class<?> clazz) {
+        final MethodIndex index = MethodIndex.forClass(clazz);
+        return new MethodRetrieveStrategy() {
+            public Method getMethod(
+                    final String name,
+                    final Class<?>[] parameterTypes) {
+                return index.getMethod(name, (Class<?>[])null);
+            }
+        };
+    }
+    
+    public static MethodRetrieveStrategy methodByPatternStrategy(
+            final Class<?> clazz,
+            final MethodPatterns patterns) {
+        return new MethodRetrieveStrategy() {
+            public Method getMethod(
+                    final String name,
+                    final Class<?>[] parameterTypes) {
+                return patterns.getMethod(name);
+            }
+        };
+    }
+    
+    public static MethodRetrieveStrategy defaultMethodStrategy() {
+        return defaultMethodStrategy(getDefaultMethod());
+    }
+
+    /**
+     * @return The default method, see {@link #defaultMethod()}.
+     */
+    public static Method getDefaultMethod() {
+        try {
+            return MethodUtils.class.getMethod(
+                    "defaultMethod",
+                    (Class<?>[]) null);
+        } catch (Exception e) {
+            throw new RuntimeException("Caught unexpected exception", e);
+        }
+    }
+
+    public static MethodRetrieveStrategy defaultMethodStrategy(
+            final Method defaultMethod) {
+        return new MethodRetrieveStrategy() {
+            public Method getMethod(
+                    final String name,
+                    final Class<?>[] parameterTypes) {
+                return defaultMethod;
+            }
+        };
+    }
+
+    public static void defaultMethod() throws Exception {
+        throw new NoSuchMethodException();
+    }
+
+    /**
+     * @param method  A method.
+     * @return true iff the method is the default method, i.e., the method
+     *         that signals a missing delegate method.
+     */
+    public static boolean isDefaultMethod(final Method method) {
+        return method.getDeclaringClass() == MethodUtils.class &&
+            "defaultMethod".equals(method.getName());
+    }
+
+    /**
+     * Tells which strategy resolved a delegate method.
+     * @param delegateClass   The class the delegate method was looked up
+     *                        in.
+     * @param method          The invoked method.
+     * @param delegateMethod  The resolved delegate method or null if the
+     *                        invocation is forwarded to the sub delegate.
+     * @return The strategy.
+     */
+    public static DispatchStrategy getDispatchStrategy(
+            final Class<?> delegateClass,
+            final Method method,
+            final Method delegateMethod) {
+        if (delegateMethod == null) {
+            return DispatchStrategy.SUB_DELEGATE;
+        }
+        if (isDefaultMethod(delegateMethod)) {
+            return DispatchStrategy.MISSING;
+        }
+        final MethodIndex index = MethodIndex.forClass(delegateClass);
+        final String name = method.getName();
+        if (delegateMethod.equals(
+                index.getMethod(name, method.getParameterTypes()))) {
+            return DispatchStrategy.EXACT;
+        }
+        if (delegateMethod.equals(index.getMethod(name, null))) {
+            return DispatchStrategy.NAME_ONLY;
+        }
+        if (delegateMethod.equals(
+                MethodPatterns.forClass(delegateClass).getMethod(name))) {
+            return DispatchStrategy.PATTERN;
+        }
+        return DispatchStrategy.FALLBACK;
+    }
+
+    /**
+     * @param annotations  The annotations of a parameter.
+     * @return The duck arg definition or null if there is none.
+     */
+    public static DuckArg getDuckArg(final Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (DuckArg.class.equals(annotation.annotationType())) {
+                return (DuckArg) annotation;
+            }
+        }
+        return null;
+    }
+    
+}
@@ -0,0 +1,208 @@
+package mrcode.duckprxy.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+
+/**
+ * Index of the proxy classes of {@link JavassistDuckPrxy} that have been
+ * generated at build time, e.g., by the duckprxy Maven plugin.
+ * <p>
+ * The class files are stored as resources below
+ * {@value #CLASS_DIRECTORY}, and the index {@value #INDEX_RESOURCE} maps
+ * the class names to the resources. The indexes are read from the class
+ * loader of the delegate class, once per class loader.
+ * <p>
+ * Each index records the {@link #FORMAT_VERSION} it was written with.
+ * Indexes of another version, e.g., written by an older plugin whose
+ * classes do not match this {@link JavassistDuckPrxy}, are ignored, so
+ * their classes are generated at runtime instead.
+ *
+ * @author Christian Haselbach
+ */
+public final class PregeneratedClasses {
+
+    /**
+     * The resource name of the index.
+     */
+    public static final String INDEX_RESOURCE =
+        "META-INF/duckprxy/index.properties";
+
+    /**
+     * The resource directory of the class files.
+     */
+    public static final String CLASS_DIRECTORY = "META-INF/duckprxy/classes/";
+
+    /**
+     * The version of the index and the generated classes. It has to be
+     * increased whenever the generated classes change incompatibly.
+     */
+    public static final String FORMAT_VERSION = "1";
+
+    /**
+     * The index key of the version. It is not a class name.
+     */
+    public static final String VERSION_KEY = "duckprxy-format-version";
+
+    /**
+     * The indexes per class loader. An index only holds its class loader
+     * weakly, so it does not keep its key alive.
+     */
+    private static final Map<ClassLoader, PregeneratedClasses> INDEXES =
+        new WeakHashMap<ClassLoader, PregeneratedClasses>();
+
+    private final WeakReference<ClassLoader> classLoader;
+
+    /**
+     * Maps class names to resource names.
+     */
+    private final Properties index = new Properties();
+
+    private PregeneratedClasses(final ClassLoader classLoader) {
+        this.classLoader = new WeakReference<ClassLoader>(classLoader);
+        try {
+            final Enumeration<URL> indexes = classLoader == null ?
+                    ClassLoader.getSystemResources(INDEX_RESOURCE) :
+                    classLoader.getResources(INDEX_RESOURCE);
+            while (indexes.hasMoreElements()) {
+                final Properties entries =
+                    load(indexes.nextElement().openStream());
+                if (FORMAT_VERSION.equals(entries.remove(VERSION_KEY))) {
+                    index.putAll(entries);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read " + INDEX_RESOURCE, e);
+        }
+    }
+
+    /**
+     * @param delegateClass  A delegate class.
+     * @return The pregenerated classes visible to the delegate class.
+     */
+    public static PregeneratedClasses forClass(final Class<?> delegateClass) {
+        final ClassLoader classLoader = delegateClass.getClassLoader();
+        synchronized (INDEXES) {
+            PregeneratedClasses index = INDEXES.get(classLoader);
+            if (index == null) {
+                index = new PregeneratedClasses(classLoader);
+                INDEXES.put(classLoader, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * @param className  The name of a generated class.
+     * @return The pregenerated class file or null if the class has not
+     *         been pregenerated.
+     */
+    public byte[] getBytecode(final String className) {
+        final String resource = index.getProperty(className);
+        if (resource == null) {
+            return null;
+        }
+        final ClassLoader classLoader = this.classLoader.get();
+        try {
+            final InputStream in = classLoader == null ?
+                    ClassLoader.getSystemResourceAsStream(resource) :
+                    classLoader.getResourceAsStream(resource);
+            if (in == null) {
+                return null;
+            }
+            try {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[4096];
+                int len;
+                while ((len = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, len);
+                }
+                return out.toByteArray();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read " + resource, e);
+        }
+    }
+
+    /**
+     * Writes class files and adds them to the index in a class output
+     * directory. Existing index entries of the same
+     * {@link #FORMAT_VERSION} are kept.
+     * @param outputDirectory  The root of the class output directory.
+     * @param classFiles       The class files per class name, as returned
+     *                         by {@link JavassistDuckPrxy#generateClassFiles}.
+     * @throws IOException  If writing fails.
+     */
+    public static void writeClassFiles(
+            final File outputDirectory,
+            final Map<String, byte[]> classFiles)
+    throws IOException {
+        final File indexFile = new File(outputDirectory, INDEX_RESOURCE);
+        Properties index = new Properties();
+        if (indexFile.exists()) {
+            index = load(new FileInputStream(indexFile));
+            if (!FORMAT_VERSION.equals(index.getProperty(VERSION_KEY))) {
+                // The classes of another version are not kept.
+                index = new Properties();
+            }
+        }
+        index.setProperty(VERSION_KEY, FORMAT_VERSION);
+        for (final Map.Entry<String, byte[]> entry : classFiles.entrySet()) {
+            final String resource = getResourceName(entry.getKey());
+            final File classFile = new File(outputDirectory, resource);
+            classFile.getParentFile().mkdirs();
+            final OutputStream out = new FileOutputStream(classFile);
+            try {
+                out.write(entry.getValue());
+            } finally {
+                out.close();
+            }
+            index.setProperty(entry.getKey(), resource);
+        }
+        indexFile.getParentFile().mkdirs();
+        final OutputStream out = new FileOutputStream(indexFile);
+        try {
+            index.store(out, "Pregenerated duckprxy classes");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static Properties load(final InputStream in) throws IOException {
+        try {
+            final Properties properties = new Properties();
+            properties.load(in);
+            return properties;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @param className  The name of a generated class.
+     * @return The resource name of the class file. Characters that are
+     *         not safe in file names are replaced.
+     */
+    public static String getResourceName(final String className) {
+        final StringBuilder name = new StringBuilder(CLASS_DIRECTORY);
+        for (int i = 0; i < className.length(); i++) {
+            final char c = className.charAt(i);
+            name.append(Character.isLetterOrDigit(c) ||
+                    c == '.' || c == '$' || c == '_' || c == '-' ? c : '_');
+        }
+        return name.append(".class").toString();
+    }
+
+}
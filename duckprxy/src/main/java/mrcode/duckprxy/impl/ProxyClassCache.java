@@ -0,0 +1,243 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe cache for generated proxy classes, keyed by the class
+ * loader the proxy class is defined in, the delegate class and the
+ * implemented interfaces.
+ * <p>
+ * Each proxy class is generated exactly once, even if several threads ask
+ * for it at the same time: the other threads wait for the generating
+ * thread. The cache does not pin any class loader. The entries are kept
+ * per delegate class in a {@link ClassValue}, and the class loader,
+ * interfaces and generated classes are only weakly referenced.
+ *
+ * @author Christian Haselbach
+ */
+public final class ProxyClassCache {
+
+    /**
+     * Stand-in for the bootstrap class loader in keys.
+     */
+    private static final Object BOOTSTRAP_LOADER = new Object();
+
+    private final ClassValue<ConcurrentMap<Key, FutureTask<ClassRef>>>
+        classes = new ClassValue<ConcurrentMap<Key, FutureTask<ClassRef>>>() {
+            @Override
+            protected ConcurrentMap<Key, FutureTask<ClassRef>> computeValue(
+                    final Class<?> type) {
+                return new ConcurrentHashMap<Key, FutureTask<ClassRef>>();
+            }
+        };
+
+    private final ReferenceQueue<Class<?>> collectedClasses =
+        new ReferenceQueue<Class<?>>();
+
+    /**
+     * The references to the cached classes. They are kept here, because
+     * a reference is only enqueued if it is still reachable.
+     */
+    private final Set<ClassRef> classRefs =
+        Collections.newSetFromMap(new ConcurrentHashMap<ClassRef, Boolean>());
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Returns the cached proxy class, generating it if necessary.
+     * @param loader         The class loader the proxy class is defined in.
+     * @param delegateClass  The class of the delegate.
+     * @param mainInterface  The main interface (or class) of the proxy.
+     * @param interfaces     The secondary interfaces of the proxy.
+     * @param generator      Generates and defines the proxy class.
+     * @return The proxy class.
+     * @throws Exception  As thrown by the generator.
+     */
+    public Class<?> getProxyClass(
+            final ClassLoader loader,
+            final Class<?> delegateClass,
+            final Class<?> mainInterface,
+            final Class<?>[] interfaces,
+            final Callable<Class<?>> generator)
+    throws Exception {
+        expungeCollectedClasses();
+        final ConcurrentMap<Key, FutureTask<ClassRef>> classMap =
+            classes.get(delegateClass);
+        final Key key = new Key(loader, mainInterface, interfaces);
+        while (true) {
+            FutureTask<ClassRef> future = classMap.get(key);
+            if (future == null) {
+                final FutureTask<ClassRef> task = new FutureTask<ClassRef>(
+                        new Callable<ClassRef>() {
+                            public ClassRef call() throws Exception {
+                                final ClassRef classRef = new ClassRef(
+                                        generator.call(),
+                                        collectedClasses,
+                                        classMap,
+                                        key);
+                                classRefs.add(classRef);
+                                size.incrementAndGet();
+                                return classRef;
+                            }
+                        });
+                future = classMap.putIfAbsent(key, task);
+                if (future == null) {
+                    misses.increment();
+                    future = task;
+                    task.run();
+                } else {
+                    hits.increment();
+                }
+            } else {
+                hits.increment();
+            }
+            final Class<?> proxyClass;
+            try {
+                proxyClass = future.get().get();
+            } catch (ExecutionException e) {
+                classMap.remove(key, future);
+                final Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw (Error) cause;
+            }
+            if (proxyClass != null) {
+                return proxyClass;
+            }
+            classMap.remove(key, future);
+        }
+    }
+
+    /**
+     * @return The number of lookups that found an existing proxy class
+     *         (or one being generated by another thread).
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of lookups that generated a proxy class.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of cached proxy classes that have not been
+     *         garbage collected yet, as far as known to the cache.
+     */
+    public int size() {
+        expungeCollectedClasses();
+        return size.get();
+    }
+
+    private void expungeCollectedClasses() {
+        Reference<? extends Class<?>> ref;
+        while ((ref = collectedClasses.poll()) != null) {
+            ((ClassRef) ref).expunge();
+            classRefs.remove(ref);
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Weak reference to a generated class that knows its cache entry.
+     */
+    private static final class ClassRef extends WeakReference<Class<?>> {
+        private final ConcurrentMap<Key, FutureTask<ClassRef>> classMap;
+        private final Key key;
+
+        ClassRef(
+                final Class<?> proxyClass,
+                final ReferenceQueue<Class<?>> queue,
+                final ConcurrentMap<Key, FutureTask<ClassRef>> classMap,
+                final Key key) {
+            super(proxyClass, queue);
+            this.classMap = classMap;
+            this.key = key;
+        }
+
+        void expunge() {
+            final FutureTask<ClassRef> future = classMap.get(key);
+            if (future != null && future.isDone()) {
+                try {
+                    if (future.get() == this) {
+                        classMap.remove(key, future);
+                    }
+                } catch (Exception e) {
+                    // Failed generations are removed by the failing thread.
+                }
+            }
+        }
+    }
+
+    /**
+     * Key of a proxy class, weakly referencing the class loader and the
+     * interfaces. Two keys are equal iff they refer to the identical
+     * objects.
+     */
+    private static final class Key {
+        private final WeakReference<?>[] refs;
+        private final int hash;
+
+        Key(
+                final ClassLoader loader,
+                final Class<?> mainInterface,
+                final Class<?>[] interfaces) {
+            refs = new WeakReference<?>[interfaces.length + 2];
+            int h = 0;
+            refs[0] = new WeakReference<Object>(
+                    loader == null ? BOOTSTRAP_LOADER : loader);
+            refs[1] = new WeakReference<Object>(mainInterface);
+            h = 31 * h + System.identityHashCode(refs[0].get());
+            h = 31 * h + System.identityHashCode(mainInterface);
+            for (int i = 0; i < interfaces.length; i++) {
+                refs[i + 2] = new WeakReference<Object>(interfaces[i]);
+                h = 31 * h + System.identityHashCode(interfaces[i]);
+            }
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            if (hash != other.hash || refs.length != other.refs.length) {
+                return false;
+            }
+            for (int i = 0; i < refs.length; i++) {
+                final Object referent = refs[i].get();
+                if (referent == null || referent != other.refs[i].get()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package mrcode.duckprxy.impl;
+
+/**
+ * Where {@link JavassistDuckPrxy} defines the generated proxy classes.
+ * 
+ * @author Christian Haselbach
+ */
+public enum ProxyClassDefinition {
+
+    /**
+     * Define the proxy classes in the context class loader of the current
+     * thread, using a class pool that also sees the context class loader
+     * and is discarded after the generation. The proxy classes live as
+     * long as the context class loader.
+     */
+    CONTEXT_CLASS_LOADER,
+
+    /**
+     * Define the proxy classes in a child class loader of the delegate
+     * class's class loader, using a class pool that is discarded after the
+     * generation. The proxy classes can be garbage collected together with
+     * the delegate class, e.g., when a plugin is redeployed.
+     */
+    DELEGATE_CHILD_CLASS_LOADER
+
+}
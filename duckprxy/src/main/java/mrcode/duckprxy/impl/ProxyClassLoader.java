@@ -0,0 +1,32 @@
+package mrcode.duckprxy.impl;
+
+/**
+ * Class loader for generated proxy classes, created as a child of the
+ * delegate class's class loader. Classes not visible from the delegate
+ * class's class loader (e.g., the duckprxy classes used by the generated
+ * code) are loaded via the class loader of this library.
+ * 
+ * @author Christian Haselbach
+ */
+final class ProxyClassLoader extends ClassLoader {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    ProxyClassLoader(final ClassLoader parent) {
+        super(parent);
+    }
+
+    @Override
+    protected Class<?> findClass(final String name)
+    throws ClassNotFoundException {
+        return Class.forName(
+                name, false, ProxyClassLoader.class.getClassLoader());
+    }
+
+    Class<?> define(final String name, final byte[] bytecode) {
+        return defineClass(name, bytecode, 0, bytecode.length);
+    }
+
+}
@@ -0,0 +1,71 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.reflect.Method;
+
+import mrcode.duckprxy.SubDelegatePolicy;
+
+/**
+ * The heart of the the {@link DuckPrxyImpl} implementation.
+ * <p>
+ * Invocations forwarded to the sub delegate are dispatched with the plan
+ * of the sub delegate's actual class. A sub delegate with the
+ * {@link SubDelegatePolicy#DYNAMIC} policy is read on every such
+ * invocation, including all sub delegates below it. A sub delegate with
+ * the {@link SubDelegatePolicy#STATIC} policy is read once, when the
+ * handler is created; the sub delegates below it are read when an
+ * invocation is forwarded to them. A missing (null) sub delegate is
+ * treated like a missing delegate method, see
+ * {@link DispatchPlan#invokeSubDelegate}.
+ * 
+ * @author Christian Haselbach
+ */
+public class PrxyInvocationHanlder extends AbstractPrxyInvocationHandler {
+    
+    private final DispatchPlan plan;
+
+    /**
+     * The sub delegate if it is read only once (see
+     * {@link SubDelegatePolicy#STATIC}), otherwise null. It is read
+     * again when the delegate is replaced.
+     */
+    private Object staticSubDelegate;
+    
+    public PrxyInvocationHanlder(final Object delegate) {
+        this(delegate, DispatchPlan.forClass(delegate.getClass()));
+    }
+
+    /**
+     * @param delegate  The object to delegate the calls to.
+     * @param plan      The dispatch plan for the delegate's class.
+     */
+    public PrxyInvocationHanlder(
+            final Object delegate,
+            final DispatchPlan plan) {
+        super(delegate);
+        this.plan = plan;
+        this.staticSubDelegate = getStaticSubDelegate(plan, delegate);
+    }
+
+    public Object invoke(
+            final Object proxy,
+            final Method method,
+            final Object[] args)
+            throws Throwable {
+        final DelegateCall delegateCall = plan.getDelegateCall(method);
+        if (!delegateCall.isSubDelegate()) {
+            return delegateCall.invoke(delegate, args);
+        }
+        return invokeSubDelegate(plan, staticSubDelegate, method, args);
+    }
+
+    @Override
+    public void rebind(final Object newDelegate) {
+        super.rebind(newDelegate);
+        staticSubDelegate = getStaticSubDelegate(plan, newDelegate);
+    }
+
+    public Method getSubDelegateGetter() {
+        return plan.getSubDelegateGetter();
+    }
+    
+}
@@ -0,0 +1,73 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.reflect.Method;
+
+import mrcode.duckprxy.SubDelegatePolicy;
+
+/**
+ * Invocation handler looking up the delegations in the
+ * {@link DispatchTable} of its proxy shape, which is shared by all
+ * handlers of that shape. Apart from the table, a handler only holds its
+ * delegate (and its static sub delegate, if any).
+ *
+ * @author Christian Haselbach
+ */
+public class PrxyPreCompInvocationHandler
+extends AbstractPrxyInvocationHandler {
+
+    private final DispatchTable dispatchTable;
+
+    /**
+     * The sub delegate if it is read only once (see
+     * {@link SubDelegatePolicy#STATIC}), otherwise null. It is read
+     * again when the delegate is replaced.
+     */
+    private Object staticSubDelegate;
+    
+    public PrxyPreCompInvocationHandler(
+            final Object delegate,
+            final Class<?>[] interfaces) {
+        this(
+                delegate,
+                DispatchPlan.forClass(delegate.getClass())
+                    .getDispatchTable(interfaces));
+    }
+
+    /**
+     * @param delegate       The object to delegate the calls to.
+     * @param dispatchTable  The dispatch table of the proxy shape.
+     */
+    PrxyPreCompInvocationHandler(
+            final Object delegate,
+            final DispatchTable dispatchTable) {
+        super(delegate);
+        this.dispatchTable = dispatchTable;
+        this.staticSubDelegate =
+            getStaticSubDelegate(dispatchTable.getPlan(), delegate);
+    }
+
+    public Object invoke(
+            final Object proxy,
+            final Method method,
+            final Object[] args)
+            throws Throwable {
+        final DelegateCall delegateCall = dispatchTable.get(method);
+        if (!delegateCall.isSubDelegate()) {
+            return delegateCall.invoke(delegate, args);
+        }
+        return invokeSubDelegate(
+                dispatchTable.getPlan(), staticSubDelegate, method, args);
+    }
+
+    @Override
+    public void rebind(final Object newDelegate) {
+        super.rebind(newDelegate);
+        staticSubDelegate =
+            getStaticSubDelegate(dispatchTable.getPlan(), newDelegate);
+    }
+
+    public Method getSubDelegateGetter() {
+        return dispatchTable.getPlan().getSubDelegateGetter();
+    }
+    
+}
@@ -0,0 +1,82 @@
+package mrcode.duckprxy.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+import mrcode.duckprxy.Rebindable;
+
+/**
+ * Invocation handler of the rebindable proxies of the
+ * {@link java.lang.reflect.Proxy} based implementations. It handles the
+ * {@link Rebindable} methods itself by rebinding the underlying handler,
+ * and forwards all other invocations.
+ * 
+ * @author Christian Haselbach
+ */
+public class RebindableInvocationHandler implements InvocationHandler {
+
+    private final Rebindable handler;
+
+    /**
+     * The handler to forward the invocations to, i.e., {@link #handler}
+     * or a wrapper of it.
+     */
+    private final InvocationHandler invoker;
+
+    /**
+     * @param handler  The handler holding the delegate.
+     * @param invoker  The handler to forward the invocations to, i.e., the
+     *                 handler holding the delegate or a wrapper of it.
+     */
+    public RebindableInvocationHandler(
+            final Rebindable handler,
+            final InvocationHandler invoker) {
+        this.handler = handler;
+        this.invoker = invoker;
+    }
+
+    public Object invoke(
+            final Object proxy,
+            final Method method,
+            final Object[] args)
+            throws Throwable {
+        if (method.getDeclaringClass() == Rebindable.class) {
+            handler.rebind(args[0]);
+            return null;
+        }
+        return invoker.invoke(proxy, method, args);
+    }
+
+    /**
+     * @param mainInterface  The main interface of a rebindable proxy.
+     * @param interfaces     Its secondary interfaces.
+     * @return All interfaces of the proxy, i.e., the main interface, the
+     *         secondary interfaces and {@link Rebindable}.
+     */
+    public static Class<?>[] getAllInterfaces(
+            final Class<?> mainInterface,
+            final Class<?>[] interfaces) {
+        return JdkProxyFactory.getAllInterfaces(
+                mainInterface, interfaces, Rebindable.class);
+    }
+
+    /**
+     * Checks that a handler may replace its delegate by a new one, i.e.,
+     * that both are of the same class, for which the handler has been
+     * set up.
+     * @param delegate     The current delegate.
+     * @param newDelegate  The new delegate.
+     * @throws ClassCastException  If the classes differ.
+     */
+    public static void checkRebind(
+            final Object delegate,
+            final Object newDelegate) {
+        if (newDelegate.getClass() != delegate.getClass()) {
+            throw new ClassCastException(
+                    "Cannot rebind a proxy delegating to " +
+                    delegate.getClass().getName() + " to " +
+                    newDelegate.getClass().getName());
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package mrcode.duckprxy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for the construction of the dispatch plan of a
+ * delegate class, i.e., the reflective analysis of its methods.
+ * 
+ * @author Christian Haselbach
+ */
+@Name("mrcode.duckprxy.DispatchPlan")
+@Label("Dispatch Plan Construction")
+@Category("duckprxy")
+@Description("Analysis of the methods of a delegate class")
+public class DispatchPlanEvent extends jdk.jfr.Event {
+
+    @Label("Delegate Class")
+    public Class<?> delegateClass;
+
+}
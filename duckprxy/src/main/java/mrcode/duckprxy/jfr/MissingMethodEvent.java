@@ -0,0 +1,43 @@
+package mrcode.duckprxy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for the invocation of a proxy method without a
+ * delegate method, which ends in a {@link NoSuchMethodException}.
+ * 
+ * @author Christian Haselbach
+ */
+@Name("mrcode.duckprxy.MissingMethod")
+@Label("Missing Delegate Method")
+@Category("duckprxy")
+@Description("Invocation of a proxy method without a delegate method")
+@StackTrace(true)
+public class MissingMethodEvent extends jdk.jfr.Event {
+
+    @Label("Method Name")
+    public String methodName;
+
+    @Label("Delegate Class")
+    public Class<?> delegateClass;
+
+    /**
+     * Commits an event if the event type is enabled. Called by the
+     * engines, including the generated proxy classes.
+     * @param methodName  The name of the invoked method.
+     * @param delegate    The delegate or null if it is unknown.
+     */
+    public static void emit(final String methodName, final Object delegate) {
+        final MissingMethodEvent event = new MissingMethodEvent();
+        if (event.isEnabled()) {
+            event.methodName = methodName;
+            event.delegateClass = delegate == null ? null : delegate.getClass();
+            event.commit();
+        }
+    }
+
+}
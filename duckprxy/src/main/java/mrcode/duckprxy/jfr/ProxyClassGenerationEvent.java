@@ -0,0 +1,37 @@
+package mrcode.duckprxy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for the generation (or loading of a pregenerated
+ * class) of a Javassist proxy class. The duration includes looking up the
+ * delegate methods, compiling and defining the class.
+ * 
+ * @author Christian Haselbach
+ */
+@Name("mrcode.duckprxy.ProxyClassGeneration")
+@Label("Proxy Class Generation")
+@Category("duckprxy")
+@Description("Generation of a proxy class")
+public class ProxyClassGenerationEvent extends jdk.jfr.Event {
+
+    @Label("Class Name")
+    public String className;
+
+    @Label("Delegate Class")
+    public Class<?> delegateClass;
+
+    @Label("Main Interface")
+    public Class<?> mainInterface;
+
+    @Label("Method Count")
+    public int methodCount;
+
+    @Label("Pregenerated")
+    @Description("Whether the class was loaded from a pregenerated class file")
+    public boolean pregenerated;
+
+}
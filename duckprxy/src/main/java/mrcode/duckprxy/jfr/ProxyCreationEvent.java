@@ -0,0 +1,48 @@
+package mrcode.duckprxy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for the creation of a proxy with
+ * {@link mrcode.duckprxy.DuckPrxy#makeProxy}, including the lookup or
+ * generation of its class.
+ * 
+ * @author Christian Haselbach
+ */
+@Name("mrcode.duckprxy.ProxyCreation")
+@Label("Proxy Creation")
+@Category("duckprxy")
+@Description("Creation of a proxy instance")
+public class ProxyCreationEvent extends jdk.jfr.Event {
+
+    @Label("Delegate Class")
+    public Class<?> delegateClass;
+
+    @Label("Main Interface")
+    public Class<?> mainInterface;
+
+    @Label("Proxy Class")
+    public Class<?> proxyClass;
+
+    /**
+     * Commits the event, if it is enabled and above its threshold.
+     * @param delegate       The delegate of the created proxy.
+     * @param mainInterface  The main interface of the created proxy.
+     * @param proxy          The created proxy.
+     */
+    public void commit(
+            final Object delegate,
+            final Class<?> mainInterface,
+            final Object proxy) {
+        if (shouldCommit()) {
+            this.delegateClass = delegate.getClass();
+            this.mainInterface = mainInterface;
+            this.proxyClass = proxy.getClass();
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+package mrcode.duckprxy.util;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import mrcode.duckprxy.DispatchMetrics;
+import mrcode.duckprxy.DispatchStrategy;
+import mrcode.duckprxy.MethodMetrics;
+
+/**
+ * Default implementation of {@link DispatchMetrics}, counting the
+ * invocations per delegate class and interface method and, optionally,
+ * keeping a latency histogram. Proxies of the same interface over
+ * different delegate classes may dispatch a method differently, so their
+ * statistics are kept apart. The counters are {@link LongAdder}s, so recording does not
+ * contend between threads.
+ * <p>
+ * The histogram has one bucket per power of two: bucket i counts the
+ * invocations that took at least 2^(i-1) and less than 2^i nanoseconds
+ * (bucket 0 counts the ones that took no measurable time).
+ * 
+ * @author Christian Haselbach
+ */
+public class DispatchStatistics implements DispatchMetrics {
+
+    /**
+     * The number of buckets of the latency histograms.
+     */
+    public static final int BUCKETS = 65;
+
+    private final boolean timed;
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Method, Statistics>>
+        statistics =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<Method, Statistics>>();
+
+    /**
+     * Creates statistics that only count the invocations.
+     */
+    public DispatchStatistics() {
+        this(false);
+    }
+
+    /**
+     * @param timed  true iff latency histograms shall be kept.
+     */
+    public DispatchStatistics(final boolean timed) {
+        this.timed = timed;
+    }
+
+    public MethodMetrics getMethodMetrics(
+            final Class<?> delegateClass,
+            final Method method,
+            final DispatchStrategy strategy) {
+        ConcurrentMap<Method, Statistics> methods =
+            statistics.get(delegateClass);
+        if (methods == null) {
+            methods = new ConcurrentHashMap<Method, Statistics>();
+            final ConcurrentMap<Method, Statistics> racedMethods =
+                statistics.putIfAbsent(delegateClass, methods);
+            if (racedMethods != null) {
+                methods = racedMethods;
+            }
+        }
+        final Statistics created = new Statistics(strategy, timed);
+        final Statistics raced = methods.putIfAbsent(method, created);
+        return raced == null ? created : raced;
+    }
+
+    /**
+     * @return The delegate classes methods have been dispatched to so far.
+     */
+    public Set<Class<?>> getDelegateClasses() {
+        return Collections.<Class<?>>unmodifiableSet(statistics.keySet());
+    }
+
+    /**
+     * @param delegateClass  A delegate class.
+     * @return The statistics of all methods dispatched to the delegate
+     *         class so far.
+     */
+    public Map<Method, Statistics> getStatistics(
+            final Class<?> delegateClass) {
+        final Map<Method, Statistics> methods = statistics.get(delegateClass);
+        if (methods == null) {
+            return Collections.<Method, Statistics>emptyMap();
+        }
+        return Collections.<Method, Statistics>unmodifiableMap(methods);
+    }
+
+    /**
+     * @param delegateClass  A delegate class.
+     * @param method         An interface method.
+     * @return The statistics of the method or null if it has not been
+     *         dispatched to the delegate class yet.
+     */
+    public Statistics getStatistics(
+            final Class<?> delegateClass,
+            final Method method) {
+        return getStatistics(delegateClass).get(method);
+    }
+
+    /**
+     * The statistics of one interface method of one delegate class.
+     */
+    public static final class Statistics implements MethodMetrics {
+
+        private final DispatchStrategy strategy;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder[] histogram;
+
+        Statistics(final DispatchStrategy strategy, final boolean timed) {
+            this.strategy = strategy;
+            if (timed) {
+                histogram = new LongAdder[BUCKETS];
+                for (int i = 0; i < BUCKETS; i++) {
+                    histogram[i] = new LongAdder();
+                }
+            } else {
+                histogram = null;
+            }
+        }
+
+        public boolean isTimed() {
+            return histogram != null;
+        }
+
+        public void invoked() {
+            count.increment();
+        }
+
+        public void invoked(final long nanos) {
+            count.increment();
+            histogram[nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos)]
+                .increment();
+        }
+
+        /**
+         * @return How the delegation of the method was resolved.
+         */
+        public DispatchStrategy getStrategy() {
+            return strategy;
+        }
+
+        /**
+         * @return The number of invocations.
+         */
+        public long getInvocationCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return The latency histogram, see {@link DispatchStatistics},
+         *         or null if the statistics are not timed.
+         */
+        public long[] getLatencyHistogram() {
+            if (histogram == null) {
+                return null;
+            }
+            final long[] result = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                result[i] = histogram[i].sum();
+            }
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package mrcode.duckprxy.util;
+
+public class ObjectUtil {
+    
+    public static Object toObject(final boolean b) {
+        return Boolean.valueOf(b);
+    }
+    
+    public static Object toObject(final byte b) {
+        return Byte.valueOf(b);
+    }
+    
+    public static Object toObject(final char c) {
+        return Character.valueOf(c);
+    }
+    
+    public static Object toObject(final short s) {
+        return Short.valueOf(s);
+    }
+    
+    public static Object toObject(final int i) {
+        return Integer.valueOf(i);
+    }
+    
+    public static Object toObject(final long l) {
+        return Long.valueOf(l);
+    }
+    
+    public static Object toObject(final float f) {
+        return Float.valueOf(f);
+    }
+    
+    public static Object toObject(final double d) {
+        return Double.valueOf(d);
+    }
+    
+    public static Object toObject(Object o) {
+        return o;
+    }
+
+    /**
+     * @param type  A type.
+     * @return The (boxed) default value of the type, i.e., null for
+     *         reference types.
+     */
+    public static Object defaultValue(final Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        return convert(null, type);
+    }
+
+    /**
+     * Converts a boxed primitive to the box of another primitive type,
+     * e.g., to widen the boxed return value of a delegate method.
+     * @param value  The boxed primitive value or null.
+     * @param type   The primitive type to convert to.
+     * @return The converted value, or the type's default value if the
+     *         value is null.
+     */
+    public static Object convert(final Object value, final Class<?> type) {
+        if (type == boolean.class) {
+            return value == null ? Boolean.FALSE : value;
+        }
+        final Number number;
+        if (value == null) {
+            number = Integer.valueOf(0);
+        } else if (value instanceof Character) {
+            number = Integer.valueOf(((Character) value).charValue());
+        } else {
+            number = (Number) value;
+        }
+        if (type == byte.class) {
+            return Byte.valueOf(number.byteValue());
+        } else if (type == char.class) {
+            return Character.valueOf((char) number.intValue());
+        } else if (type == short.class) {
+            return Short.valueOf(number.shortValue());
+        } else if (type == int.class) {
+            return Integer.valueOf(number.intValue());
+        } else if (type == long.class) {
+            return Long.valueOf(number.longValue());
+        } else if (type == float.class) {
+            return Float.valueOf(number.floatValue());
+        } else if (type == double.class) {
+            return Double.valueOf(number.doubleValue());
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,231 @@
+package mrcode.duckprxy.util;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import mrcode.duckprxy.DuckPrxy;
+import mrcode.duckprxy.ProxyFactory;
+
+/**
+ * Lazy views of sequences of delegates as sequences of proxies. The
+ * source is never copied; an element is wrapped when it is accessed, with
+ * the {@link ProxyFactory} of its class, which is looked up once per
+ * view and delegate class. Wrapping a large result set this way does not
+ * need memory for all proxies at once, and elements that are never
+ * accessed are never wrapped.
+ * <p>
+ * Each access creates a new proxy, so a view should not be used where
+ * the identity of the elements matters. Null elements are passed through
+ * as null. The views are unmodifiable and as thread safe as their
+ * sources.
+ *
+ * @author Christian Haselbach
+ */
+public final class ProxyViews {
+
+    private ProxyViews() {
+        // static methods only
+    }
+
+    /**
+     * @param <T>            The class of the main interface.
+     * @param duckPrxy       The duck proxy creating the proxies.
+     * @param mainInterface  The main interface of the proxies.
+     * @param source         The delegates.
+     * @param interfaces     Secondary interfaces of the proxies.
+     * @return An iterator over proxies of the source's elements.
+     */
+    public static <T> Iterator<T> iterator(
+            final DuckPrxy duckPrxy,
+            final Class<T> mainInterface,
+            final Iterator<?> source,
+            final Class<?>... interfaces) {
+        return new ProxyIterator<T>(
+                new Wrapper<T>(duckPrxy, mainInterface, interfaces),
+                source);
+    }
+
+    /**
+     * @param <T>            The class of the main interface.
+     * @param duckPrxy       The duck proxy creating the proxies.
+     * @param mainInterface  The main interface of the proxies.
+     * @param source         The delegates.
+     * @param interfaces     Secondary interfaces of the proxies.
+     * @return An iterable over proxies of the source's elements. The
+     *         factories are shared by all its iterators.
+     */
+    public static <T> Iterable<T> iterable(
+            final DuckPrxy duckPrxy,
+            final Class<T> mainInterface,
+            final Iterable<?> source,
+            final Class<?>... interfaces) {
+        final Wrapper<T> wrapper =
+            new Wrapper<T>(duckPrxy, mainInterface, interfaces);
+        return new Iterable<T>() {
+            public Iterator<T> iterator() {
+                return new ProxyIterator<T>(wrapper, source.iterator());
+            }
+        };
+    }
+
+    /**
+     * @param <T>            The class of the main interface.
+     * @param duckPrxy       The duck proxy creating the proxies.
+     * @param mainInterface  The main interface of the proxies.
+     * @param source         The delegates.
+     * @param interfaces     Secondary interfaces of the proxies.
+     * @return A list of proxies of the source's elements, reflecting
+     *         changes of the source. It implements {@link RandomAccess}
+     *         iff the source does.
+     */
+    public static <T> List<T> list(
+            final DuckPrxy duckPrxy,
+            final Class<T> mainInterface,
+            final List<?> source,
+            final Class<?>... interfaces) {
+        final Wrapper<T> wrapper =
+            new Wrapper<T>(duckPrxy, mainInterface, interfaces);
+        return source instanceof RandomAccess ?
+                new RandomAccessProxyList<T>(wrapper, source) :
+                new ProxyList<T>(wrapper, source);
+    }
+
+    /**
+     * @param <T>            The class of the main interface.
+     * @param duckPrxy       The duck proxy creating the proxies.
+     * @param mainInterface  The main interface of the proxies.
+     * @param source         The delegates.
+     * @param interfaces     Secondary interfaces of the proxies.
+     * @return A stream of proxies of the source's elements. It is as lazy
+     *         (and as parallel) as the source.
+     */
+    public static <T> Stream<T> stream(
+            final DuckPrxy duckPrxy,
+            final Class<T> mainInterface,
+            final Stream<?> source,
+            final Class<?>... interfaces) {
+        return source.map(
+                new Wrapper<T>(duckPrxy, mainInterface, interfaces));
+    }
+
+    /**
+     * Wraps delegates with the factory of their class. The factory of the
+     * most recently wrapped class is kept at hand, as the elements of a
+     * sequence are usually of the same class.
+     */
+    private static final class Wrapper<T> implements Function<Object, T> {
+
+        private final DuckPrxy duckPrxy;
+        private final Class<T> mainInterface;
+        private final Class<?>[] interfaces;
+        private final ConcurrentMap<Class<?>, ProxyFactory<T>> factories =
+            new ConcurrentHashMap<Class<?>, ProxyFactory<T>>();
+        private volatile Entry<T> last;
+
+        Wrapper(
+                final DuckPrxy duckPrxy,
+                final Class<T> mainInterface,
+                final Class<?>[] interfaces) {
+            this.duckPrxy = duckPrxy;
+            this.mainInterface = mainInterface;
+            this.interfaces = interfaces.clone();
+        }
+
+        public T apply(final Object delegate) {
+            if (delegate == null) {
+                return null;
+            }
+            final Class<?> delegateClass = delegate.getClass();
+            Entry<T> entry = last;
+            if (entry == null || entry.delegateClass != delegateClass) {
+                ProxyFactory<T> factory = factories.get(delegateClass);
+                if (factory == null) {
+                    factory = duckPrxy.getProxyFactory(
+                            mainInterface, delegateClass, interfaces);
+                    final ProxyFactory<T> raced =
+                        factories.putIfAbsent(delegateClass, factory);
+                    if (raced != null) {
+                        factory = raced;
+                    }
+                }
+                entry = new Entry<T>(delegateClass, factory);
+                last = entry;
+            }
+            return entry.factory.create(delegate);
+        }
+
+    }
+
+    private static final class Entry<T> {
+        final Class<?> delegateClass;
+        final ProxyFactory<T> factory;
+
+        Entry(final Class<?> delegateClass, final ProxyFactory<T> factory) {
+            this.delegateClass = delegateClass;
+            this.factory = factory;
+        }
+    }
+
+    private static final class ProxyIterator<T> implements Iterator<T> {
+
+        private final Wrapper<T> wrapper;
+        private final Iterator<?> source;
+
+        ProxyIterator(final Wrapper<T> wrapper, final Iterator<?> source) {
+            this.wrapper = wrapper;
+            this.source = source;
+        }
+
+        public boolean hasNext() {
+            return source.hasNext();
+        }
+
+        public T next() {
+            return wrapper.apply(source.next());
+        }
+
+    }
+
+    private static class ProxyList<T> extends AbstractList<T> {
+
+        private final Wrapper<T> wrapper;
+        private final List<?> source;
+
+        ProxyList(final Wrapper<T> wrapper, final List<?> source) {
+            this.wrapper = wrapper;
+            this.source = source;
+        }
+
+        @Override
+        public T get(final int index) {
+            return wrapper.apply(source.get(index));
+        }
+
+        @Override
+        public int size() {
+            return source.size();
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new ProxyIterator<T>(wrapper, source.iterator());
+        }
+
+    }
+
+    private static final class RandomAccessProxyList<T>
+    extends ProxyList<T> implements RandomAccess {
+
+        RandomAccessProxyList(final Wrapper<T> wrapper, final List<?> source) {
+            super(wrapper, source);
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+package mrcode.duckprxy;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.DuckPrxyTest.DelegateOne;
+import mrcode.duckprxy.DuckPrxyTest.DelegateThree;
+import mrcode.duckprxy.DuckPrxyTest.DelegateTwo;
+import mrcode.duckprxy.impl.ArgumentMapping;
+
+import org.junit.Test;
+
+public class ArgumentMappingTest extends TestCase {
+
+    public static class PropertyDelegate {
+        @DuckMethod({"get(.*)", "(is)(.*)"})
+        public String get(
+                @DuckArg(value = DuckArgType.GROUP, pos = 1) final String g1,
+                @DuckArg(value = DuckArgType.GROUP, pos = 2) final String g2) {
+            return g1 + g2;
+        }
+    }
+
+    @Test
+    public void testIdentityPassesArgumentsThrough() throws Exception {
+        final ArgumentMapping mapping = ArgumentMapping.compile(
+                "fooTwo",
+                DelegateOne.class.getMethod("fooTwo", String.class),
+                1);
+        assertTrue(mapping.isIdentity());
+        final Object[] args = new Object[] {"abc"};
+        assertSame(args, mapping.map(args));
+    }
+
+    @Test
+    public void testDroppedArguments() throws Exception {
+        final ArgumentMapping mapping = ArgumentMapping.compile(
+                "barTwo", DelegateOne.class.getMethod("barTwo"), 2);
+        assertFalse(mapping.isIdentity());
+        assertEquals(0, mapping.map(new Object[] {4, 5}).length);
+    }
+
+    @Test
+    public void testNameAndArgs() throws Exception {
+        final Method barMethod = DelegateTwo.class.getMethod(
+                "barMethod", String.class, Object[].class);
+        final ArgumentMapping mapping =
+            ArgumentMapping.compile("bar", barMethod, 2);
+        final Object[] args = new Object[] {2, 3};
+        final Object[] delegateArgs = mapping.map(args);
+        assertEquals(2, delegateArgs.length);
+        assertEquals("bar", delegateArgs[0]);
+        assertSame(args, delegateArgs[1]);
+    }
+
+    @Test
+    public void testArgN() throws Exception {
+        final Method bazTwo = DelegateTwo.class.getMethod(
+                "bazTwo", String.class, String.class);
+        final ArgumentMapping mapping =
+            ArgumentMapping.compile("bazTwo", bazTwo, 2);
+        assertEquals(
+                Arrays.asList(new Object[] {"ABC", "DEF"}),
+                Arrays.asList(mapping.map(new Object[] {"DEF", "ABC"})));
+        assertEquals(
+                Arrays.asList(new Object[] {null, "DEF"}),
+                Arrays.asList(ArgumentMapping.compile("bazTwo", bazTwo, 1)
+                        .map(new Object[] {"DEF"})));
+    }
+
+    @Test
+    public void testGroup() throws Exception {
+        final Method get = PropertyDelegate.class.getMethod(
+                "get", String.class, String.class);
+        assertEquals(
+                Arrays.asList(new Object[] {"Name", null}),
+                Arrays.asList(ArgumentMapping.compile("getName", get, 0)
+                        .map(null)));
+        assertEquals(
+                Arrays.asList(new Object[] {"is", "Empty"}),
+                Arrays.asList(ArgumentMapping.compile("isEmpty", get, 0)
+                        .map(null)));
+        assertEquals(
+                Arrays.asList(new Object[] {null, null}),
+                Arrays.asList(ArgumentMapping.compile("size", get, 0)
+                        .map(null)));
+        // Selected by its name, the patterns still provide the groups.
+        assertEquals(
+                Arrays.asList(new Object[] {"", null}),
+                Arrays.asList(ArgumentMapping.compile("get", get, 0)
+                        .map(null)));
+    }
+
+    @Test
+    public void testNameWithoutArguments() throws Exception {
+        final ArgumentMapping mapping = ArgumentMapping.compile(
+                "baz",
+                DelegateThree.class.getMethod("defaultMethod", String.class),
+                0);
+        assertEquals(
+                Arrays.asList(new Object[] {"baz"}),
+                Arrays.asList(mapping.map(null)));
+    }
+
+}
@@ -0,0 +1,102 @@
+package mrcode.duckprxy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.ProxyClassDefinition;
+
+import org.junit.Test;
+
+public class ClassUnloadingTest extends TestCase {
+
+    private static final int ROUNDS = 500;
+
+    @Test
+    public void testProxyClassesAreCollectedWithDelegateClass()
+    throws Exception {
+        final byte[] bytecode = PluginClassLoader.readPluginDelegate();
+        final JavassistDuckPrxy duckPrxy = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":",
+                ProxyClassDefinition.DELEGATE_CHILD_CLASS_LOADER);
+
+        final List<WeakReference<ClassLoader>> loaders =
+            new ArrayList<WeakReference<ClassLoader>>();
+        for (int i = 0; i < ROUNDS / 10; i++) {
+            loaders.add(runPlugin(duckPrxy, bytecode));
+        }
+        collectGarbage();
+        final long metaspaceBefore = usedMetaspace();
+        final long unloadedBefore = ManagementFactory.getClassLoadingMXBean()
+            .getUnloadedClassCount();
+        for (int i = 0; i < ROUNDS; i++) {
+            loaders.add(runPlugin(duckPrxy, bytecode));
+        }
+        collectGarbage();
+        final long metaspaceAfter = usedMetaspace();
+        final long unloadedAfter = ManagementFactory.getClassLoadingMXBean()
+            .getUnloadedClassCount();
+
+        int alive = 0;
+        for (final WeakReference<ClassLoader> loader : loaders) {
+            if (loader.get() != null) {
+                alive++;
+            }
+        }
+        assertEquals(0, alive);
+        // Each round defines the delegate class, the proxy class and its
+        // factory. The collector may keep some of them for a later cycle.
+        assertTrue(
+                (unloadedAfter - unloadedBefore) + " classes unloaded",
+                unloadedAfter - unloadedBefore >= 2 * ROUNDS);
+        // Keeping the classes of all rounds takes about 3 MB. The tolerance
+        // allows for the metadata the VM keeps (about 0.5 MB on HotSpot).
+        assertTrue(
+                "Metaspace grew by " + (metaspaceAfter - metaspaceBefore),
+                metaspaceAfter - metaspaceBefore < 1536 * 1024);
+        assertEquals(ROUNDS + ROUNDS / 10,
+                duckPrxy.getProxyClassCache().getMissCount());
+        assertEquals(0, duckPrxy.getProxyClassCache().size());
+    }
+
+    private static WeakReference<ClassLoader> runPlugin(
+            final DuckPrxy duckPrxy,
+            final byte[] bytecode)
+    throws Exception {
+        final ClassLoader loader = new PluginClassLoader(bytecode);
+        final Object delegate = loader.loadClass(
+                PluginDelegate.class.getName()).getDeclaredConstructor()
+                .newInstance();
+        final MyInterfaceOne proxy =
+            duckPrxy.makeProxy(MyInterfaceOne.class, delegate);
+        assertEquals(42, proxy.baz());
+        assertNotSame(PluginDelegate.class, delegate.getClass());
+        return new WeakReference<ClassLoader>(loader);
+    }
+
+    /**
+     * @return The used bytes of the Metaspace memory pool, or 0 if there
+     *         is no such pool.
+     */
+    private static long usedMetaspace() {
+        for (final MemoryPoolMXBean pool :
+            ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return 0;
+    }
+
+    private static void collectGarbage() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+    }
+
+}
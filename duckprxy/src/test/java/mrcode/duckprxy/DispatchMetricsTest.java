@@ -0,0 +1,224 @@
+package mrcode.duckprxy;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.impl.DuckPrxyImpl;
+import mrcode.duckprxy.impl.DuckPrxyPreCompImpl;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.MethodHandleDuckPrxy;
+import mrcode.duckprxy.impl.ProxyClassDefinition;
+import mrcode.duckprxy.util.DispatchStatistics;
+
+import org.junit.Test;
+
+public class DispatchMetricsTest extends TestCase {
+
+    public interface Metered {
+        int exact(int x);
+        int nameOnly(int x);
+        int patternMethod(int x);
+        int subDelegated(int x);
+    }
+
+    public interface Missing {
+        int missing();
+    }
+
+    public static class MeteredDelegate {
+        private final MeteredSubDelegate subDelegate = new MeteredSubDelegate();
+
+        public int exact(final int x) {
+            return x;
+        }
+
+        public int nameOnly() {
+            return 2;
+        }
+
+        @DuckMethod("pattern.*")
+        public int byPattern(final int x) {
+            return x + 3;
+        }
+
+        @DuckMethod(subdelegate = true)
+        public MeteredSubDelegate getSubDelegate() {
+            return subDelegate;
+        }
+    }
+
+    public static class MeteredSubDelegate {
+        public int subDelegated(final int x) {
+            return x + 4;
+        }
+    }
+
+    public static class FallbackDelegate {
+        @DuckMethod(fallback = true)
+        public int fallback() {
+            return 5;
+        }
+    }
+
+    @Test
+    public void testPrxyImplMetrics() {
+        final DispatchStatistics statistics = new DispatchStatistics(true);
+        testMetrics(new DuckPrxyImpl(statistics), statistics);
+    }
+
+    @Test
+    public void testPrxyPreCompImplMetrics() {
+        final DispatchStatistics statistics = new DispatchStatistics(true);
+        testMetrics(new DuckPrxyPreCompImpl(statistics), statistics);
+    }
+
+    /**
+     * Engines with and without metrics share the default class name
+     * prefix, but not their proxy classes.
+     */
+    @Test
+    public void testJavassistDefaultPrefixWithAndWithoutMetrics()
+    throws Exception {
+        final DispatchStatistics statistics = new DispatchStatistics(false);
+        final DispatchStatistics other = new DispatchStatistics(false);
+        final Metered plain = new JavassistDuckPrxy()
+            .makeProxy(Metered.class, new MeteredDelegate());
+        final Metered metered = new JavassistDuckPrxy(statistics)
+            .makeProxy(Metered.class, new MeteredDelegate());
+        final Metered otherMetered = new JavassistDuckPrxy(other)
+            .makeProxy(Metered.class, new MeteredDelegate());
+        assertEquals(1, plain.exact(1));
+        assertEquals(1, metered.exact(1));
+        assertEquals(1, otherMetered.exact(1));
+        assertEquals(1, otherMetered.exact(1));
+        final Method exact = Metered.class.getMethod("exact", int.class);
+        assertEquals(1, statistics.getStatistics(
+                MeteredDelegate.class, exact).getInvocationCount());
+        assertEquals(2, other.getStatistics(
+                MeteredDelegate.class, exact).getInvocationCount());
+    }
+
+    @Test
+    public void testJavassistPrxyMetrics() {
+        final DispatchStatistics statistics = new DispatchStatistics(true);
+        testMetrics(
+                new JavassistDuckPrxy(
+                        "duckprxy" + System.currentTimeMillis() + ":",
+                        ProxyClassDefinition.CONTEXT_CLASS_LOADER,
+                        statistics),
+                statistics);
+    }
+
+    @Test
+    public void testJavassistSourcePrxyMetrics() {
+        final DispatchStatistics statistics = new DispatchStatistics(true);
+        testMetrics(
+                new JavassistDuckPrxy(
+                        "duckprxy" + System.currentTimeMillis() + ":",
+                        ProxyClassDefinition.CONTEXT_CLASS_LOADER,
+                        statistics) {
+                    @Override
+                    protected boolean isCompilingSource() {
+                        return true;
+                    }
+                },
+                statistics);
+    }
+
+    @Test
+    public void testMethodHandlePrxyMetrics() {
+        final DispatchStatistics statistics = new DispatchStatistics(true);
+        testMetrics(new MethodHandleDuckPrxy(statistics), statistics);
+    }
+
+    @Test
+    public void testUntimedMetrics() throws Exception {
+        final DispatchStatistics statistics = new DispatchStatistics();
+        final Metered metered = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":",
+                ProxyClassDefinition.CONTEXT_CLASS_LOADER,
+                statistics)
+            .makeProxy(Metered.class, new MeteredDelegate());
+        metered.exact(1);
+        metered.exact(2);
+        final DispatchStatistics.Statistics exact = statistics.getStatistics(
+                MeteredDelegate.class,
+                Metered.class.getMethod("exact", int.class));
+        assertEquals(2, exact.getInvocationCount());
+        assertNull(exact.getLatencyHistogram());
+    }
+
+    @Test
+    public void testJavassistPrxyWithoutMetricsIsNotInstrumented() {
+        final Metered metered = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":")
+            .makeProxy(Metered.class, new MeteredDelegate());
+        for (final Field field : metered.getClass().getDeclaredFields()) {
+            assertEquals("delegate", field.getName());
+        }
+    }
+
+    public void testMetrics(
+            final DuckPrxy duckPrxy,
+            final DispatchStatistics statistics) {
+        final Metered metered =
+            duckPrxy.makeProxy(Metered.class, new MeteredDelegate());
+        assertEquals(1, metered.exact(1));
+        assertEquals(1, metered.exact(1));
+        assertEquals(2, metered.nameOnly(1));
+        assertEquals(4, metered.patternMethod(1));
+        assertEquals(5, metered.subDelegated(1));
+        final Missing fallback =
+            duckPrxy.makeProxy(Missing.class, new FallbackDelegate());
+        assertEquals(5, fallback.missing());
+        try {
+            duckPrxy.makeProxy(Missing.class, new MeteredSubDelegate())
+                .missing();
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        try {
+            assertStatistics(statistics, MeteredDelegate.class,
+                    Metered.class.getMethod("exact", int.class),
+                    DispatchStrategy.EXACT, 2);
+            assertStatistics(statistics, MeteredDelegate.class,
+                    Metered.class.getMethod("nameOnly", int.class),
+                    DispatchStrategy.NAME_ONLY, 1);
+            assertStatistics(statistics, MeteredDelegate.class,
+                    Metered.class.getMethod("patternMethod", int.class),
+                    DispatchStrategy.PATTERN, 1);
+            assertStatistics(statistics, MeteredDelegate.class,
+                    Metered.class.getMethod("subDelegated", int.class),
+                    DispatchStrategy.SUB_DELEGATE, 1);
+            // The same method is counted apart per delegate class.
+            assertStatistics(statistics, FallbackDelegate.class,
+                    Missing.class.getMethod("missing"),
+                    DispatchStrategy.FALLBACK, 1);
+            assertStatistics(statistics, MeteredSubDelegate.class,
+                    Missing.class.getMethod("missing"),
+                    DispatchStrategy.MISSING, 1);
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void assertStatistics(
+            final DispatchStatistics statistics,
+            final Class<?> delegateClass,
+            final java.lang.reflect.Method method,
+            final DispatchStrategy strategy,
+            final long count) {
+        final DispatchStatistics.Statistics methodStatistics =
+            statistics.getStatistics(delegateClass, method);
+        assertEquals(strategy, methodStatistics.getStrategy());
+        assertEquals(count, methodStatistics.getInvocationCount());
+        long histogramCount = 0;
+        for (final long bucket : methodStatistics.getLatencyHistogram()) {
+            histogramCount += bucket;
+        }
+        assertEquals(count, histogramCount);
+    }
+
+}
@@ -0,0 +1,142 @@
+package mrcode.duckprxy;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.DuckPrxyTest.DelegateOne;
+import mrcode.duckprxy.DuckPrxyTest.DelegateFour;
+import mrcode.duckprxy.impl.DelegateCall;
+import mrcode.duckprxy.impl.DispatchPlan;
+import mrcode.duckprxy.impl.DispatchTable;
+
+import org.junit.Test;
+
+public class DispatchPlanTest extends TestCase {
+
+    @Test
+    public void testPlanIsSharedPerClass() {
+        assertSame(
+                DispatchPlan.forClass(DelegateOne.class),
+                DispatchPlan.forClass(DelegateOne.class));
+        assertNotSame(
+                DispatchPlan.forClass(DelegateOne.class),
+                DispatchPlan.forClass(DelegateFour.class));
+    }
+
+    @Test
+    public void testMethodMapIsSharedPerInterfaceSet() {
+        final DispatchPlan plan = DispatchPlan.forClass(DelegateOne.class);
+        final Map<Method, DelegateCall> methodMap = plan.getMethodMap(
+                new Class<?>[] {MyInterfaceOne.class, MyInterfaceTwo.class});
+        assertSame(methodMap, plan.getMethodMap(
+                new Class<?>[] {MyInterfaceOne.class, MyInterfaceTwo.class}));
+        assertNotSame(methodMap, plan.getMethodMap(
+                new Class<?>[] {MyInterfaceOne.class}));
+    }
+
+    @Test
+    public void testDispatchTableIsSharedPerInterfaceSet() throws Exception {
+        final DispatchPlan plan = DispatchPlan.forClass(DelegateOne.class);
+        final Class<?>[] interfaces =
+            new Class<?>[] {MyInterfaceOne.class, MyInterfaceTwo.class};
+        final DispatchTable dispatchTable = plan.getDispatchTable(interfaces);
+        assertSame(dispatchTable, plan.getDispatchTable(
+                new Class<?>[] {MyInterfaceOne.class, MyInterfaceTwo.class}));
+        assertNotSame(dispatchTable, plan.getDispatchTable(
+                new Class<?>[] {MyInterfaceOne.class}));
+        assertSame(plan, dispatchTable.getPlan());
+
+        final Map<Method, DelegateCall> methodMap =
+            plan.getMethodMap(interfaces);
+        // Every getMethods call returns new method objects, so each
+        // round would add new keys to the identity table, but it stops
+        // growing at one key per method.
+        for (int i = 0; i < 10; i++) {
+            for (final Class<?> iface : interfaces) {
+                for (final Method method : iface.getMethods()) {
+                    final DelegateCall delegateCall =
+                        dispatchTable.get(method);
+                    assertSame(methodMap.get(method), delegateCall);
+                    assertSame(delegateCall, dispatchTable.get(method));
+                }
+            }
+        }
+        final Method toString = Object.class.getMethod("toString");
+        assertSame(
+                plan.getDelegateCall(toString),
+                dispatchTable.get(toString));
+        assertTrue(
+                dispatchTable.size() + " methods",
+                dispatchTable.size() <=
+                    methodMap.size() + Object.class.getMethods().length);
+    }
+
+    /**
+     * A full identity table answers new method objects from the method
+     * map, without growing and without taking its lock.
+     */
+    @Test
+    public void testFullDispatchTable() throws Exception {
+        final DispatchPlan plan = DispatchPlan.forClass(DelegateOne.class);
+        final Class<?>[] interfaces = new Class<?>[] {MyInterfaceTwo.class};
+        final DispatchTable dispatchTable = plan.getDispatchTable(interfaces);
+        final Map<Method, DelegateCall> methodMap =
+            plan.getMethodMap(interfaces);
+        final int maxSize =
+            methodMap.size() + Object.class.getMethods().length;
+        while (dispatchTable.size() < maxSize) {
+            dispatchTable.get(MyInterfaceTwo.class.getMethods()[0]);
+        }
+        final Method[] methods = MyInterfaceTwo.class.getMethods();
+        final DelegateCall[] delegateCalls = new DelegateCall[methods.length];
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < methods.length; i++) {
+                    delegateCalls[i] = dispatchTable.get(methods[i]);
+                }
+            }
+        };
+        synchronized (dispatchTable) {
+            thread.start();
+            thread.join(10000);
+            assertFalse("blocked on the lock", thread.isAlive());
+        }
+        for (int i = 0; i < methods.length; i++) {
+            assertSame(methodMap.get(methods[i]), delegateCalls[i]);
+        }
+        assertEquals(maxSize, dispatchTable.size());
+    }
+
+    @Test
+    public void testSubDelegateGetter() throws Exception {
+        assertNull(DispatchPlan.forClass(DelegateOne.class)
+                .getSubDelegateGetter());
+        assertEquals(
+                DelegateFour.class.getMethod("getDelegateThree"),
+                DispatchPlan.forClass(DelegateFour.class)
+                .getSubDelegateGetter());
+    }
+
+    @Test
+    public void testDelegateCallIsMemoized() throws Exception {
+        final DispatchPlan plan = DispatchPlan.forClass(DelegateOne.class);
+        final Method baz = MyInterfaceOne.class.getMethod("baz");
+        final DelegateCall delegateCall = plan.getDelegateCall(baz);
+        assertEquals(
+                DelegateOne.class.getMethod("baz"),
+                delegateCall.getDelegateMethod());
+        assertSame(delegateCall, plan.getDelegateCall(baz));
+    }
+
+    @Test
+    public void testSubDelegateCallIsMemoized() throws Exception {
+        final DispatchPlan plan = DispatchPlan.forClass(DelegateFour.class);
+        final Method bar =
+            MyInterfaceOne.class.getMethod("bar", int.class, int.class);
+        assertTrue(plan.getDelegateCall(bar).isSubDelegate());
+        assertSame(plan.getDelegateCall(bar), plan.getDelegateCall(bar));
+    }
+
+}
@@ -1,15 +1,23 @@
 package mrcode.duckprxy;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import javassist.ClassPool;
 import junit.framework.TestCase;
 import mrcode.duckprxy.impl.DuckPrxyImpl;
 import mrcode.duckprxy.impl.DuckPrxyPreCompImpl;
 import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.MethodHandleDuckPrxy;
+import mrcode.duckprxy.impl.MethodUtils.MethodRetrieveStrategy;
 
 import org.junit.Test;
 
@@ -104,6 +112,11 @@ public class DuckPrxyTest extends TestCase{
         testPrxy(getDuckPrxyJavassist());
     }
     
+    @Test
+    public void testMethodHandlePrxy() {
+        testPrxy(getDuckMethodHandlePrxy());
+    }
+    
     @Test
     public void testPrxyImplMissingMethod() {
         testPrxyMissingMethod(getDuckPrxy());
@@ -119,6 +132,11 @@ public class DuckPrxyTest extends TestCase{
         testPrxyMissingMethod(getDuckPrxyJavassist());
     }
     
+    @Test
+    public void testMethodHandlePrxyMissingMethod() {
+        testPrxyMissingMethod(getDuckMethodHandlePrxy());
+    }
+    
     @Test
     public void testPrxyWithPatterns() {
         testPrxyWithPatterns(getDuckPrxy());
@@ -134,6 +152,11 @@ public class DuckPrxyTest extends TestCase{
         testPrxyWithPatterns(getDuckPrxyJavassist());
     }
     
+    @Test
+    public void testMethodHandlePrxyWithPatterns() {
+        testPrxyWithPatterns(getDuckMethodHandlePrxy());
+    }
+    
     @Test
     public void testPrxyWithFallback() {
         testPrxyWithFallback(getDuckPrxy());
@@ -149,6 +172,11 @@ public class DuckPrxyTest extends TestCase{
         testPrxyWithFallback(getDuckPrxyJavassist());
     }
     
+    @Test
+    public void testMethodHandlePrxyWithFallback() {
+        testPrxyWithFallback(getDuckMethodHandlePrxy());
+    }
+    
     @Test
     public void testPrxyWithSubdelegate() {
         testPrxyWithSubdelegate(getDuckPrxy());
@@ -164,6 +192,24 @@ public class DuckPrxyTest extends TestCase{
         testPrxyWithSubdelegate(getDuckPrxyJavassist());
     }
     
+    @Test
+    public void testMethodHandlePrxyWithSubdelegate() {
+        testPrxyWithSubdelegate(getDuckMethodHandlePrxy());
+    }
+    
+    @Test
+    public void testMethodHandlePrxyWithAnonymousDelegate() {
+        final Object delegate = new Object() {
+            @SuppressWarnings("unused")
+            public int baz() {
+                return 42;
+            }
+        };
+        final MyInterfaceOne proxy = getDuckMethodHandlePrxy().makeProxy(
+                MyInterfaceOne.class, delegate);
+        assertEquals(42, proxy.baz());
+    }
+    
     public void testPrxy(DuckPrxy duckPrxy) {
         final DelegateOne delegate = new DelegateOne();
         final MyInterfaceOne proxy = duckPrxy.makeProxy(
@@ -232,6 +278,93 @@ public class DuckPrxyTest extends TestCase{
                 delegate.getCallRecord());
     }
     
+    @Test
+    public void testJavassistSourcePrxy() {
+        testPrxy(getDuckPrxyJavassistSource());
+        testPrxyMissingMethod(getDuckPrxyJavassistSource());
+        testPrxyWithPatterns(getDuckPrxyJavassistSource());
+        testPrxyWithFallback(getDuckPrxyJavassistSource());
+        testPrxyWithSubdelegate(getDuckPrxyJavassistSource());
+    }
+
+    /**
+     * Overriding a source hook switches to the source path, where the
+     * override takes effect.
+     */
+    @Test
+    public void testJavassistMethodDelegateHook() {
+        final List<String> resolved = new ArrayList<String>();
+        final DuckPrxy duckPrxy = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":hook:") {
+            @Override
+            protected Method getMethodDelegate(
+                    final Method method,
+                    final Class<?> delegateClass,
+                    final List<MethodRetrieveStrategy> strategies,
+                    final Method subDelegateGetter,
+                    final StringBuilder delegatePath) {
+                resolved.add(method.getName());
+                return super.getMethodDelegate(
+                        method,
+                        delegateClass,
+                        strategies,
+                        subDelegateGetter,
+                        delegatePath);
+            }
+        };
+        testPrxy(duckPrxy);
+        testPrxyWithSubdelegate(duckPrxy);
+        assertTrue(resolved.contains("baz"));
+    }
+
+    /**
+     * Exposes the class pools of the {@link JavassistDuckPrxy}.
+     */
+    private static class ClassPoolPrxy extends JavassistDuckPrxy {
+        @Override
+        protected ClassPool getClassPool(final Class<?> delegateClass) {
+            return super.getClassPool(delegateClass);
+        }
+    }
+
+    /**
+     * The class pool reads the class files of a plugin class loader
+     * before those of the system class path.
+     */
+    @Test
+    public void testJavassistClassPoolPrefersDelegateLoader()
+    throws Exception {
+        final File directory = new File(
+                System.getProperty("java.io.tmpdir"),
+                "duckprxy-classpool-" + System.nanoTime());
+        final File classFile = new File(
+                directory,
+                PluginDelegate.class.getName().replace('.', '/') + ".class");
+        classFile.getParentFile().mkdirs();
+        final byte[] bytecode = PluginClassLoader.readPluginDelegate();
+        final OutputStream out = new FileOutputStream(classFile);
+        try {
+            out.write(bytecode);
+        } finally {
+            out.close();
+        }
+        classFile.deleteOnExit();
+        final ClassLoader loader =
+            new PluginClassLoader(bytecode, directory.toURI().toURL()) {
+                @Override
+                public URL getResource(final String name) {
+                    final URL url = findResource(name);
+                    return url == null ? super.getResource(name) : url;
+                }
+            };
+        final Class<?> delegateClass =
+            loader.loadClass(PluginDelegate.class.getName());
+        assertEquals(
+                classFile.toURI().toURL().toString(),
+                new ClassPoolPrxy().getClassPool(delegateClass)
+                .find(delegateClass.getName()).toString());
+    }
+
     public void testPrxyWithFallback(DuckPrxy duckPrxy) {
         final DelegateThree delegate = new DelegateThree();
         final MyInterfaceOne proxy = duckPrxy.makeProxy(
@@ -257,7 +390,25 @@ public class DuckPrxyTest extends TestCase{
         return new JavassistDuckPrxy("duckprxy" + System.currentTimeMillis() + ":");
     }
 
+    /**
+     * @return A {@link JavassistDuckPrxy} compiling the generated methods
+     *         from source instead of emitting their bytecode.
+     */
+    public DuckPrxy getDuckPrxyJavassistSource() {
+        return new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":source:") {
+            @Override
+            protected boolean isCompilingSource() {
+                return true;
+            }
+        };
+    }
+
     public DuckPrxy getDuckPreCompPrxy() {
         return new DuckPrxyPreCompImpl();
     }
+
+    public DuckPrxy getDuckMethodHandlePrxy() {
+        return new MethodHandleDuckPrxy();
+    }
 }
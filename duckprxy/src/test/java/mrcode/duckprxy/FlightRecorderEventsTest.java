@@ -0,0 +1,95 @@
+package mrcode.duckprxy;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+import mrcode.duckprxy.impl.DuckPrxyImpl;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.MethodHandleDuckPrxy;
+
+import org.junit.Test;
+
+public class FlightRecorderEventsTest extends TestCase {
+
+    public interface Recorded {
+        int present(int x);
+        int absent();
+    }
+
+    public static class RecordedDelegate {
+        public int present(final int x) {
+            return x;
+        }
+    }
+
+    /** A fresh class, so its dispatch plan is built while recording. */
+    public static class PlannedDelegate {
+        public int present(final int x) {
+            return x;
+        }
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        final Recording recording = new Recording();
+        recording.enable("mrcode.duckprxy.ProxyClassGeneration");
+        recording.enable("mrcode.duckprxy.ProxyCreation");
+        recording.enable("mrcode.duckprxy.DispatchPlan");
+        recording.enable("mrcode.duckprxy.MissingMethod");
+        recording.start();
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new JavassistDuckPrxy(
+                        "duckprxy" + System.currentTimeMillis() + ":"),
+                new MethodHandleDuckPrxy()}) {
+            final Recorded recorded = duckPrxy.makeProxy(
+                    Recorded.class, new RecordedDelegate());
+            assertEquals(1, recorded.present(1));
+            try {
+                recorded.absent();
+                fail("Expected exception");
+            } catch (RuntimeException e) {
+                // expected
+            }
+        }
+        new DuckPrxyImpl().makeProxy(Recorded.class, new PlannedDelegate())
+            .present(1);
+        recording.stop();
+        final File file = File.createTempFile("duckprxy", ".jfr");
+        try {
+            recording.dump(file.toPath());
+            final List<RecordedEvent> events =
+                RecordingFile.readAllEvents(file.toPath());
+            final Set<String> names = new HashSet<String>();
+            int creations = 0;
+            int missing = 0;
+            for (final RecordedEvent event : events) {
+                final String name = event.getEventType().getName();
+                names.add(name);
+                if (name.equals("mrcode.duckprxy.ProxyCreation")) {
+                    creations++;
+                } else if (name.equals("mrcode.duckprxy.MissingMethod")) {
+                    assertEquals("absent", event.getString("methodName"));
+                    missing++;
+                } else if (name.equals(
+                        "mrcode.duckprxy.ProxyClassGeneration")) {
+                    assertTrue(event.getInt("methodCount") >= 2);
+                }
+            }
+            assertTrue(names.contains("mrcode.duckprxy.ProxyClassGeneration"));
+            assertTrue(names.contains("mrcode.duckprxy.DispatchPlan"));
+            assertEquals(4, creations);
+            assertEquals(3, missing);
+        } finally {
+            recording.close();
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package mrcode.duckprxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.MethodHandleDuckPrxy;
+
+import org.junit.Test;
+
+/**
+ * Checks that C2 inlines a call through a proxy generated by the
+ * {@link JavassistDuckPrxy} or the {@link MethodHandleDuckPrxy}
+ * completely, i.e., the proxy method and the delegate method, into the
+ * caller. The {@link Driver} runs in a child JVM with
+ * {@code -XX:+PrintInlining}, whose output is checked.
+ */
+public class InliningTest extends TestCase {
+
+    public interface Adder {
+        int add(int a, int b);
+    }
+
+    public static class AdderDelegate {
+        public int add(final int a, final int b) {
+            return a + b;
+        }
+    }
+
+    /**
+     * Calls a proxy of the engine given by its class name in a hot loop.
+     */
+    public static class Driver {
+
+        public static void main(final String[] args) throws Exception {
+            final DuckPrxy duckPrxy = (DuckPrxy) Class.forName(args[0])
+                .getDeclaredConstructor().newInstance();
+            final Adder adder =
+                duckPrxy.makeProxy(Adder.class, new AdderDelegate());
+            long sum = 0;
+            for (int i = 0; i < 20000; i++) {
+                sum += loop(adder, 100);
+            }
+            System.out.println("sum " + sum);
+        }
+
+        static int loop(final Adder adder, final int n) {
+            int sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum = adder.add(sum, i);
+            }
+            return sum;
+        }
+
+    }
+
+    @Test
+    public void testProxiedCallIsInlined() throws Exception {
+        assertInlined(JavassistDuckPrxy.class, "+" + Adder.class.getName());
+    }
+
+    @Test
+    public void testMethodHandleCallIsInlined() throws Exception {
+        assertInlined(
+                MethodHandleDuckPrxy.class,
+                "$" + AdderDelegate.class.getSimpleName() + "$MethodHandlePrxy");
+    }
+
+    /**
+     * @param engine      The class of the engine.
+     * @param proxyClass  A part of the name of the proxy class.
+     */
+    private static void assertInlined(
+            final Class<? extends DuckPrxy> engine,
+            final String proxyClass)
+    throws Exception {
+        if (!System.getProperty("java.vm.name").contains("Server VM")) {
+            // PrintInlining and C2 are features of HotSpot's server VM.
+            return;
+        }
+        final List<String> command = new ArrayList<String>(Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" +
+                    File.separator + "java",
+                "--add-opens", "java.base/java.lang=ALL-UNNAMED",
+                "-XX:+UnlockDiagnosticVMOptions",
+                "-XX:+PrintInlining",
+                "-XX:-TieredCompilation",
+                "-Xbatch",
+                "-cp", System.getProperty("java.class.path"),
+                Driver.class.getName(),
+                engine.getName()));
+        final Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .start();
+        final String output = read(process.getInputStream());
+        assertEquals(output, 0, process.waitFor());
+
+        final String delegateMethod =
+            AdderDelegate.class.getName() + "::add ";
+        boolean proxyInlined = false;
+        boolean delegateInlined = false;
+        for (final String line : output.split("\\r?\\n")) {
+            if (line.contains(proxyClass) && line.contains("::add ")) {
+                assertTrue(line, line.contains("inline (hot)"));
+                proxyInlined = true;
+            } else if (line.contains(delegateMethod)) {
+                assertTrue(line, line.contains("inline (hot)"));
+                delegateInlined = true;
+            }
+        }
+        assertTrue(output, proxyInlined);
+        assertTrue(output, delegateInlined);
+    }
+
+    private static String read(final InputStream in) throws Exception {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toString();
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package mrcode.duckprxy;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.DuckPrxyTest.DelegateOne;
+import mrcode.duckprxy.impl.MethodIndex;
+
+import org.junit.Test;
+
+public class MethodIndexTest extends TestCase {
+
+    public static class Base {
+        public Object get() {
+            return null;
+        }
+    }
+
+    public static class Covariant extends Base {
+        @Override
+        public String get() {
+            return "";
+        }
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        final MethodIndex index = MethodIndex.forClass(DelegateOne.class);
+        assertEquals(
+                DelegateOne.class.getMethod("fooTwo", String.class),
+                index.getMethod("fooTwo", new Class<?>[] {String.class}));
+        assertEquals(
+                DelegateOne.class.getMethod("foo"),
+                index.getMethod("foo", null));
+        assertEquals(
+                DelegateOne.class.getMethod("foo"),
+                index.getMethod("foo", new Class<?>[0]));
+    }
+
+    @Test
+    public void testMissReturnsNull() {
+        final MethodIndex index = MethodIndex.forClass(DelegateOne.class);
+        assertNull(index.getMethod("noSuchMethod", null));
+        assertNull(index.getMethod("fooTwo", null));
+        assertNull(index.getMethod("fooTwo", new Class<?>[] {int.class}));
+    }
+
+    @Test
+    public void testMostSpecificReturnType() throws Exception {
+        assertEquals(
+                Covariant.class.getMethod("get"),
+                MethodIndex.forClass(Covariant.class).getMethod("get", null));
+        assertEquals(
+                String.class,
+                MethodIndex.forClass(Covariant.class)
+                .getMethod("get", null).getReturnType());
+    }
+
+}
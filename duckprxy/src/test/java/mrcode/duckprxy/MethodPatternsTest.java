@@ -0,0 +1,144 @@
+package mrcode.duckprxy;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.impl.DuckPrxyImpl;
+import mrcode.duckprxy.impl.DuckPrxyPreCompImpl;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.MethodHandleDuckPrxy;
+import mrcode.duckprxy.impl.MethodPatterns;
+
+import org.junit.Test;
+
+public class MethodPatternsTest extends TestCase {
+
+    public static class Overlapping {
+        @DuckMethod("get.*")
+        public String getter() {
+            return "getter";
+        }
+
+        @DuckMethod(value = "getName", priority = 1)
+        public String name() {
+            return "name";
+        }
+
+        @DuckMethod({"(s)et(.*)", "is.*"})
+        public String anything() {
+            return "anything";
+        }
+
+        @DuckMethod("set.*")
+        public String setter() {
+            return "setter";
+        }
+    }
+
+    public static class BackReference {
+        @DuckMethod("(.)\\1.*")
+        public String doubled() {
+            return "doubled";
+        }
+
+        @DuckMethod(".*")
+        public String other() {
+            return "other";
+        }
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+        final MethodPatterns patterns =
+            MethodPatterns.forClass(Overlapping.class);
+        assertEquals(
+                Overlapping.class.getMethod("name"),
+                patterns.getMethod("getName"));
+        assertEquals(
+                Overlapping.class.getMethod("getter"),
+                patterns.getMethod("getValue"));
+    }
+
+    @Test
+    public void testTiesAreBrokenByMethodName() throws Exception {
+        final MethodPatterns patterns =
+            MethodPatterns.forClass(Overlapping.class);
+        assertEquals(
+                Overlapping.class.getMethod("anything"),
+                patterns.getMethod("setValue"));
+        assertEquals(
+                Overlapping.class.getMethod("anything"),
+                patterns.getMethod("isEmpty"));
+    }
+
+    @Test
+    public void testMiss() {
+        final MethodPatterns patterns =
+            MethodPatterns.forClass(Overlapping.class);
+        assertNull(patterns.getMethod("foo"));
+        assertNull(patterns.getMethod("foo"));
+    }
+
+    @Test
+    public void testBackReference() throws Exception {
+        final MethodPatterns patterns =
+            MethodPatterns.forClass(BackReference.class);
+        assertEquals(
+                BackReference.class.getMethod("doubled"),
+                patterns.getMethod("ffoo"));
+        assertEquals(
+                BackReference.class.getMethod("other"),
+                patterns.getMethod("foo"));
+    }
+
+    @Test
+    public void testProxiesUsePriority() {
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new DuckPrxyPreCompImpl(),
+                new JavassistDuckPrxy(
+                        "duckprxy" + System.currentTimeMillis() + ":"),
+                new MethodHandleDuckPrxy()}) {
+            final Named proxy =
+                duckPrxy.makeProxy(Named.class, new Overlapping());
+            assertEquals("name", proxy.getName());
+            assertEquals("getter", proxy.getValue());
+            assertEquals("anything", proxy.setValue());
+        }
+    }
+
+    @Test
+    public void testGroupArgument() {
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new DuckPrxyPreCompImpl(),
+                new JavassistDuckPrxy(
+                        "duckprxy" + System.currentTimeMillis() + ":"),
+                new MethodHandleDuckPrxy()}) {
+            final Properties proxy = duckPrxy.makeProxy(
+                    Properties.class, new PropertiesDelegate());
+            assertEquals("Name", proxy.getName());
+            assertEquals("Size", proxy.getSize());
+            assertEquals("null", proxy.isEmpty());
+        }
+    }
+
+    public interface Properties {
+        String getName();
+        String getSize();
+        String isEmpty();
+    }
+
+    public static class PropertiesDelegate {
+        @DuckMethod({"get(.*)", "is.*"})
+        public String property(
+                @DuckArg(value = DuckArgType.GROUP, pos = 1) final String p) {
+            return String.valueOf(p);
+        }
+    }
+
+    public interface Named {
+        String getName();
+        String getValue();
+        String setValue();
+    }
+
+}
@@ -0,0 +1,62 @@
+package mrcode.duckprxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Loads {@link PluginDelegate} itself instead of delegating to its
+ * parent, like a plugin class loader would do. Other classes and
+ * resources are looked up in the parent first and then in the given
+ * URLs.
+ */
+class PluginClassLoader extends URLClassLoader {
+
+    private final byte[] bytecode;
+
+    /**
+     * @param bytecode  The class file of {@link PluginDelegate}, see
+     *                  {@link #readPluginDelegate()}.
+     * @param urls      Further class path entries.
+     */
+    PluginClassLoader(final byte[] bytecode, final URL... urls) {
+        super(urls, PluginClassLoader.class.getClassLoader());
+        this.bytecode = bytecode;
+    }
+
+    @Override
+    protected Class<?> loadClass(final String name, final boolean resolve)
+    throws ClassNotFoundException {
+        if (PluginDelegate.class.getName().equals(name)) {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    clazz = defineClass(name, bytecode, 0, bytecode.length);
+                }
+                return clazz;
+            }
+        }
+        return super.loadClass(name, resolve);
+    }
+
+    /**
+     * @return The class file of {@link PluginDelegate}.
+     */
+    static byte[] readPluginDelegate() throws Exception {
+        final InputStream in = PluginDelegate.class.getResourceAsStream(
+                PluginDelegate.class.getSimpleName() + ".class");
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package mrcode.duckprxy;
+
+/**
+ * Delegate that {@link ClassUnloadingTest} loads in throwaway class
+ * loaders.
+ */
+public class PluginDelegate {
+
+    public int baz() {
+        return 42;
+    }
+
+}
@@ -0,0 +1,153 @@
+package mrcode.duckprxy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.PregeneratedClasses;
+import mrcode.duckprxy.impl.ProxyClassDefinition;
+
+import org.junit.Test;
+
+public class PregeneratedClassesTest extends TestCase {
+
+    @Test
+    public void testPregeneratedClassIsLoaded() throws Exception {
+        final String prefix = "pregenerated" + System.currentTimeMillis() + ":";
+        // Overriding the source hook switches to source compilation.
+        final JavassistDuckPrxy generator = new JavassistDuckPrxy(prefix) {
+            @Override
+            protected String getDelegateCall(
+                    final String name,
+                    final Method delegateMethod,
+                    final Class<?>[] parameterTypes) {
+                // Marks the pregenerated class: its calls return one more.
+                return super.getDelegateCall(
+                        name, delegateMethod, parameterTypes) +
+                    " + 1";
+            }
+        };
+        final File directory = createDirectory();
+        PregeneratedClasses.writeClassFiles(
+                directory,
+                generator.generateClassFiles(
+                        MyInterfaceOne.class, PluginDelegate.class));
+
+        final ClassLoader loader =
+            new PluginClassLoader(
+                    PluginClassLoader.readPluginDelegate(),
+                    directory.toURI().toURL());
+        final Object delegate = loader.loadClass(
+                PluginDelegate.class.getName()).getDeclaredConstructor()
+                .newInstance();
+        final MyInterfaceOne pregenerated = new JavassistDuckPrxy(
+                prefix, ProxyClassDefinition.DELEGATE_CHILD_CLASS_LOADER)
+            .makeProxy(MyInterfaceOne.class, delegate);
+        assertEquals(43, pregenerated.baz());
+
+        final MyInterfaceOne generated = new JavassistDuckPrxy(
+                prefix + "x:", ProxyClassDefinition.DELEGATE_CHILD_CLASS_LOADER)
+            .makeProxy(MyInterfaceOne.class, delegate);
+        assertEquals(42, generated.baz());
+    }
+
+    @Test
+    public void testWriteClassFilesKeepsIndex() throws Exception {
+        final JavassistDuckPrxy generator = new JavassistDuckPrxy();
+        final File directory = createDirectory();
+        final Map<String, byte[]> first = generator.generateClassFiles(
+                MyInterfaceOne.class, PluginDelegate.class);
+        final Map<String, byte[]> second = generator.generateClassFiles(
+                MyInterfaceOne.class, PluginDelegate.class,
+                MyInterfaceTwo.class);
+        PregeneratedClasses.writeClassFiles(directory, first);
+        PregeneratedClasses.writeClassFiles(directory, second);
+        final ClassLoader loader =
+            new PluginClassLoader(
+                    PluginClassLoader.readPluginDelegate(),
+                    directory.toURI().toURL());
+        final PregeneratedClasses pregenerated = PregeneratedClasses.forClass(
+                loader.loadClass(PluginDelegate.class.getName()));
+        assertEquals(2, first.size());
+        for (final Map<String, byte[]> classFiles : Arrays.asList(
+                first, second)) {
+            for (final Map.Entry<String, byte[]> entry :
+                classFiles.entrySet()) {
+                assertTrue(Arrays.equals(
+                        entry.getValue(),
+                        pregenerated.getBytecode(entry.getKey())));
+            }
+        }
+        assertNull(pregenerated.getBytecode("duckprxy:unknown"));
+    }
+
+    @Test
+    public void testIndexOfOtherVersionIsIgnored() throws Exception {
+        final Map<String, byte[]> classFiles = new JavassistDuckPrxy()
+            .generateClassFiles(MyInterfaceOne.class, PluginDelegate.class);
+        final File directory = createDirectory();
+        PregeneratedClasses.writeClassFiles(directory, classFiles);
+        final File indexFile =
+            new File(directory, PregeneratedClasses.INDEX_RESOURCE);
+        final Properties index = new Properties();
+        final InputStream in = new FileInputStream(indexFile);
+        try {
+            index.load(in);
+        } finally {
+            in.close();
+        }
+        assertEquals(
+                PregeneratedClasses.FORMAT_VERSION,
+                index.getProperty(PregeneratedClasses.VERSION_KEY));
+        index.setProperty(PregeneratedClasses.VERSION_KEY, "0");
+        final OutputStream out = new FileOutputStream(indexFile);
+        try {
+            index.store(out, null);
+        } finally {
+            out.close();
+        }
+
+        final ClassLoader loader =
+            new PluginClassLoader(
+                    PluginClassLoader.readPluginDelegate(),
+                    directory.toURI().toURL());
+        final PregeneratedClasses pregenerated = PregeneratedClasses.forClass(
+                loader.loadClass(PluginDelegate.class.getName()));
+        for (final String className : classFiles.keySet()) {
+            assertNull(pregenerated.getBytecode(className));
+        }
+    }
+
+    @Test
+    public void testIndexIsSharedPerClassLoader() {
+        assertSame(
+                PregeneratedClasses.forClass(MyInterfaceOne.class),
+                PregeneratedClasses.forClass(PluginDelegate.class));
+    }
+
+    @Test
+    public void testResourceName() {
+        assertEquals(
+                PregeneratedClasses.CLASS_DIRECTORY +
+                "duckprxy_a.B$C_d.E.class",
+                PregeneratedClasses.getResourceName("duckprxy:a.B$C+d.E"));
+    }
+
+    private static File createDirectory() {
+        final File directory = new File(
+                System.getProperty("java.io.tmpdir"),
+                "duckprxy-pregenerated-" + System.nanoTime());
+        directory.mkdirs();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+}
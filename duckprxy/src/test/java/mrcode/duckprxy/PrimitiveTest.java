@@ -0,0 +1,197 @@
+package mrcode.duckprxy;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.impl.DuckPrxyImpl;
+import mrcode.duckprxy.impl.DuckPrxyPreCompImpl;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.MethodHandleDuckPrxy;
+
+import org.junit.Test;
+
+public class PrimitiveTest extends TestCase {
+
+    public interface PrimitiveInterface {
+        boolean flip(boolean b);
+        byte nextByte(byte b);
+        char nextChar(char c);
+        short nextShort(short s);
+        int nextInt(int i);
+        long nextLong(long l);
+        float nextFloat(float f);
+        double nextDouble(double d);
+        long widen(int i);
+        double widenArg(int i);
+        int ignore(int i);
+        long count();
+        String describe(int i, long l, boolean b);
+    }
+
+    public static class PrimitiveDelegate {
+        private int count;
+
+        public boolean flip(final boolean b) {
+            return !b;
+        }
+
+        public byte nextByte(final byte b) {
+            return (byte) (b + 1);
+        }
+
+        public char nextChar(final char c) {
+            return (char) (c + 1);
+        }
+
+        public short nextShort(final short s) {
+            return (short) (s + 1);
+        }
+
+        public int nextInt(final int i) {
+            return i + 1;
+        }
+
+        public long nextLong(final long l) {
+            return l + 1;
+        }
+
+        public float nextFloat(final float f) {
+            return f + 1;
+        }
+
+        public double nextDouble(final double d) {
+            return d + 1;
+        }
+
+        public int widen(final int i) {
+            return i * 2;
+        }
+
+        @DuckMethod("widenArg")
+        public double half(final long l) {
+            return l / 2.0;
+        }
+
+        public int ignore(@DuckArg(DuckArgType.NULL) final int i) {
+            return i + 1;
+        }
+
+        public void count() {
+            count++;
+        }
+
+        @DuckMethod("describe")
+        public String describeArgs(@DuckArg(DuckArgType.ARGS) final Object[] args) {
+            return Arrays.toString(args);
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    @Test
+    public void testPrxyImpl() {
+        testPrimitives(new DuckPrxyImpl());
+    }
+
+    @Test
+    public void testPrxyPreCompImpl() {
+        testPrimitives(new DuckPrxyPreCompImpl());
+    }
+
+    @Test
+    public void testJavassistPrxy() {
+        testPrimitives(new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":"));
+    }
+
+    @Test
+    public void testJavassistSourcePrxy() {
+        testPrimitives(new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":") {
+            @Override
+            protected boolean isCompilingSource() {
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void testMethodHandlePrxy() {
+        testPrimitives(new MethodHandleDuckPrxy());
+    }
+
+    public void testPrimitives(final DuckPrxy duckPrxy) {
+        final PrimitiveDelegate delegate = new PrimitiveDelegate();
+        final PrimitiveInterface proxy =
+            duckPrxy.makeProxy(PrimitiveInterface.class, delegate);
+        assertFalse(proxy.flip(true));
+        assertEquals((byte) 2, proxy.nextByte((byte) 1));
+        assertEquals('b', proxy.nextChar('a'));
+        assertEquals((short) 1001, proxy.nextShort((short) 1000));
+        assertEquals(100001, proxy.nextInt(100000));
+        assertEquals(10000000001L, proxy.nextLong(10000000000L));
+        assertEquals(2.5f, proxy.nextFloat(1.5f));
+        assertEquals(3.25, proxy.nextDouble(2.25));
+        assertEquals(2000L, proxy.widen(1000));
+        assertEquals(2.5, proxy.widenArg(5));
+        assertEquals(1, proxy.ignore(41));
+        assertEquals(0L, proxy.count());
+        assertEquals(1, delegate.getCount());
+        assertEquals("[1, 2, true]", proxy.describe(1, 2L, true));
+    }
+
+    /**
+     * Calls with primitive arguments and results must not allocate
+     * anything on the Javassist proxy, e.g., no boxes.
+     */
+    @Test
+    public void testJavassistPrxyDoesNotAllocate() {
+        if (!(ManagementFactory.getThreadMXBean()
+                instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isThreadAllocatedMemorySupported() ||
+                !threadMXBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        final PrimitiveInterface proxy = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":")
+            .makeProxy(PrimitiveInterface.class, new PrimitiveDelegate());
+        final long threadId = Thread.currentThread().getId();
+        // Warm up, so that class loading and linking is done.
+        long sum = callAll(proxy, 1000);
+        final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        sum += callAll(proxy, 20000);
+        final long allocated =
+            threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(sum != 0);
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static long callAll(
+            final PrimitiveInterface proxy,
+            final int calls) {
+        long sum = 0;
+        for (int i = 1000; i < 1000 + calls; i++) {
+            sum += proxy.flip((i & 1) == 0) ? 1 : 0;
+            sum += proxy.nextByte((byte) i);
+            sum += proxy.nextChar((char) i);
+            sum += proxy.nextShort((short) i);
+            sum += proxy.nextInt(i);
+            sum += proxy.nextLong(i * 1000000L);
+            sum += (long) proxy.nextFloat(i);
+            sum += (long) proxy.nextDouble(i);
+            sum += proxy.widen(i);
+            sum += (long) proxy.widenArg(i);
+            sum += proxy.ignore(i);
+        }
+        return sum;
+    }
+
+}
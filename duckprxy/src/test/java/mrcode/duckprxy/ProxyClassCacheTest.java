@@ -0,0 +1,201 @@
+package mrcode.duckprxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.DuckPrxyTest.DelegateFour;
+import mrcode.duckprxy.DuckPrxyTest.DelegateOne;
+import mrcode.duckprxy.DuckPrxyTest.DelegateThree;
+import mrcode.duckprxy.DuckPrxyTest.DelegateTwo;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.ProxyClassCache;
+
+import org.junit.Test;
+
+public class ProxyClassCacheTest extends TestCase {
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void testConcurrentFirstUse() throws Exception {
+        final JavassistDuckPrxy duckPrxy = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":");
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<MyInterfaceOne>> futures =
+                new ArrayList<Future<MyInterfaceOne>>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(new Callable<MyInterfaceOne>() {
+                    public MyInterfaceOne call() throws Exception {
+                        start.await();
+                        return duckPrxy.makeProxy(
+                                MyInterfaceOne.class,
+                                new DelegateOne(),
+                                MyInterfaceTwo.class);
+                    }
+                }));
+            }
+            start.countDown();
+            final Class<?> proxyClass = futures.get(0).get().getClass();
+            for (final Future<MyInterfaceOne> future : futures) {
+                assertSame(proxyClass, future.get().getClass());
+                assertEquals(42, future.get().baz());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        final ProxyClassCache cache = duckPrxy.getProxyClassCache();
+        assertEquals(1, cache.getMissCount());
+        assertEquals(THREADS - 1, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Engines of the same class name prefix define their classes in the
+     * same class loader, so they must not both define a class.
+     */
+    @Test
+    public void testConcurrentEnginesWithSamePrefix() throws Exception {
+        final String classNamePrefix =
+            "duckprxy" + System.currentTimeMillis() + "-shared:";
+        final JavassistDuckPrxy[] duckPrxys = new JavassistDuckPrxy[] {
+            new JavassistDuckPrxy(classNamePrefix),
+            new JavassistDuckPrxy(classNamePrefix)
+        };
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<MyInterfaceOne>> futures =
+                new ArrayList<Future<MyInterfaceOne>>();
+            for (int i = 0; i < THREADS; i++) {
+                final JavassistDuckPrxy duckPrxy = duckPrxys[i % 2];
+                futures.add(executor.submit(new Callable<MyInterfaceOne>() {
+                    public MyInterfaceOne call() throws Exception {
+                        start.await();
+                        return duckPrxy.makeProxy(
+                                MyInterfaceOne.class, new DelegateTwo());
+                    }
+                }));
+            }
+            start.countDown();
+            final Class<?> proxyClass = futures.get(0).get().getClass();
+            for (final Future<MyInterfaceOne> future : futures) {
+                assertSame(proxyClass, future.get().getClass());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        final ProxyClassCache cache = duckPrxys[0].getProxyClassCache();
+        assertSame(cache, duckPrxys[1].getProxyClassCache());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(THREADS - 1, cache.getHitCount());
+    }
+
+    @Test
+    public void testGeneratesOncePerKey() throws Exception {
+        final ProxyClassCache cache = new ProxyClassCache();
+        final AtomicInteger generated = new AtomicInteger();
+        final Callable<Class<?>> generator = new Callable<Class<?>>() {
+            public Class<?> call() {
+                generated.incrementAndGet();
+                return DelegateOne.class;
+            }
+        };
+        final ClassLoader loader = getClass().getClassLoader();
+        final Class<?>[] none = new Class<?>[0];
+        cache.getProxyClass(
+                loader, DelegateOne.class, MyInterfaceOne.class, none,
+                generator);
+        cache.getProxyClass(
+                loader, DelegateOne.class, MyInterfaceOne.class, none,
+                generator);
+        cache.getProxyClass(
+                loader, DelegateOne.class, MyInterfaceTwo.class, none,
+                generator);
+        assertEquals(2, generated.get());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testFailedGenerationIsRetried() throws Exception {
+        final ProxyClassCache cache = new ProxyClassCache();
+        final ClassLoader loader = getClass().getClassLoader();
+        final Class<?>[] none = new Class<?>[0];
+        try {
+            cache.getProxyClass(
+                    loader, DelegateOne.class, MyInterfaceOne.class, none,
+                    new Callable<Class<?>>() {
+                        public Class<?> call() {
+                            throw new IllegalStateException();
+                        }
+                    });
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertSame(DelegateOne.class, cache.getProxyClass(
+                loader, DelegateOne.class, MyInterfaceOne.class, none,
+                new Callable<Class<?>>() {
+                    public Class<?> call() {
+                        return DelegateOne.class;
+                    }
+                }));
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        final JavassistDuckPrxy duckPrxy = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":");
+        final ForkJoinPool pool = new ForkJoinPool(THREADS);
+        final ClassLoader contextClassLoader =
+            Thread.currentThread().getContextClassLoader();
+        try {
+            duckPrxy.warmUp(Arrays.asList(
+                    new ProxyShape(DelegateOne.class, MyInterfaceOne.class),
+                    new ProxyShape(
+                            DelegateOne.class,
+                            MyInterfaceOne.class,
+                            MyInterfaceTwo.class),
+                    new ProxyShape(DelegateTwo.class, MyInterfaceOne.class),
+                    new ProxyShape(DelegateThree.class, MyInterfaceOne.class),
+                    new ProxyShape(DelegateFour.class, MyInterfaceOne.class)),
+                    pool);
+        } finally {
+            pool.shutdown();
+        }
+        final ProxyClassCache cache = duckPrxy.getProxyClassCache();
+        assertEquals(5, cache.getMissCount());
+        final MyInterfaceOne proxy = duckPrxy.makeProxy(
+                MyInterfaceOne.class, new DelegateOne(), MyInterfaceTwo.class);
+        assertEquals(42, proxy.baz());
+        assertSame(contextClassLoader, proxy.getClass().getClassLoader());
+        assertEquals(5, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testWarmUpFailure() {
+        final JavassistDuckPrxy duckPrxy = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":");
+        try {
+            duckPrxy.warmUp(Arrays.asList(
+                    new ProxyShape(DelegateOne.class, MyInterfaceOne.class),
+                    new ProxyShape(DelegateOne.class, String.class)));
+            fail("Expected RuntimeException");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+}
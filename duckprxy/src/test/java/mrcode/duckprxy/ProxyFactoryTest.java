@@ -0,0 +1,131 @@
+package mrcode.duckprxy;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.DuckPrxyTest.DelegateFour;
+import mrcode.duckprxy.DuckPrxyTest.DelegateOne;
+import mrcode.duckprxy.impl.DuckPrxyImpl;
+import mrcode.duckprxy.impl.DuckPrxyPreCompImpl;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.MethodHandleDuckPrxy;
+
+import org.junit.Test;
+
+public class ProxyFactoryTest extends TestCase {
+
+    interface Hidden {
+        String getName();
+    }
+
+    public static class HiddenDelegate {
+        public String getName() {
+            return "hidden";
+        }
+    }
+
+    @Test
+    public void testPrxyImplFactory() {
+        testFactory(new DuckPrxyImpl());
+    }
+
+    @Test
+    public void testPrxyPreCompImplFactory() {
+        testFactory(new DuckPrxyPreCompImpl());
+    }
+
+    @Test
+    public void testJavassistPrxyFactory() {
+        testFactory(new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":"));
+    }
+
+    @Test
+    public void testMethodHandlePrxyFactory() {
+        testFactory(new MethodHandleDuckPrxy());
+    }
+
+    @Test
+    public void testJavassistFactoryIsShared() {
+        final DuckPrxy duckPrxy = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":");
+        assertSame(
+                duckPrxy.getProxyFactory(
+                        MyInterfaceOne.class, DelegateOne.class),
+                duckPrxy.getProxyFactory(
+                        MyInterfaceOne.class, DelegateOne.class));
+    }
+
+    /**
+     * The proxy classes of non-public interfaces are not public.
+     */
+    @Test
+    public void testNonPublicInterfaceFactory() {
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new DuckPrxyPreCompImpl()}) {
+            assertEquals(
+                    "hidden",
+                    duckPrxy.getProxyFactory(Hidden.class, HiddenDelegate.class)
+                    .create(new HiddenDelegate()).getName());
+        }
+    }
+
+    @Test
+    public void testMakeProxies() {
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new DuckPrxyPreCompImpl(),
+                new JavassistDuckPrxy(
+                        "duckprxy" + System.currentTimeMillis() + ":"),
+                new MethodHandleDuckPrxy()}) {
+            final DelegateOne first = new DelegateOne();
+            final DelegateOne second = new DelegateOne();
+            final MyInterfaceOne[] proxies = duckPrxy.makeProxies(
+                    MyInterfaceOne.class,
+                    Arrays.asList(first, new DelegateFour(), second),
+                    MyInterfaceTwo.class);
+            assertEquals(3, proxies.length);
+            proxies[0].foo();
+            ((MyInterfaceTwo) proxies[2]).fooTwo("abc");
+            assertEquals(Arrays.asList("Foo"), first.getCallRecord());
+            assertEquals(Arrays.asList("Foo: abc"), second.getCallRecord());
+            assertEquals(
+                    duckPrxy.makeProxy(MyInterfaceOne.class, new DelegateFour())
+                    .bar(1, 2),
+                    proxies[1].bar(1, 2));
+            assertEquals(0, duckPrxy.makeProxies(
+                    MyInterfaceOne.class, Arrays.asList()).length);
+        }
+    }
+
+    public void testFactory(final DuckPrxy duckPrxy) {
+        final ProxyFactory<MyInterfaceOne> factory = duckPrxy.getProxyFactory(
+                MyInterfaceOne.class, DelegateOne.class, MyInterfaceTwo.class);
+        final DelegateOne first = new DelegateOne();
+        final DelegateOne second = new DelegateOne();
+        final MyInterfaceOne firstProxy = factory.create(first);
+        final MyInterfaceOne secondProxy = factory.create(second);
+        assertNotSame(firstProxy, secondProxy);
+        firstProxy.foo();
+        assertEquals(42, secondProxy.baz());
+        ((MyInterfaceTwo) secondProxy).fooTwo("abc");
+        assertEquals(Arrays.asList("Foo"), first.getCallRecord());
+        assertEquals(Arrays.asList("Foo: abc"), second.getCallRecord());
+
+        final ProxyFactory<MyInterfaceOne> subFactory =
+            duckPrxy.getProxyFactory(MyInterfaceOne.class, DelegateFour.class);
+        assertEquals(
+                duckPrxy.makeProxy(MyInterfaceOne.class, new DelegateFour())
+                .bar(1, 2),
+                subFactory.create(new DelegateFour()).bar(1, 2));
+
+        try {
+            factory.create(new DelegateFour());
+            fail("Expected ClassCastException");
+        } catch (ClassCastException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,286 @@
+package mrcode.duckprxy;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.DuckPrxyTest.DelegateOne;
+import mrcode.duckprxy.SubDelegateTest.Greeter;
+import mrcode.duckprxy.SubDelegateTest.TypedStatic;
+import mrcode.duckprxy.impl.DuckPrxyImpl;
+import mrcode.duckprxy.impl.DuckPrxyPreCompImpl;
+import mrcode.duckprxy.impl.MethodHandleDuckPrxy;
+
+import org.junit.Test;
+
+/**
+ * Checks the memory retained per proxy by the {@link java.lang.reflect.Proxy}
+ * based implementations. The objects reachable from two proxies of the
+ * same shape are compared field by field, and the objects that differ
+ * (except the delegates) are the ones owned by a proxy.
+ * <p>
+ * The sizes of these objects are estimated from their fields only, without
+ * asking the VM for its layout: a header of {@value #HEADER_SIZE} bytes and
+ * references of {@value #REFERENCE_SIZE} bytes, i.e., a 64 bit HotSpot VM
+ * without compressed class pointers and oops, plus the sizes of the
+ * primitive fields, aligned to 8 bytes. The compressed layouts are smaller,
+ * so the estimate is an upper bound on the common VMs.
+ */
+public class ProxyFootprintTest extends TestCase {
+
+    /**
+     * The assumed size of an object header, a mark word and a class pointer.
+     */
+    private static final long HEADER_SIZE = 16;
+
+    /**
+     * The assumed size of a reference.
+     */
+    private static final long REFERENCE_SIZE = 8;
+
+    /**
+     * The assumed size of an array header, an object header and the length.
+     */
+    private static final long ARRAY_HEADER_SIZE = HEADER_SIZE + 4;
+
+    /**
+     * The objects owned by a proxy.
+     */
+    private static class Footprint {
+        int objects;
+        long bytes;
+    }
+
+    @Test
+    public void testPrxyImpl() {
+        final DuckPrxy duckPrxy = new DuckPrxyImpl();
+        final DelegateOne delegate = new DelegateOne();
+        final DelegateOne other = new DelegateOne();
+        assertFootprint(
+                2,
+                duckPrxy.makeProxy(MyInterfaceOne.class, delegate),
+                duckPrxy.makeProxy(MyInterfaceOne.class, other),
+                delegate,
+                other);
+        final ProxyFactory<MyInterfaceOne> factory = duckPrxy.getProxyFactory(
+                MyInterfaceOne.class, DelegateOne.class);
+        assertFootprint(
+                2,
+                factory.create(delegate),
+                factory.create(other),
+                delegate,
+                other);
+    }
+
+    @Test
+    public void testPrxyPreCompImpl() {
+        final DuckPrxy duckPrxy = new DuckPrxyPreCompImpl();
+        final DelegateOne delegate = new DelegateOne();
+        final DelegateOne other = new DelegateOne();
+        assertFootprint(
+                2,
+                duckPrxy.makeProxy(MyInterfaceOne.class, delegate),
+                duckPrxy.makeProxy(MyInterfaceOne.class, other),
+                delegate,
+                other);
+        final ProxyFactory<MyInterfaceOne> factory = duckPrxy.getProxyFactory(
+                MyInterfaceOne.class, DelegateOne.class);
+        assertFootprint(
+                2,
+                factory.create(delegate),
+                factory.create(other),
+                delegate,
+                other);
+    }
+
+    /**
+     * The proxy holds the delegate and the static sub delegate itself.
+     */
+    @Test
+    public void testMethodHandleDuckPrxy() {
+        final DuckPrxy duckPrxy = new MethodHandleDuckPrxy();
+        final DelegateOne delegate = new DelegateOne();
+        final DelegateOne other = new DelegateOne();
+        final ProxyFactory<MyInterfaceOne> factory = duckPrxy.getProxyFactory(
+                MyInterfaceOne.class, DelegateOne.class);
+        assertFootprint(
+                1,
+                factory.create(delegate),
+                factory.create(other),
+                delegate,
+                other);
+        final TypedStatic staticDelegate = new TypedStatic();
+        final TypedStatic otherStatic = new TypedStatic();
+        assertFootprint(
+                1,
+                duckPrxy.makeProxy(Greeter.class, staticDelegate),
+                duckPrxy.makeProxy(Greeter.class, otherStatic),
+                staticDelegate,
+                otherStatic,
+                staticDelegate.getLanguage(),
+                otherStatic.getLanguage());
+    }
+
+    /**
+     * A static sub delegate is held by the handler itself.
+     */
+    @Test
+    public void testStaticSubDelegate() {
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new DuckPrxyPreCompImpl()}) {
+            final TypedStatic delegate = new TypedStatic();
+            final TypedStatic other = new TypedStatic();
+            assertFootprint(
+                    2,
+                    duckPrxy.makeProxy(Greeter.class, delegate),
+                    duckPrxy.makeProxy(Greeter.class, other),
+                    delegate,
+                    other,
+                    delegate.getLanguage(),
+                    other.getLanguage());
+        }
+    }
+
+    /**
+     * Asserts the number of objects owned by a proxy and that they are
+     * not larger than that many objects holding three references each.
+     * @param objects  The expected number of objects.
+     * @param proxy    The proxy.
+     * @param other    Another proxy of the same shape.
+     * @param shared   Objects that are not owned by the proxies, i.e.,
+     *                 their delegates and sub delegates.
+     */
+    private static void assertFootprint(
+            final int objects,
+            final Object proxy,
+            final Object other,
+            final Object... shared) {
+        final Set<Object> excluded =
+            Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        excluded.addAll(Arrays.asList(shared));
+        final Footprint footprint = new Footprint();
+        walk(proxy, other, excluded, footprint);
+        assertEquals(
+                footprint.bytes + " bytes in " + footprint.objects +
+                " objects",
+                objects,
+                footprint.objects);
+        final long bound = objects * align(HEADER_SIZE + 3 * REFERENCE_SIZE);
+        assertTrue(
+                footprint.bytes + " bytes, more than " + bound,
+                footprint.bytes <= bound);
+    }
+
+    /**
+     * Walks the object graphs of two proxies in parallel and counts the
+     * objects of the first one that are not shared with the second one.
+     */
+    private static void walk(
+            final Object object,
+            final Object other,
+            final Set<Object> excluded,
+            final Footprint footprint) {
+        if (object == null || object == other || !excluded.add(object)) {
+            return;
+        }
+        footprint.objects++;
+        footprint.bytes += sizeOf(object);
+        final Class<?> type = object.getClass();
+        if (other == null || other.getClass() != type) {
+            return;
+        }
+        if (type.isArray()) {
+            if (!type.getComponentType().isPrimitive() &&
+                    Array.getLength(object) == Array.getLength(other)) {
+                for (int i = 0; i < Array.getLength(object); i++) {
+                    walk(
+                            Array.get(object, i),
+                            Array.get(other, i),
+                            excluded,
+                            footprint);
+                }
+            }
+            return;
+        }
+        if (Proxy.isProxyClass(type)) {
+            // The handler field of Proxy is not accessible.
+            walk(
+                    Proxy.getInvocationHandler(object),
+                    Proxy.getInvocationHandler(other),
+                    excluded,
+                    footprint);
+            return;
+        }
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (final Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) &&
+                        !field.getType().isPrimitive()) {
+                    walk(
+                            get(field, object),
+                            get(field, other),
+                            excluded,
+                            footprint);
+                }
+            }
+        }
+    }
+
+    private static Object get(final Field field, final Object object) {
+        try {
+            field.setAccessible(true);
+            return field.get(object);
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        } catch (InaccessibleObjectException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static long sizeOf(final Object object) {
+        final Class<?> type = object.getClass();
+        if (type.isArray()) {
+            return align(
+                    ARRAY_HEADER_SIZE +
+                    fieldSize(type.getComponentType()) *
+                    Array.getLength(object));
+        }
+        long size = HEADER_SIZE;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (final Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    size += fieldSize(field.getType());
+                }
+            }
+        }
+        return align(size);
+    }
+
+    private static long fieldSize(final Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE_SIZE;
+    }
+
+    private static long align(final long size) {
+        return (size + 7) & ~7L;
+    }
+
+}
@@ -0,0 +1,168 @@
+package mrcode.duckprxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.impl.DuckPrxyImpl;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.util.ProxyViews;
+
+import org.junit.Test;
+
+public class ProxyViewsTest extends TestCase {
+
+    public interface Valued {
+        int getValue();
+    }
+
+    public static class ValueDelegate {
+        private final int value;
+
+        public ValueDelegate(final int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+
+    public static class OtherValueDelegate {
+        public int getValue() {
+            return -1;
+        }
+    }
+
+    /**
+     * Counts the factory lookups and the created proxies.
+     */
+    private static class CountingDuckPrxy implements DuckPrxy {
+        private final DuckPrxy duckPrxy;
+        int factories;
+        int proxies;
+
+        CountingDuckPrxy(final DuckPrxy duckPrxy) {
+            this.duckPrxy = duckPrxy;
+        }
+
+        public <T> T makeProxy(
+                final Class<T> mainInterface,
+                final Object delegate,
+                final Class<?>... interfaces) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> ProxyFactory<T> getProxyFactory(
+                final Class<T> mainInterface,
+                final Class<?> delegateClass,
+                final Class<?>... interfaces) {
+            factories++;
+            final ProxyFactory<T> factory = duckPrxy.getProxyFactory(
+                    mainInterface, delegateClass, interfaces);
+            return new ProxyFactory<T>() {
+                public T create(final Object delegate) {
+                    proxies++;
+                    return factory.create(delegate);
+                }
+            };
+        }
+    }
+
+    private static List<Object> delegates() {
+        return new ArrayList<Object>(Arrays.asList(
+                new ValueDelegate(1),
+                new ValueDelegate(2),
+                null,
+                new OtherValueDelegate(),
+                new ValueDelegate(3)));
+    }
+
+    @Test
+    public void testList() {
+        final CountingDuckPrxy duckPrxy =
+            new CountingDuckPrxy(new DuckPrxyImpl());
+        final List<Object> delegates = delegates();
+        final List<Valued> view =
+            ProxyViews.list(duckPrxy, Valued.class, delegates);
+        assertTrue(view instanceof RandomAccess);
+        assertEquals(0, duckPrxy.proxies);
+        assertEquals(5, view.size());
+        assertEquals(2, view.get(1).getValue());
+        assertEquals(1, duckPrxy.proxies);
+        assertNull(view.get(2));
+        assertEquals(-1, view.get(3).getValue());
+        assertEquals(3, view.get(4).getValue());
+        assertEquals(2, duckPrxy.factories);
+        delegates.set(0, new ValueDelegate(4));
+        assertEquals(4, view.get(0).getValue());
+        assertEquals(2, duckPrxy.factories);
+        try {
+            view.set(0, null);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertFalse(ProxyViews.list(
+                duckPrxy, Valued.class, new LinkedList<Object>(delegates))
+                instanceof RandomAccess);
+    }
+
+    @Test
+    public void testIterable() {
+        final CountingDuckPrxy duckPrxy = new CountingDuckPrxy(
+                new JavassistDuckPrxy(
+                        "duckprxy" + System.currentTimeMillis() + ":"));
+        final Iterable<Valued> view =
+            ProxyViews.iterable(duckPrxy, Valued.class, delegates());
+        for (int i = 0; i < 2; i++) {
+            final Iterator<Valued> iterator = view.iterator();
+            assertEquals(1, iterator.next().getValue());
+            assertEquals(2, iterator.next().getValue());
+            assertNull(iterator.next());
+            assertEquals(-1, iterator.next().getValue());
+            assertEquals(3, iterator.next().getValue());
+            assertFalse(iterator.hasNext());
+        }
+        assertEquals(2, duckPrxy.factories);
+        assertEquals(8, duckPrxy.proxies);
+    }
+
+    @Test
+    public void testIterator() {
+        final CountingDuckPrxy duckPrxy =
+            new CountingDuckPrxy(new DuckPrxyImpl());
+        final Iterator<Valued> iterator = ProxyViews.iterator(
+                duckPrxy, Valued.class, delegates().iterator());
+        assertEquals(1, iterator.next().getValue());
+        assertEquals(1, duckPrxy.proxies);
+    }
+
+    @Test
+    public void testStream() {
+        final CountingDuckPrxy duckPrxy =
+            new CountingDuckPrxy(new DuckPrxyImpl());
+        final Stream<Valued> view = ProxyViews.stream(
+                duckPrxy,
+                Valued.class,
+                Stream.of(
+                        new ValueDelegate(1),
+                        new ValueDelegate(2),
+                        new ValueDelegate(3)));
+        assertEquals(0, duckPrxy.proxies);
+        final List<Valued> proxies =
+            view.limit(2).collect(Collectors.toList());
+        assertEquals(2, duckPrxy.proxies);
+        assertEquals(1, proxies.get(0).getValue());
+        assertEquals(2, proxies.get(1).getValue());
+        assertEquals(1, duckPrxy.factories);
+    }
+
+}
@@ -0,0 +1,171 @@
+package mrcode.duckprxy;
+
+import java.lang.management.ManagementFactory;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.impl.DuckPrxyImpl;
+import mrcode.duckprxy.impl.DuckPrxyPreCompImpl;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.MethodHandleDuckPrxy;
+
+import org.junit.Test;
+
+public class RebindableProxyTest extends TestCase {
+
+    public interface Row {
+        int getValue();
+        String getLabel();
+    }
+
+    public interface Labeled {
+        String label();
+    }
+
+    public interface Captioned {
+        String caption();
+    }
+
+    public static class Caption {
+        private final int value;
+
+        public Caption(final int value) {
+            this.value = value;
+        }
+
+        public String caption() {
+            return "caption " + value;
+        }
+    }
+
+    public static class RowDelegate {
+        private final int value;
+
+        public RowDelegate(final int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        @DuckMethod(subdelegate = true, policy = SubDelegatePolicy.STATIC)
+        public Caption getCaption() {
+            return new Caption(value);
+        }
+
+        @DuckMethod("getLabel")
+        public String label() {
+            return "row " + value;
+        }
+    }
+
+    public static class OtherDelegate {
+        public int getValue() {
+            return -1;
+        }
+    }
+
+    @Test
+    public void testPrxyImplRebind() {
+        testRebind(new DuckPrxyImpl());
+    }
+
+    @Test
+    public void testPrxyPreCompImplRebind() {
+        testRebind(new DuckPrxyPreCompImpl());
+    }
+
+    @Test
+    public void testJavassistPrxyRebind() {
+        testRebind(new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":"));
+    }
+
+    @Test
+    public void testMethodHandlePrxyRebind() {
+        testRebind(new MethodHandleDuckPrxy());
+    }
+
+    @Test
+    public void testStaticSubDelegateIsReadOnRebind() {
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new DuckPrxyPreCompImpl(),
+                new JavassistDuckPrxy(
+                        "duckprxy" + System.currentTimeMillis() + ":"),
+                new MethodHandleDuckPrxy()}) {
+            final Captioned captioned = duckPrxy.makeRebindableProxy(
+                    Captioned.class, new RowDelegate(1));
+            assertEquals("caption 1", captioned.caption());
+            ((Rebindable) captioned).rebind(new RowDelegate(2));
+            assertEquals("caption 2", captioned.caption());
+        }
+    }
+
+    /**
+     * Iterating with a rebound proxy must not allocate a proxy per row.
+     */
+    @Test
+    public void testJavassistRebindDoesNotAllocate() {
+        if (!(ManagementFactory.getThreadMXBean()
+                instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isThreadAllocatedMemorySupported() ||
+                !threadMXBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        final RowDelegate[] rows = new RowDelegate[20000];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new RowDelegate(i);
+        }
+        final Row row = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":")
+            .makeRebindableProxy(Row.class, rows[0]);
+        final long threadId = Thread.currentThread().getId();
+        // Warm up, so that class loading and linking is done.
+        long sum = sum(row, rows, 1000);
+        final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        sum += sum(row, rows, rows.length);
+        final long allocated =
+            threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(sum != 0);
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static long sum(
+            final Row row,
+            final RowDelegate[] rows,
+            final int count) {
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            ((Rebindable) row).rebind(rows[i]);
+            sum += row.getValue();
+        }
+        return sum;
+    }
+
+    public void testRebind(final DuckPrxy duckPrxy) {
+        final Row row = duckPrxy.makeRebindableProxy(
+                Row.class, new RowDelegate(1), Labeled.class);
+        assertEquals(1, row.getValue());
+        assertEquals("row 1", row.getLabel());
+        ((Rebindable) row).rebind(new RowDelegate(2));
+        assertEquals(2, row.getValue());
+        assertEquals("row 2", row.getLabel());
+        assertEquals("row 2", ((Labeled) row).label());
+        try {
+            ((Rebindable) row).rebind(new OtherDelegate());
+            fail("Expected ClassCastException");
+        } catch (ClassCastException e) {
+            // expected
+        }
+        assertEquals(2, row.getValue());
+        assertFalse(duckPrxy.makeProxy(Row.class, new RowDelegate(3))
+                instanceof Rebindable);
+    }
+
+}
@@ -0,0 +1,321 @@
+package mrcode.duckprxy;
+
+import java.lang.reflect.UndeclaredThrowableException;
+
+import junit.framework.TestCase;
+import mrcode.duckprxy.impl.DuckPrxyImpl;
+import mrcode.duckprxy.impl.DuckPrxyPreCompImpl;
+import mrcode.duckprxy.impl.JavassistDuckPrxy;
+import mrcode.duckprxy.impl.MethodHandleDuckPrxy;
+
+import org.junit.Test;
+
+public class SubDelegateTest extends TestCase {
+
+    public interface Greeter {
+        String greet();
+        String name();
+    }
+
+    public static class English {
+        public String greet() {
+            return "Hello";
+        }
+    }
+
+    public static class British extends English {
+        @Override
+        public String greet() {
+            return "Cheerio";
+        }
+    }
+
+    public static class German {
+        public String greet() {
+            return "Hallo";
+        }
+    }
+
+    public static class Dynamic {
+        private Object language = new English();
+        private int reads;
+
+        public String name() {
+            return "dynamic";
+        }
+
+        @DuckMethod(subdelegate = true)
+        public Object getLanguage() {
+            reads++;
+            return language;
+        }
+    }
+
+    public static class Static {
+        private Object language = new English();
+        private int reads;
+
+        public String name() {
+            return "static";
+        }
+
+        @DuckMethod(subdelegate = true, policy = SubDelegatePolicy.STATIC)
+        public Object getLanguage() {
+            reads++;
+            return language;
+        }
+    }
+
+    public static class TypedStatic {
+        private English language = new English();
+        private int reads;
+
+        public String name() {
+            return "static";
+        }
+
+        @DuckMethod(subdelegate = true, policy = SubDelegatePolicy.STATIC)
+        public English getLanguage() {
+            reads++;
+            return language;
+        }
+    }
+
+    public static class Node {
+        private Node next;
+
+        public String greet() {
+            return "node";
+        }
+
+        @DuckMethod(subdelegate = true, policy = SubDelegatePolicy.STATIC)
+        public Node getNext() {
+            return next;
+        }
+    }
+
+    public static class Outer {
+        private final Middle middle = new Middle();
+
+        @DuckMethod(subdelegate = true)
+        public Middle getMiddle() {
+            return middle;
+        }
+    }
+
+    public static class StaticOuter {
+        private Middle middle = new Middle();
+
+        @DuckMethod(subdelegate = true, policy = SubDelegatePolicy.STATIC)
+        public Middle getMiddle() {
+            return middle;
+        }
+    }
+
+    public static class Middle {
+        private final Inner inner = new Inner();
+
+        public String name() {
+            return "middle";
+        }
+
+        @DuckMethod(subdelegate = true, policy = SubDelegatePolicy.STATIC)
+        public Inner getInner() {
+            return inner;
+        }
+    }
+
+    public static class Inner {
+        public String greet() {
+            return "inner";
+        }
+    }
+
+    @Test
+    public void testPrxyImplDynamic() {
+        testDynamic(new DuckPrxyImpl());
+    }
+
+    @Test
+    public void testPrxyPreCompImplDynamic() {
+        testDynamic(new DuckPrxyPreCompImpl());
+    }
+
+    @Test
+    public void testPrxyImplStatic() {
+        testStatic(new DuckPrxyImpl());
+    }
+
+    @Test
+    public void testPrxyPreCompImplStatic() {
+        testStatic(new DuckPrxyPreCompImpl());
+    }
+
+    @Test
+    public void testMethodHandlePrxyDynamic() {
+        testDynamic(new MethodHandleDuckPrxy());
+    }
+
+    @Test
+    public void testMethodHandlePrxyStatic() {
+        testStatic(new MethodHandleDuckPrxy());
+    }
+
+    @Test
+    public void testJavassistStatic() {
+        final JavassistDuckPrxy duckPrxy = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":");
+        final TypedStatic delegate = new TypedStatic();
+        final Greeter greeter = duckPrxy.makeProxy(Greeter.class, delegate);
+        assertEquals(1, delegate.reads);
+        assertEquals("Hello", greeter.greet());
+        assertEquals("Hello", greeter.greet());
+        assertEquals("static", greeter.name());
+        assertEquals(1, delegate.reads);
+        delegate.language = null;
+        assertEquals("Hello", greeter.greet());
+    }
+
+    /**
+     * The getter of the node returns its own class, and the last node
+     * has no next node.
+     */
+    @Test
+    public void testSelfReferencingStatic() {
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new DuckPrxyPreCompImpl(),
+                new JavassistDuckPrxy(
+                        "duckprxy" + System.currentTimeMillis() + ":"),
+                new MethodHandleDuckPrxy()}) {
+            for (final Node node : new Node[] {new Node(), new Node()}) {
+                node.next = new Node();
+                final Greeter greeter =
+                    duckPrxy.makeProxy(Greeter.class, node);
+                assertEquals("node", greeter.greet());
+                try {
+                    greeter.name();
+                    fail("Expected UndeclaredThrowableException");
+                } catch (UndeclaredThrowableException e) {
+                    // expected, no node has the method
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNullStaticSubDelegate() {
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new DuckPrxyPreCompImpl(),
+                new MethodHandleDuckPrxy()}) {
+            final TypedStatic delegate = new TypedStatic();
+            delegate.language = null;
+            final Greeter greeter = duckPrxy.makeProxy(Greeter.class, delegate);
+            assertEquals("static", greeter.name());
+            try {
+                greeter.greet();
+                fail("Expected UndeclaredThrowableException");
+            } catch (UndeclaredThrowableException e) {
+                assertTrue(
+                        e.getCause().getCause() instanceof
+                        NoSuchMethodException);
+            }
+        }
+    }
+
+    @Test
+    public void testNullDynamicSubDelegate() {
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new DuckPrxyPreCompImpl(),
+                new MethodHandleDuckPrxy()}) {
+            final Dynamic delegate = new Dynamic();
+            final Greeter greeter = duckPrxy.makeProxy(Greeter.class, delegate);
+            assertEquals("Hello", greeter.greet());
+            delegate.language = null;
+            try {
+                greeter.greet();
+                fail("Expected UndeclaredThrowableException");
+            } catch (UndeclaredThrowableException e) {
+                assertTrue(
+                        e.getCause().getCause() instanceof
+                        NoSuchMethodException);
+            }
+        }
+    }
+
+    /**
+     * The sub delegate is an instance of a subclass of the declared return
+     * type of the getter.
+     */
+    @Test
+    public void testSubDelegateOfSubclass() {
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new DuckPrxyPreCompImpl(),
+                new JavassistDuckPrxy(
+                        "duckprxy" + System.currentTimeMillis() + ":"),
+                new MethodHandleDuckPrxy()}) {
+            final TypedStatic delegate = new TypedStatic();
+            delegate.language = new British();
+            final Greeter greeter = duckPrxy.makeProxy(Greeter.class, delegate);
+            assertEquals("Cheerio", greeter.greet());
+            assertEquals(
+                    "Hello",
+                    duckPrxy.makeProxy(Greeter.class, new TypedStatic())
+                    .greet());
+        }
+    }
+
+    @Test
+    public void testJavassistStaticChain() {
+        final JavassistDuckPrxy duckPrxy = new JavassistDuckPrxy(
+                "duckprxy" + System.currentTimeMillis() + ":");
+        final Greeter greeter =
+            duckPrxy.makeProxy(Greeter.class, new StaticOuter());
+        assertEquals("inner", greeter.greet());
+        assertEquals("middle", greeter.name());
+        final StaticOuter withoutMiddle = new StaticOuter();
+        withoutMiddle.middle = null;
+        duckPrxy.makeProxy(Greeter.class, withoutMiddle);
+    }
+
+    @Test
+    public void testDeepChain() {
+        for (final DuckPrxy duckPrxy : new DuckPrxy[] {
+                new DuckPrxyImpl(),
+                new DuckPrxyPreCompImpl(),
+                new JavassistDuckPrxy(
+                        "duckprxy" + System.currentTimeMillis() + ":"),
+                new MethodHandleDuckPrxy()}) {
+            final Greeter greeter =
+                duckPrxy.makeProxy(Greeter.class, new Outer());
+            assertEquals("inner", greeter.greet());
+            assertEquals("middle", greeter.name());
+        }
+    }
+
+    public void testDynamic(final DuckPrxy duckPrxy) {
+        final Dynamic delegate = new Dynamic();
+        final Greeter greeter = duckPrxy.makeProxy(Greeter.class, delegate);
+        assertEquals(0, delegate.reads);
+        assertEquals("Hello", greeter.greet());
+        assertEquals("dynamic", greeter.name());
+        assertEquals(1, delegate.reads);
+        delegate.language = new German();
+        assertEquals("Hallo", greeter.greet());
+        assertEquals(2, delegate.reads);
+    }
+
+    public void testStatic(final DuckPrxy duckPrxy) {
+        final Static delegate = new Static();
+        final Greeter greeter = duckPrxy.makeProxy(Greeter.class, delegate);
+        assertEquals("Hello", greeter.greet());
+        delegate.language = new German();
+        assertEquals("Hello", greeter.greet());
+        assertEquals("static", greeter.name());
+        assertEquals(1, delegate.reads);
+    }
+
+}
@@ -1,13 +0,0 @@
-package mrcode.duckprxy.util;
-
-public class ObjectUtil {
-    
-    public static Object toObject(final int i) {
-        return Integer.valueOf(i);
-    }
-    
-    public static Object toObject(Object o) {
-        return o;
-    }
-
-}